@@ -7,6 +7,10 @@ import { ResourceBundle } from "./i18n/index.ts";
 export interface RunStatus {
   stages: StageInfo[];
   complete: boolean;
+  // Live-state version of this tree; pass back as `since` to receive only changes.
+  version?: number;
+  // When true, `stages` only holds the subtrees that changed since the requested version.
+  delta?: boolean;
   raw?: string;
 }
 
@@ -27,6 +31,22 @@ export interface BuildStep {
 export interface AllStepsData {
   steps: StepInfo[];
   runIsComplete: boolean;
+  // See RunStatus.version.
+  version?: number;
+  // When true, `steps` only holds the steps added or changed since the requested version.
+  delta?: boolean;
+  raw?: string;
+}
+
+// One window of `allSteps?stage=&offset=&limit=`.
+export interface StepsPageData {
+  steps: StepInfo[];
+  runIsComplete: boolean;
+  // Omitted for windows over all stages.
+  stage?: string;
+  offset: number;
+  // How many steps the request matched, of which `steps` starts at `offset`.
+  total: number;
   raw?: string;
 }
 
@@ -78,8 +98,11 @@ function fixStaleStageURL(stages: StageInfo[]) {
   }
 }
 
-export async function getRunStatusFromPath(url: string): Promise<RunStatus> {
-  const response = await fetch(`${url}stages/tree`);
+export async function getRunStatusFromPath(
+  url: string,
+  since = 0,
+): Promise<RunStatus> {
+  const response = await fetch(`${url}stages/tree?since=${since}`);
   if (!response.ok) {
     throw response.statusText;
   }
@@ -91,8 +114,35 @@ export async function getRunStatusFromPath(url: string): Promise<RunStatus> {
   return json.data;
 }
 
-export async function getRunSteps(url: string): Promise<AllStepsData> {
-  const response = await fetch(`${url}stages/allSteps`);
+export async function getRunSteps(
+  url: string,
+  since = 0,
+): Promise<AllStepsData> {
+  const response = await fetch(`${url}stages/allSteps?since=${since}`);
+  if (!response.ok) throw response.statusText;
+  const text = await response.text();
+  const json = JSON.parse(text);
+  json.data.raw = text;
+  return json.data;
+}
+
+/**
+ * Fetches one window of the run's steps, narrowed to one stage when `stage` is set. With
+ * `limit` 0 only `total` is of interest, which tells whether the run is large enough to load
+ * its steps stage by stage rather than polling the whole list.
+ */
+export async function getRunStepsPage(
+  url: string,
+  stage: string | undefined,
+  offset: number,
+  limit: number,
+): Promise<StepsPageData> {
+  const params = new URLSearchParams({
+    offset: String(offset),
+    limit: String(limit),
+  });
+  if (stage) params.set("stage", stage);
+  const response = await fetch(`${url}stages/allSteps?${params}`);
   if (!response.ok) throw response.statusText;
   const text = await response.text();
   const json = JSON.parse(text);
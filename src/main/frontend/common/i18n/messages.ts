@@ -85,6 +85,7 @@ export enum LocalizedMessageKey {
   collapseNestedStages = "collapse.collapseNested",
   expandAllStages = "collapse.expandAll",
   collapseAllStages = "collapse.collapseAll",
+  loadMoreSteps = "steps.loadMore",
 }
 
 const DEFAULT_MESSAGES: ResourceBundle = {
@@ -104,6 +105,8 @@ const DEFAULT_MESSAGES: ResourceBundle = {
   [LocalizedMessageKey.collapseNestedStages]: "Collapse nested stages",
   [LocalizedMessageKey.expandAllStages]: "Expand all stages",
   [LocalizedMessageKey.collapseAllStages]: "Collapse all stages",
+  [LocalizedMessageKey.loadMoreSteps]:
+    "Load more steps ({0} {0,choice,1#step|1<steps} not shown)",
 };
 
 export function defaultMessages(locale: string): Messages {
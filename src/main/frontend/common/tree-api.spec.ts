@@ -204,6 +204,55 @@ describe("useRunPoller", function () {
     expect(result.current.run.stages).to.equal(first);
     unmount();
   });
+
+  it("should apply deltas once a version is known", async () => {
+    const build = stage("Build", { state: Result.running });
+    const test = stage("Test", { state: Result.running });
+    const builtBuild = stage("Build", { state: Result.success });
+    (restClient.getRunStatusFromPath as Mock).mockImplementation(
+      async (_path, since) => {
+        switch (since) {
+          case undefined:
+            return {
+              raw: "full",
+              stages: [build, test],
+              complete: false,
+              version: 5,
+            };
+          case 5:
+            return {
+              raw: "delta 6",
+              stages: [builtBuild],
+              complete: false,
+              version: 6,
+              delta: true,
+            };
+          default:
+            return {
+              raw: "delta 6 empty",
+              stages: [],
+              complete: false,
+              version: 6,
+              delta: true,
+            };
+        }
+      },
+    );
+    const { result, unmount } = renderHook(() => {
+      return useRunPoller({
+        currentRunPath: "current",
+        interval: 10,
+      });
+    });
+    await waitFor(() => {
+      expect(result.current.run.stages).to.deep.equal([builtBuild, test]);
+    });
+    expect(restClient.getRunStatusFromPath as Mock).toHaveBeenCalledWith(
+      "current",
+      5,
+    );
+    unmount();
+  });
 });
 
 const stage = (
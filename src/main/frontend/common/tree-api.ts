@@ -1,6 +1,9 @@
-import { useCallback, useRef } from "react";
+import { useCallback, useMemo, useRef } from "react";
 
+import { StageInfo } from "../pipeline-graph-view/pipeline-graph/main/PipelineGraphModel.tsx";
 import { getRunStatusFromPath, RunStatus } from "./RestClient.tsx";
+import { runEventsTrigger } from "./utils/run-events.ts";
+import { applyStageDelta } from "./utils/stage-delta.ts";
 import { mergeStageInfos } from "./utils/stage-merge.ts";
 import { usePolling } from "./utils/use-polling.ts";
 
@@ -34,8 +37,28 @@ export default function useRunPoller({
     },
     [previousRunPath],
   );
-  const fetchCurrentRun = useCallback(
-    () => getRunStatusFromPath(currentRunPath),
+  // Last tree applied for the current run, so later polls can ask for changes only.
+  const latest = useRef<LatestTree>(null);
+  const fetchCurrentRun = useCallback(async () => {
+    const known =
+      latest.current?.path === currentRunPath ? latest.current : null;
+    let next =
+      known?.version === undefined
+        ? await getRunStatusFromPath(currentRunPath)
+        : await getRunStatusFromPath(currentRunPath, known.version);
+    let stages: StageInfo[] | null = next.stages;
+    if (next.delta) {
+      stages = known ? applyStageDelta(known.stages, next.stages) : null;
+      if (!stages) {
+        next = await getRunStatusFromPath(currentRunPath);
+        stages = next.stages;
+      }
+    }
+    latest.current = { path: currentRunPath, version: next.version, stages };
+    return { ...next, stages, delta: false };
+  }, [currentRunPath]);
+  const trigger = useMemo(
+    () => runEventsTrigger(currentRunPath),
     [currentRunPath],
   );
   const { data: run, loading } = usePolling<RunStatus>(
@@ -44,6 +67,7 @@ export default function useRunPoller({
     "complete",
     { stages: [], complete: false },
     postProcess,
+    trigger,
   );
 
   return {
@@ -52,6 +76,12 @@ export default function useRunPoller({
   };
 }
 
+interface LatestTree {
+  path: string;
+  version?: number;
+  stages: StageInfo[];
+}
+
 interface RunPollerProps {
   currentRunPath: string;
   previousRunPath?: string;
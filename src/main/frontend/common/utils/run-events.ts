@@ -0,0 +1,86 @@
+import { PollTrigger } from "./use-polling.ts";
+
+// After the server refuses or drops the stream, wait this long before trying again.
+const RETRY_DELAY = 30_000;
+
+interface RunEvents {
+  source: EventSource | null;
+  live: boolean;
+  listeners: Set<() => void>;
+  retry?: ReturnType<typeof setTimeout>;
+}
+
+// One EventSource per run, shared by every poller on the page.
+const connections = new Map<string, RunEvents>();
+
+function connect(runPath: string, events: RunEvents) {
+  const source = new EventSource(`${runPath}stages/events`);
+  const wake = () => events.listeners.forEach((listener) => listener());
+  events.source = source;
+  source.addEventListener("update", () => {
+    events.live = true;
+    wake();
+  });
+  source.addEventListener("complete", () => {
+    // The run finished (or the server stopped tracking it): fetch once more and stop.
+    events.live = false;
+    source.close();
+    events.source = null;
+    wake();
+  });
+  source.onerror = () => {
+    events.live = false;
+    if (source.readyState === EventSource.CLOSED) {
+      // A 204 or a non-stream response: the browser won't reconnect by itself.
+      events.source = null;
+      events.retry = setTimeout(() => {
+        events.retry = undefined;
+        if (events.listeners.size > 0) {
+          connect(runPath, events);
+        }
+      }, RETRY_DELAY);
+    }
+  };
+}
+
+/**
+ * Subscribes to the run's push channel, calling `wake` whenever the run changed.
+ * Returns the unsubscribe function. Without EventSource support this is a no-op and
+ * callers keep polling at their normal interval.
+ */
+export function subscribeToRunEvents(runPath: string, wake: () => void) {
+  if (typeof EventSource === "undefined") {
+    return () => {};
+  }
+  let events = connections.get(runPath);
+  if (!events) {
+    events = { source: null, live: false, listeners: new Set() };
+    connections.set(runPath, events);
+    connect(runPath, events);
+  }
+  events.listeners.add(wake);
+  const subscribed = events;
+  return () => {
+    subscribed.listeners.delete(wake);
+    if (
+      subscribed.listeners.size === 0 &&
+      connections.get(runPath) === subscribed
+    ) {
+      subscribed.source?.close();
+      clearTimeout(subscribed.retry);
+      connections.delete(runPath);
+    }
+  };
+}
+
+/** Whether the run's push channel is currently delivering updates. */
+export function isRunEventsLive(runPath: string) {
+  return connections.get(runPath)?.live ?? false;
+}
+
+export function runEventsTrigger(runPath: string): PollTrigger {
+  return {
+    subscribe: (wake) => subscribeToRunEvents(runPath, wake),
+    isLive: () => isRunEventsLive(runPath),
+  };
+}
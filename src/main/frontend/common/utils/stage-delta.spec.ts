@@ -0,0 +1,68 @@
+import {
+  Result,
+  StageInfo,
+} from "../../pipeline-graph-view/pipeline-graph/main/PipelineGraphModel.tsx";
+import { applyStageDelta } from "./stage-delta.ts";
+
+describe("applyStageDelta", () => {
+  it("returns the same stages for an empty delta", () => {
+    const stages = [stage(1, "Build")];
+    expect(applyStageDelta(stages, [])).toBe(stages);
+  });
+
+  it("replaces top-level stages by id", () => {
+    const test = stage(2, "Test");
+    const stages = [stage(1, "Build"), test];
+
+    const result = applyStageDelta(stages, [
+      stage(1, "Build", { state: Result.success }),
+    ]);
+
+    expect(result).not.toBe(stages);
+    expect(result![0].state).toBe(Result.success);
+    expect(result![1]).toBe(test);
+  });
+
+  it("replaces nested stages and keeps untouched siblings", () => {
+    const left = stage(3, "Left");
+    const stages = [
+      stage(1, "Parallel", {
+        children: [left, stage(4, "Right")],
+      }),
+    ];
+
+    const result = applyStageDelta(stages, [
+      stage(4, "Right", { state: Result.failure }),
+    ]);
+
+    const [parallel] = result!;
+    expect(parallel.children[0]).toBe(left);
+    expect(parallel.children[1].state).toBe(Result.failure);
+    expect(stages[0].children[1].state).toBe(Result.running);
+  });
+
+  it("returns null when a changed stage is unknown", () => {
+    const stages = [stage(1, "Build")];
+    expect(applyStageDelta(stages, [stage(9, "Deploy")])).toBeNull();
+  });
+});
+
+function stage(
+  id: number,
+  name: string,
+  overrides: Partial<StageInfo> = {},
+): StageInfo {
+  return {
+    name,
+    title: name,
+    state: Result.running,
+    id,
+    type: "STAGE",
+    children: [],
+    pauseDurationMillis: 0,
+    startTimeMillis: 0,
+    agent: "built-in",
+    url: "",
+    ...overrides,
+  };
+}
@@ -0,0 +1,48 @@
+import { StageInfo } from "../../pipeline-graph-view/pipeline-graph/main/PipelineGraphModel.tsx";
+
+/**
+ * Applies a `tree?since=` delta: every changed stage replaces the stage with the same id,
+ * wherever it sits in the tree. Returns null if a changed stage can't be placed, in which
+ * case the caller should fall back to a full fetch.
+ */
+export const applyStageDelta = (
+  stages: StageInfo[],
+  changed: StageInfo[],
+): StageInfo[] | null => {
+  if (changed.length === 0) {
+    return stages;
+  }
+  const pending = new Map(changed.map((stage) => [stage.id, stage]));
+  const patched = replaceStages(stages, pending);
+  return pending.size === 0 ? patched : null;
+};
+
+function replaceStages(
+  stages: StageInfo[],
+  pending: Map<number, StageInfo>,
+): StageInfo[] {
+  let result = stages;
+  stages.forEach((stage, index) => {
+    if (pending.size === 0) {
+      return;
+    }
+    const replacement = pending.get(stage.id);
+    let next = stage;
+    if (replacement) {
+      pending.delete(stage.id);
+      next = replacement;
+    } else if (stage.children?.length) {
+      const children = replaceStages(stage.children, pending);
+      if (children !== stage.children) {
+        next = { ...stage, children };
+      }
+    }
+    if (next !== stage) {
+      if (result === stages) {
+        result = [...stages];
+      }
+      result[index] = next;
+    }
+  });
+  return result;
+}
@@ -0,0 +1,42 @@
+import { Result } from "../../pipeline-graph-view/pipeline-graph/main/PipelineGraphModel.tsx";
+import { StepInfo } from "../RestClient.tsx";
+import { applyStepDelta } from "./step-delta.ts";
+
+describe("applyStepDelta", () => {
+  it("returns the same steps for an empty delta", () => {
+    const steps = [step("5", "3")];
+    expect(applyStepDelta(steps, [])).toBe(steps);
+  });
+
+  it("replaces changed steps and appends new ones in order", () => {
+    const steps = [step("5", "3"), step("6", "3"), step("12", "10")];
+
+    const result = applyStepDelta(steps, [
+      step("13", "10"),
+      step("6", "3", { state: Result.success }),
+      step("7", "3"),
+    ]);
+
+    expect(result.map((s) => s.id)).toEqual(["5", "6", "7", "12", "13"]);
+    expect(result[1].state).toBe(Result.success);
+  });
+});
+
+function step(
+  id: string,
+  stageId: string,
+  overrides: Partial<StepInfo> = {},
+): StepInfo {
+  return {
+    name: `step ${id}`,
+    title: "",
+    state: Result.running,
+    id,
+    type: "STEP",
+    stageId,
+    pauseDurationMillis: 0,
+    startTimeMillis: 0,
+    totalDurationMillis: 0,
+    ...overrides,
+  };
+}
@@ -0,0 +1,20 @@
+import { StepInfo } from "../RestClient.tsx";
+
+/**
+ * Applies an `allSteps?since=` delta: changed steps replace the step with the same id and
+ * new ones are added, keeping the server's (stageId, id) numeric order.
+ */
+export const applyStepDelta = (
+  steps: StepInfo[],
+  changed: StepInfo[],
+): StepInfo[] => {
+  if (changed.length === 0) {
+    return steps;
+  }
+  const byId = new Map(steps.map((step) => [step.id, step]));
+  changed.forEach((step) => byId.set(step.id, step));
+  return [...byId.values()].sort(
+    (a, b) =>
+      Number(a.stageId) - Number(b.stageId) || Number(a.id) - Number(b.id),
+  );
+};
@@ -1,19 +1,55 @@
 import { useEffect, useState } from "react";
 
+/**
+ * Lets a push channel drive polling: `subscribe` calls `wake` when new data is available,
+ * and while `isLive` is true the fallback interval is stretched.
+ */
+export interface PollTrigger {
+  subscribe: (wake: () => void) => () => void;
+  isLive: () => boolean;
+}
+
+// While a push channel is live, still poll occasionally in case a notification is lost.
+const LIVE_INTERVAL_FACTOR = 10;
+
 export function usePolling<T extends { raw?: string }>(
   update: () => Promise<T>,
   interval: number,
   completeKey: keyof T,
   defaultValue: T,
   postProcess?: (next: T) => Promise<T>,
+  trigger?: PollTrigger,
 ) {
   const [data, setData] = useState<T>(defaultValue);
   const [loading, setLoading] = useState<boolean>(true);
   useEffect(() => {
     let polling = true;
     let lastRaw = "";
+    // Set by a wake that arrives mid-fetch, so the next sleep is skipped.
+    let woken = false;
+    let wakeSleep: (() => void) | null = null;
+    const unsubscribe = trigger?.subscribe(() => {
+      woken = true;
+      wakeSleep?.();
+    });
+    const sleep = () =>
+      new Promise<void>((resolve) => {
+        if (woken) {
+          resolve();
+          return;
+        }
+        const delay = trigger?.isLive()
+          ? interval * LIVE_INTERVAL_FACTOR
+          : interval;
+        const timeout = setTimeout(resolve, delay);
+        wakeSleep = () => {
+          clearTimeout(timeout);
+          resolve();
+        };
+      });
     const poll = async () => {
       while (polling) {
+        woken = false;
         try {
           const data = await update();
           if (data.raw !== lastRaw) {
@@ -32,13 +68,17 @@ export function usePolling<T extends { raw?: string }>(
           console.error(err);
         }
         if (!polling) break;
-        await new Promise((resolve) => setTimeout(resolve, interval));
+        await sleep();
+        wakeSleep = null;
       }
+      unsubscribe?.();
     };
     poll();
     return () => {
       polling = false;
+      wakeSleep?.();
+      unsubscribe?.();
     };
-  }, [completeKey, interval, update, postProcess]);
+  }, [completeKey, interval, update, postProcess, trigger]);
   return { data, loading };
 }
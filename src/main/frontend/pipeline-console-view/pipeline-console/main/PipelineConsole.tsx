@@ -55,6 +55,8 @@ export default function PipelineConsole() {
     showEarlyConsoleText,
     openStage,
     openStageSteps,
+    openStageStepsRemaining,
+    loadMoreOpenStageSteps,
     stepBuffers,
     expandedSteps,
     expandAllForStage,
@@ -196,6 +198,8 @@ export default function PipelineConsole() {
                   fetchLogText={fetchLogText}
                   fetchExceptionText={fetchExceptionText}
                   currentRunPath={currentRunPath}
+                  stepsRemaining={openStageStepsRemaining}
+                  loadMoreSteps={loadMoreOpenStageSteps}
                 />
               )}
             </div>
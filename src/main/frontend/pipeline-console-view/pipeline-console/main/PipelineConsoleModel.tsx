@@ -8,4 +8,7 @@ export { Result } from "../../../pipeline-graph-view/pipeline-graph/main/Pipelin
 
 export const LOG_FETCH_SIZE = 150 * 1024;
 export const POLL_INTERVAL = 1000;
+// Runs with more steps than this load them one stage at a time, STEPS_PAGE_SIZE at a time.
+export const LAZY_STEPS_THRESHOLD = 5000;
+export const STEPS_PAGE_SIZE = 500;
 export const TAIL_CONSOLE_LOG = -LOG_FETCH_SIZE;
@@ -28,6 +28,8 @@ export default function StageView(props: StageViewProps) {
         fetchLogText={props.fetchLogText}
         fetchExceptionText={props.fetchExceptionText}
         currentRunPath={props.currentRunPath}
+        stepsRemaining={props.stepsRemaining}
+        loadMoreSteps={props.loadMoreSteps}
       />
     </>
   );
@@ -50,4 +52,6 @@ export interface StageViewProps {
   scrollToTail: (stepId: string, element: HTMLDivElement) => void;
   stopTailingLogs: () => void;
   currentRunPath: string;
+  stepsRemaining?: number;
+  loadMoreSteps?: () => void;
 }
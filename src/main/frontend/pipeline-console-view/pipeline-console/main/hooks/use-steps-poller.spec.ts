@@ -39,13 +39,22 @@ vi.mock("../../../../common/tree-api.ts", () => ({
 vi.mock("../PipelineConsoleModel.tsx", async () => ({
   ...(await vi.importActual("../PipelineConsoleModel.tsx")),
   getRunSteps: vi.fn(),
+  getRunStepsPage: vi.fn(),
   getConsoleTextOffset: vi.fn(),
   getExceptionText: vi.fn().mockResolvedValue(["Error message"]),
   POLL_INTERVAL: 50,
+  LAZY_STEPS_THRESHOLD: 10,
+  STEPS_PAGE_SIZE: 1,
 }));
 
 beforeEach(() => {
   (model.getRunSteps as Mock).mockResolvedValue({ steps: mockSteps });
+  (model.getRunStepsPage as Mock).mockResolvedValue({
+    steps: [],
+    runIsComplete: false,
+    offset: 0,
+    total: mockSteps.length,
+  });
   (model.getConsoleTextOffset as Mock).mockResolvedValue({
     consoleAnnotator: "",
     text: "log line\n",
@@ -706,3 +715,95 @@ function expectSameStepBuffer(a?: StepLogBufferInfo, b?: StepLogBufferInfo) {
   // Ignore lastFetched timestamp when comparing two buffers.
   expect({ ...a, lastFetched: 0 }).to.deep.equal({ ...b, lastFetched: 0 });
 }
+
+it("merges step deltas into the existing list", async () => {
+  (model.getRunSteps as Mock).mockImplementation(
+    async (_path: string, since?: number) => {
+      if (since === undefined) {
+        return {
+          raw: "full",
+          steps: [
+            { id: "5", title: "Step 5", stageId: "3", state: "running" },
+          ],
+          runIsComplete: false,
+          version: 8,
+        };
+      }
+      return {
+        raw: `delta ${since}`,
+        steps:
+          since === 8
+            ? [
+                { id: "5", title: "Step 5", stageId: "3", state: "success" },
+                { id: "9", title: "Step 9", stageId: "3", state: "running" },
+              ]
+            : [],
+        runIsComplete: false,
+        version: 10,
+        delta: true,
+      };
+    },
+  );
+
+  const { result, unmount } = renderHook(() =>
+    useStepsPoller({ currentRunPath: "/run/1" }),
+  );
+
+  await waitFor(() =>
+    expect(result.current.openStageSteps).to.deep.equal([
+      { id: "5", title: "Step 5", stageId: "3", state: "success" },
+      { id: "9", title: "Step 9", stageId: "3", state: "running" },
+    ]),
+  );
+  expect(model.getRunSteps as Mock).toHaveBeenCalledWith("/run/1", 8);
+
+  unmount();
+});
+
+it("loads the open stage's steps in windows for large runs", async () => {
+  const stageSteps = [
+    { id: "s1", title: "Step 1", stageId: "stage-2", state: "success" },
+    { id: "s2", title: "Step 2", stageId: "stage-2", state: "running" },
+  ];
+  (model.getRunStepsPage as Mock).mockImplementation(
+    async (_path: string, stage: string, offset: number, limit: number) => {
+      const matched = stage
+        ? stageSteps.filter((step) => step.stageId === stage)
+        : [];
+      return {
+        raw: `${stage} ${offset} ${limit}`,
+        steps: matched.slice(offset, offset + limit),
+        runIsComplete: false,
+        stage,
+        offset,
+        total: stage ? matched.length : 11,
+      };
+    },
+  );
+
+  const { result, unmount } = renderHook(() =>
+    useStepsPoller({ currentRunPath: "/run/1" }),
+  );
+
+  // No step says which stage to tail, so the last one opens, one window at a time.
+  await waitFor(() =>
+    expect(result.current.openStageSteps).to.deep.equal([stageSteps[0]]),
+  );
+  expect(result.current.openStage?.id).toBe("stage-2");
+  expect(result.current.openStageStepsRemaining).toBe(1);
+
+  act(() => result.current.loadMoreOpenStageSteps());
+  await waitFor(() =>
+    expect(result.current.openStageSteps).to.deep.equal(stageSteps),
+  );
+  expect(result.current.openStageStepsRemaining).toBe(0);
+  expect(model.getRunStepsPage as Mock).toHaveBeenCalledWith(
+    "/run/1",
+    "stage-2",
+    1,
+    1,
+  );
+  expect(model.getRunSteps as Mock).not.toHaveBeenCalled();
+
+  unmount();
+});
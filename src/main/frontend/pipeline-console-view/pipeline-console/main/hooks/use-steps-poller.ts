@@ -1,18 +1,23 @@
 import { useCallback, useEffect, useMemo, useRef, useState } from "react";
 
 import useRunPoller from "../../../../common/tree-api.ts";
+import { runEventsTrigger } from "../../../../common/utils/run-events.ts";
 import { refreshStagesFromSteps } from "../../../../common/utils/refresh-stages-from-steps.ts";
+import { applyStepDelta } from "../../../../common/utils/step-delta.ts";
 import { usePolling } from "../../../../common/utils/use-polling.ts";
 import {
   AllStepsData,
   getConsoleTextOffset,
   getExceptionText,
   getRunSteps,
+  getRunStepsPage,
+  LAZY_STEPS_THRESHOLD,
   POLL_INTERVAL,
   Result,
   StageInfo,
   StepInfo,
   StepLogBufferInfo,
+  STEPS_PAGE_SIZE,
   TAIL_CONSOLE_LOG,
 } from "../PipelineConsoleModel.tsx";
 
@@ -138,6 +143,23 @@ function getDefaultSelectedStep(steps: StepInfo[], runIsComplete: boolean) {
   return selectedStep;
 }
 
+// For runs whose steps load one stage at a time: the first stage still going, else the last.
+function getDefaultSelectedStage(stages: StageInfo[]): StageInfo | null {
+  const findPending = (stages: StageInfo[]): StageInfo | null => {
+    for (const stage of stages) {
+      if (
+        stage.state === Result.running ||
+        stage.state === Result.paused ||
+        stage.state === Result.queued
+      ) {
+        return findPending(stage.children) ?? stage;
+      }
+    }
+    return null;
+  };
+  return findPending(stages) ?? stages[stages.length - 1] ?? null;
+}
+
 async function fetchStepLogDetail(
   stepBuffers: Map<string, StepLogBufferInfo>,
   stepId: string,
@@ -172,19 +194,114 @@ export function useStepsPoller({
     currentRunPath,
     previousRunPath,
   });
-  const fetchRunSteps = useCallback(
-    () => getRunSteps(currentRunPath),
+  // Last step list applied for the current run, so later polls can ask for changes only.
+  const latestSteps = useRef<LatestSteps>(null);
+  // Large runs (see LAZY_STEPS_THRESHOLD) don't poll the whole step list: each stage's steps
+  // are fetched in windows once it's opened, and only the open stage's window is polled.
+  const lazyRun = useRef<{ path: string; lazy: boolean }>(null);
+  const [lazy, setLazy] = useState(false);
+  const [stageWindows, setStageWindows] = useState(
+    () => new Map<string, StageWindow>(),
+  );
+  // Make the latest windows and open stage available to the poller without restarting it.
+  const stageWindowsRef = useRef(stageWindows);
+  useEffect(() => {
+    stageWindowsRef.current = stageWindows;
+  }, [stageWindows]);
+  const openStageIdRef = useRef("");
+  const fetchStageWindow = useCallback(
+    async (stageId: string, offset: number, limit: number) => {
+      const page = await getRunStepsPage(
+        currentRunPath,
+        stageId,
+        offset,
+        limit,
+      );
+      setStageWindows((prev) => {
+        const known = prev.get(stageId)?.steps ?? [];
+        const next = new Map(prev);
+        next.set(stageId, {
+          // Keep whatever a concurrent "load more" fetched past this window.
+          steps: [
+            ...known.slice(0, page.offset),
+            ...page.steps,
+            ...known.slice(page.offset + page.steps.length),
+          ],
+          total: page.total,
+        });
+        return next;
+      });
+      return page;
+    },
+    [currentRunPath],
+  );
+  const fetchRunSteps = useCallback(async (): Promise<AllStepsData> => {
+    let mode = lazyRun.current;
+    if (mode?.path !== currentRunPath) {
+      const probe = await getRunStepsPage(currentRunPath, undefined, 0, 0);
+      mode = {
+        path: currentRunPath,
+        lazy: probe.total > LAZY_STEPS_THRESHOLD,
+      };
+      lazyRun.current = mode;
+      setLazy(mode.lazy);
+    }
+    if (mode.lazy) {
+      const stageId = openStageIdRef.current;
+      const loaded = stageWindowsRef.current.get(stageId)?.steps.length ?? 0;
+      const page =
+        stageId && stageId !== "-1"
+          ? await fetchStageWindow(
+              stageId,
+              0,
+              Math.max(loaded, STEPS_PAGE_SIZE),
+            )
+          : await getRunStepsPage(currentRunPath, undefined, 0, 0);
+      // The windows are kept apart; this only tells the poller when to stop.
+      return { steps: [], runIsComplete: page.runIsComplete, raw: page.raw };
+    }
+    const known =
+      latestSteps.current?.path === currentRunPath
+        ? latestSteps.current
+        : null;
+    let next =
+      known?.version === undefined
+        ? await getRunSteps(currentRunPath)
+        : await getRunSteps(currentRunPath, known.version);
+    if (next.delta && !known) {
+      next = await getRunSteps(currentRunPath);
+    }
+    const merged =
+      next.delta && known ? applyStepDelta(known.steps, next.steps) : next.steps;
+    latestSteps.current = {
+      path: currentRunPath,
+      version: next.version,
+      steps: merged,
+    };
+    return { ...next, steps: merged, delta: false };
+  }, [currentRunPath, fetchStageWindow]);
+  const trigger = useMemo(
+    () => runEventsTrigger(currentRunPath),
     [currentRunPath],
   );
   const {
-    data: { steps, runIsComplete },
-  } = usePolling<AllStepsData>(fetchRunSteps, POLL_INTERVAL, "runIsComplete", {
-    steps: [],
-    runIsComplete: false,
-  });
+    data: { steps: polledSteps, runIsComplete },
+  } = usePolling<AllStepsData>(
+    fetchRunSteps,
+    POLL_INTERVAL,
+    "runIsComplete",
+    { steps: [], runIsComplete: false },
+    undefined,
+    trigger,
+  );
+  const [openStageId, setOpenStageId] = useState("");
+  // Only the open stage's window is kept fresh, so that's all large runs look at.
+  const steps = useMemo(
+    () => (lazy ? (stageWindows.get(openStageId)?.steps ?? []) : polledSteps),
+    [lazy, stageWindows, openStageId, polledSteps],
+  );
   run.stages = refreshStagesFromSteps(run.stages, steps);
 
-  const [openStageId, setOpenStageId] = useState("");
   const openStage = useMemo(() => {
     const findStage = (stages: StageInfo[]): StageInfo | null => {
       for (const stage of stages) {
@@ -374,6 +491,23 @@ export function useStepsPoller({
       return;
     }
 
+    const findStage = (stages: StageInfo[]): StageInfo | undefined => {
+      for (const stage of stages) {
+        if (String(stage.id) === selected) return stage;
+        if (stage.children?.length) {
+          const child = findStage(stage.children);
+          if (child) return child;
+        }
+      }
+      return undefined;
+    };
+    if (lazy && !findStage(run.stages)) {
+      // Large runs only hold the steps of the stages opened so far, so a step of another
+      // stage can't be found. Fall back to the default stage.
+      parsedURLParams.current = true;
+      return;
+    }
+
     if (steps.length > 0) {
       // Steps have arrived but `selected` matches none — assume it's a stage ID.
       parsedURLParams.current = true;
@@ -385,22 +519,12 @@ export function useStepsPoller({
 
     // No steps yet (e.g. queued stage) — only honour the URL if `selected`
     // matches a known stage. Otherwise wait for steps to arrive.
-    const findStage = (stages: StageInfo[]): StageInfo | undefined => {
-      for (const stage of stages) {
-        if (String(stage.id) === selected) return stage;
-        if (stage.children?.length) {
-          const child = findStage(stage.children);
-          if (child) return child;
-        }
-      }
-      return undefined;
-    };
     if (findStage(run.stages)) {
       parsedURLParams.current = true;
       stopTailingLogs();
       setOpenStageId(selected);
     }
-  }, [steps, run.stages, expandLastStageStep, stopTailingLogs]);
+  }, [lazy, steps, run.stages, expandLastStageStep, stopTailingLogs]);
 
   useEffect(() => {
     let defaultStep;
@@ -428,6 +552,42 @@ export function useStepsPoller({
     });
   }, [steps, tailLogs, runIsComplete, tailStage, stopTailingLogs]);
 
+  useEffect(() => {
+    // Large runs have no steps to pick the default step from until their stage is open, so
+    // pick the stage from the tree instead, and move on once it's done.
+    if (
+      !lazy ||
+      !parsedURLParams.current ||
+      !tailLogsRef.current ||
+      tailStage
+    ) {
+      return;
+    }
+    if (openStageId && openStage?.state === Result.running) return;
+    const stage = getDefaultSelectedStage(run.stages);
+    if (stage && String(stage.id) !== openStageId) {
+      setOpenStageId(String(stage.id));
+    }
+  }, [lazy, run.stages, tailLogs, tailStage, openStageId, openStage?.state]);
+
+  useEffect(() => {
+    openStageIdRef.current = openStageId;
+    if (!lazy || !openStageId || openStageId === "-1") return;
+    // Also refreshes a window fetched earlier, which stopped being polled when its stage
+    // was closed.
+    const loaded = stageWindowsRef.current.get(openStageId)?.steps.length ?? 0;
+    fetchStageWindow(
+      openStageId,
+      0,
+      Math.max(loaded, STEPS_PAGE_SIZE),
+    ).catch(console.error);
+  }, [lazy, openStageId, fetchStageWindow]);
+
+  const loadMoreOpenStageSteps = useCallback(() => {
+    const loaded = stageWindowsRef.current.get(openStageId)?.steps.length ?? 0;
+    fetchStageWindow(openStageId, loaded, STEPS_PAGE_SIZE).catch(console.error);
+  }, [openStageId, fetchStageWindow]);
+
   const handleStageSelect = useCallback((nodeId: string) => {
     if (!nodeId) return;
 
@@ -467,12 +627,22 @@ export function useStepsPoller({
   const openStageSteps = useMemo(() => {
     return steps.filter((step) => step.stageId === openStageId);
   }, [steps, openStageId]);
+  const openStageStepsTotal = lazy
+    ? (stageWindows.get(openStageId)?.total ?? 0)
+    : openStageSteps.length;
+  // Steps of the open stage not fetched yet, which only large runs leave behind.
+  const openStageStepsRemaining = Math.max(
+    0,
+    openStageStepsTotal - openStageSteps.length,
+  );
 
   const showEarlyConsoleText = openStageId === "-1";
 
   return {
     openStage,
     openStageSteps,
+    openStageStepsRemaining,
+    loadMoreOpenStageSteps,
     stepBuffers: stepBuffersRef.current,
     expandedSteps,
     complete: runIsComplete,
@@ -496,3 +666,16 @@ interface RunPollerProps {
   currentRunPath: string;
   previousRunPath?: string;
 }
+
+interface StageWindow {
+  // The first steps of the stage, in order.
+  steps: StepInfo[];
+  // How many steps the stage had when last fetched.
+  total: number;
+}
+
+interface LatestSteps {
+  path: string;
+  version?: number;
+  steps: StepInfo[];
+}
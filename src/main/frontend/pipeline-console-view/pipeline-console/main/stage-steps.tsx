@@ -1,5 +1,6 @@
 import "./stage-steps.scss";
 
+import { LocalizedMessageKey, useMessages } from "../../../common/i18n";
 import { StepInfo, StepLogBufferInfo } from "../../../common/RestClient.tsx";
 import ConsoleLogCard from "./ConsoleLogCard.tsx";
 import { StageInfo } from "./PipelineConsoleModel.tsx";
@@ -17,8 +18,11 @@ export default function StageSteps({
   fetchLogText,
   fetchExceptionText,
   currentRunPath,
+  stepsRemaining = 0,
+  loadMoreSteps,
 }: StageStepsProps) {
   const { showHiddenSteps } = useFilter();
+  const messages = useMessages();
 
   if (steps.length === 0) {
     return null;
@@ -48,6 +52,16 @@ export default function StageSteps({
             />
           );
         })}
+      {stepsRemaining > 0 && loadMoreSteps && (
+        <button
+          onClick={loadMoreSteps}
+          className={"pgv-show-more-steps jenkins-button"}
+        >
+          {messages.format(LocalizedMessageKey.loadMoreSteps, {
+            0: stepsRemaining,
+          })}
+        </button>
+      )}
     </div>
   );
 }
@@ -67,4 +81,7 @@ export interface StageStepsProps {
   scrollToTail: (stepId: string, element: HTMLDivElement) => void;
   stopTailingLogs: () => void;
   currentRunPath: string;
+  // Steps of the stage not fetched yet; only large runs load a stage's steps in windows.
+  stepsRemaining?: number;
+  loadMoreSteps?: () => void;
 }
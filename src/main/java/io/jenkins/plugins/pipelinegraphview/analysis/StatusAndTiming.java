@@ -32,7 +32,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.model.Action;
 import hudson.model.Result;
 import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
-import io.jenkins.plugins.pipelinegraphview.livestate.WarningActionCache;
+import io.jenkins.plugins.pipelinegraphview.livestate.WarningActionIndex;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -42,6 +42,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
@@ -354,13 +355,17 @@ public class StatusAndTiming {
         if (DISABLE_WARNING_ACTION_LOOKUP) {
             return null;
         }
-        // Only memoise closed blocks: once a BlockEndNode exists, the set of inner nodes is
-        // fixed and WarningActions on them don't change. For open-ended chunks (start == end,
-        // or end isn't a block end) the scan is either trivial or the result may still change.
-        boolean cacheable = start != end && end instanceof BlockEndNode<?>;
-        WarningActionCache cache = cacheable ? LiveGraphRegistry.get().warningActionCache(start.getExecution()) : null;
-        if (cache != null) {
-            return cache.getOrCompute(start.getId(), end.getId(), () -> scanForWarning(start, end));
+        // Closed blocks are answered from the run's index: once a BlockEndNode exists, the set
+        // of inner nodes is fixed and WarningActions on them don't change. For open-ended
+        // chunks (start == end, or end isn't a block end) the scan is either trivial or the
+        // result may still change.
+        boolean indexable = start != end && end instanceof BlockEndNode<?>;
+        WarningActionIndex index = indexable ? LiveGraphRegistry.get().warningActionIndex(start.getExecution()) : null;
+        if (index != null) {
+            Optional<WarningAction> worst = index.worstBetween(start, end);
+            if (worst != null) {
+                return worst.orElse(null);
+            }
         }
         return scanForWarning(start, end);
     }
@@ -3,6 +3,7 @@ package io.jenkins.plugins.pipelinegraphview.consoleview;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Plugin;
+import hudson.Util;
 import hudson.console.AnnotatedLargeText;
 import hudson.model.BallColor;
 import hudson.model.Item;
@@ -17,8 +18,9 @@ import io.jenkins.plugins.pipelinegraphview.cards.RunDetailsItem;
 import io.jenkins.plugins.pipelinegraphview.cards.items.ArtifactRunDetailsItem;
 import io.jenkins.plugins.pipelinegraphview.cards.items.ChangesRunDetailsItem;
 import io.jenkins.plugins.pipelinegraphview.cards.items.TestResultRunDetailsItem;
+import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
 import io.jenkins.plugins.pipelinegraphview.utils.EarlyConsoleText;
-import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraph;
+import io.jenkins.plugins.pipelinegraphview.utils.Etags;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphApi;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphViewCache;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineJsonWriter;
@@ -26,6 +28,8 @@ import io.jenkins.plugins.pipelinegraphview.utils.PipelineNodeUtil;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStep;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepApi;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepList;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepPage;
+import io.jenkins.plugins.pipelinegraphview.utils.ResponseBytes;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -90,35 +94,98 @@ public class PipelineConsoleViewAction extends Tab {
             return;
         }
         logger.debug("getSteps was passed nodeId '{}'.", nodeId);
-        PipelineStepList steps = stepApi.getSteps(nodeId);
         rsp.setStatus(200);
         rsp.setContentType("application/json;charset=UTF-8");
+        // Completed runs: read just this stage's segment of the cached step list.
+        if (PipelineGraphViewCache.get().tryServeStageSteps(run, nodeId, req, rsp)) {
+            return;
+        }
+        PipelineStepList steps = stepApi.getSteps(nodeId);
         PipelineJsonWriter.write(steps, rsp.getOutputStream());
     }
 
     // Return all steps to:
     // - reduce number of API calls
     // - remove dependency of getting list of stages in frontend.
+    // - with stage, offset or limit: one window of one stage's (or all) steps, so clients
+    //   don't need the whole list of very large runs up front.
     @GET
     @WebMethod(name = "allSteps")
     public void getAllSteps(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException, ServletException {
         run.checkPermission(Item.READ);
         rsp.setStatus(200);
         rsp.setContentType("application/json;charset=UTF-8");
+        String stage = Util.fixEmpty(req.getParameter("stage"));
+        String offset = req.getParameter("offset");
+        String limit = req.getParameter("limit");
+        if (stage != null || offset != null || limit != null) {
+            writeStepPage(req, rsp, stage, toCount(offset, 0), toCount(limit, Integer.MAX_VALUE));
+            return;
+        }
         // Speculative: a cache hit always implies the run was complete when persisted.
         // Overwritten below if we fall through to the compute path.
         setCache(rsp, true);
-        if (PipelineGraphViewCache.get().tryServeAllSteps(run, rsp.getOutputStream())) {
+        if (PipelineGraphViewCache.get().tryServeAllSteps(run, req, rsp)) {
             return;
         }
-        PipelineStepList steps = stepApi.getAllSteps();
-        setCache(rsp, steps.runIsComplete);
-        PipelineJsonWriter.write(steps, rsp.getOutputStream());
+        if (notModified(req, rsp, LiveGraphRegistry.get().stepsEtag(run))) {
+            return;
+        }
+        String since = req.getParameter("since");
+        // See getTree: completed runs were already served from the disk cache.
+        ResponseBytes body = since != null
+                ? stepApi.getAllStepsUpdateResponse(parseLongWithDefault(since, -1))
+                : stepApi.getAllStepsResponse();
+        setCache(rsp, body.complete());
+        body.writeTo(req, rsp);
+    }
+
+    // Pages of one stage of a completed run are read from that stage's segment of the disk
+    // cache (see PipelineStepApi#getStepPage); other pages are cut from the cached step list.
+    private void writeStepPage(
+            StaplerRequest2 req, StaplerResponse2 rsp, @CheckForNull String stage, int offset, int limit)
+            throws IOException {
+        if (notModified(req, rsp, LiveGraphRegistry.get().stepsEtag(run))) {
+            return;
+        }
+        PipelineStepPage page = stepApi.getStepPage(stage, offset, limit);
+        setCache(rsp, page.runIsComplete);
+        ResponseBytes.streamed(page, page.runIsComplete).writeTo(req, rsp);
+    }
+
+    private static int toCount(@CheckForNull String s, int defaultValue) {
+        if (s == null) {
+            return defaultValue;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, parseLongWithDefault(s, defaultValue)));
+    }
+
+    // Tags are only handed out for live runs; their bodies are gzipped whenever the request
+    // allows it (see ResponseBytes), so the tag follows the same rule.
+    private static boolean notModified(StaplerRequest2 req, StaplerResponse2 rsp, @CheckForNull String etag) {
+        if (Etags.notModified(req, rsp, Etags.forCoding(etag, ResponseBytes.acceptsGzip(req)))) {
+            rsp.addHeader("Vary", "Accept-Encoding");
+            rsp.setHeader("Cache-Control", "private, no-cache");
+            return true;
+        }
+        return false;
+    }
+
+    // Push channel for in-progress runs: version-change notifications as Server-Sent Events,
+    // so clients can poll tree/allSteps only when something changed.
+    @GET
+    @WebMethod(name = "events")
+    public void getEvents(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        run.checkPermission(Item.READ);
+        PipelineEventStream.open(run, req, rsp);
     }
 
     private void setCache(StaplerResponse2 rsp, boolean complete) {
         if (complete) {
             rsp.setHeader("Cache-Control", "private, immutable, max-age=" + CACHE_AGE);
+        } else if (rsp.containsHeader("ETag")) {
+            // Let the browser keep the body and revalidate it; unchanged polls then get a 304.
+            rsp.setHeader("Cache-Control", "private, no-cache");
         } else {
             rsp.setHeader("Cache-Control", "private, no-store");
         }
@@ -240,12 +307,10 @@ public class PipelineConsoleViewAction extends Tab {
         return false;
     }
 
-    private static long parseIntWithDefault(String s, long defaultValue) {
+    private static long parseLongWithDefault(String s, long defaultValue) {
         try {
-            logger.debug("Parsing user provided value of '{}'", s);
             return Long.parseLong(s);
         } catch (NumberFormatException e) {
-            logger.debug("Using default value of '{}'", defaultValue);
             return defaultValue;
         }
     }
@@ -523,15 +588,53 @@ public class PipelineConsoleViewAction extends Tab {
     @WebMethod(name = "tree")
     public void getTree(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException, ServletException {
         run.checkPermission(Item.READ);
+        String since = req.getParameter("since");
+        String waitForVersion = req.getParameter("waitForVersion");
+        if (waitForVersion != null) {
+            // Long-poll: answers like ?since=, defaulting since to the awaited version.
+            long waitFor = parseLongWithDefault(waitForVersion, -1);
+            long sinceVersion = since == null ? waitFor : parseLongWithDefault(since, -1);
+            long timeout =
+                    parseLongWithDefault(req.getParameter("timeout"), PipelineTreeLongPoll.DEFAULT_TIMEOUT_MILLIS);
+            if (!PipelineTreeLongPoll.park(
+                    run, waitFor, timeout, req, () -> writeTreeUpdate(req, rsp, sinceVersion))) {
+                writeTreeUpdate(req, rsp, sinceVersion);
+            }
+            return;
+        }
+        if (since != null) {
+            writeTreeUpdate(req, rsp, parseLongWithDefault(since, -1));
+            return;
+        }
         rsp.setStatus(200);
         rsp.setContentType("application/json;charset=UTF-8");
         setCache(rsp, true);
-        if (PipelineGraphViewCache.get().tryServeTree(run, rsp.getOutputStream())) {
+        if (PipelineGraphViewCache.get().tryServeTree(run, req, rsp)) {
+            return;
+        }
+        if (notModified(req, rsp, LiveGraphRegistry.get().treeEtag(run))) {
+            return;
+        }
+        ResponseBytes tree = graphApi.createTreeResponse();
+        setCache(rsp, tree.complete());
+        tree.writeTo(req, rsp);
+    }
+
+    private void writeTreeUpdate(StaplerRequest2 req, StaplerResponse2 rsp, long since) throws IOException {
+        rsp.setStatus(200);
+        rsp.setContentType("application/json;charset=UTF-8");
+        setCache(rsp, true);
+        // Completed runs are served from the disk cache; the plain graph JSON there reads as
+        // a full (non-delta) update on the client.
+        if (PipelineGraphViewCache.get().tryServeTree(run, req, rsp)) {
+            return;
+        }
+        if (notModified(req, rsp, LiveGraphRegistry.get().treeEtag(run))) {
             return;
         }
-        PipelineGraph tree = graphApi.createTree();
-        setCache(rsp, tree.complete);
-        PipelineJsonWriter.write(tree, rsp.getOutputStream());
+        ResponseBytes update = graphApi.createTreeUpdateResponse(since);
+        setCache(rsp, update.complete());
+        update.writeTo(req, rsp);
     }
 
     // Icon related methods these may appear as unused but are used by /lib/hudson/buildCaption.jelly
@@ -0,0 +1,239 @@
+package io.jenkins.plugins.pipelinegraphview.consoleview;
+
+import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
+import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphSubscriber;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server-Sent Events stream behind {@code stages/events}. Holds no request thread: the
+ * response is parked with {@link AsyncContext} and written from the {@link LiveGraphSubscriber}
+ * callbacks. Clients only get version-change notifications ({@code update}) and a final
+ * {@code complete}; they fetch the actual changes with {@code tree?since=} /
+ * {@code allSteps?since=}.
+ *
+ * <p>Callbacks and heartbeats arrive on the shared {@link Timer}, so writes never block: the
+ * response uses non-blocking IO ({@link WriteListener}), and events for a client that can't
+ * take them yet are coalesced — only the newest version is kept — and written once the
+ * container reports the connection writable again. A stalled client thus costs its own
+ * buffer, not a Timer thread.
+ *
+ * <p>Answers {@code 204 No Content} — which tells {@code EventSource} not to reconnect — when
+ * the run can't be pushed (finished, not tracked live, subscriber budget exhausted, or async
+ * unsupported), so the client stays on plain polling.
+ *
+ * <p>Operator knobs:
+ * <ul>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.consoleview.PipelineEventStream.maxLifetimeSeconds}
+ *       ({@code long}, default {@code 600}) — streams are closed after this long and the
+ *       browser reconnects, so a stream never outlives proxies' idle limits by much.</li>
+ * </ul>
+ */
+final class PipelineEventStream implements LiveGraphSubscriber, AsyncListener, WriteListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineEventStream.class);
+
+    private static final long MAX_LIFETIME_SECONDS =
+            SystemProperties.getLong(PipelineEventStream.class.getName() + ".maxLifetimeSeconds", 600L);
+
+    // Comment lines keep intermediaries from timing the stream out and surface dead
+    // connections as write failures.
+    private static final long HEARTBEAT_SECONDS = 15;
+
+    private final WorkflowRun run;
+    private final AsyncContext context;
+    private ScheduledFuture<?> heartbeat;
+    private boolean done = false;
+
+    // Set once the write listener is registered; null until then.
+    private ServletOutputStream out;
+    // Events waiting for the connection to become writable, all guarded by this. -1 when no
+    // update is pending.
+    private boolean retryPending = true;
+    private long pendingVersion = -1;
+    private boolean heartbeatPending = false;
+    private boolean completePending = false;
+    private boolean completeWritten = false;
+    // Whether something was written since the last flush.
+    private boolean unflushed = false;
+
+    private PipelineEventStream(WorkflowRun run, AsyncContext context) {
+        this.run = run;
+        this.context = context;
+    }
+
+    static void open(WorkflowRun run, StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        if (!run.isBuilding()) {
+            rsp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        AsyncContext context;
+        try {
+            context = req.startAsync();
+        } catch (IllegalStateException e) {
+            logger.debug("async not supported; client falls back to polling", e);
+            rsp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        context.setTimeout(TimeUnit.SECONDS.toMillis(MAX_LIFETIME_SECONDS));
+        PipelineEventStream stream = new PipelineEventStream(run, context);
+        context.addListener(stream);
+        Long version = LiveGraphRegistry.get().currentVersion(run);
+        if (version == null || !LiveGraphRegistry.get().subscribe(run, stream)) {
+            rsp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            stream.finish();
+            return;
+        }
+        rsp.setStatus(HttpServletResponse.SC_OK);
+        rsp.setContentType("text/event-stream;charset=UTF-8");
+        rsp.setHeader("Cache-Control", "private, no-store");
+        // Stop nginx from buffering the stream.
+        rsp.setHeader("X-Accel-Buffering", "no");
+        stream.start(version);
+    }
+
+    private void start(long version) throws IOException {
+        synchronized (this) {
+            // An update may already have arrived since subscribing.
+            pendingVersion = Math.max(pendingVersion, version);
+            heartbeat = Timer.get()
+                    .scheduleAtFixedRate(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        }
+        // The container calls onWritePossible once the response can take the first events.
+        context.getResponse().getOutputStream().setWriteListener(this);
+    }
+
+    @Override
+    public synchronized void updated(long version) {
+        pendingVersion = Math.max(pendingVersion, version);
+        drain();
+    }
+
+    @Override
+    public synchronized void closed() {
+        completePending = true;
+        drain();
+    }
+
+    private synchronized void heartbeat() {
+        heartbeatPending = true;
+        drain();
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        if (out == null) {
+            out = context.getResponse().getOutputStream();
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // The client went away.
+        logger.debug("event stream write failed", t);
+        finish();
+    }
+
+    /**
+     * Writes pending events while the connection takes them without blocking. When it stops
+     * doing so, the container calls {@link #onWritePossible} to resume.
+     */
+    private synchronized void drain() {
+        if (done || out == null) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                String event = nextEvent();
+                if (event != null) {
+                    out.write(event.getBytes(StandardCharsets.UTF_8));
+                    unflushed = true;
+                } else if (unflushed) {
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    if (completeWritten) {
+                        finish();
+                    }
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away.
+            logger.debug("event stream write failed", e);
+            finish();
+        }
+    }
+
+    // Takes the next pending event, or null when none is left. Called with this held.
+    private String nextEvent() {
+        if (retryPending) {
+            retryPending = false;
+            return "retry: 5000\n\n";
+        }
+        if (pendingVersion >= 0) {
+            long version = pendingVersion;
+            pendingVersion = -1;
+            return "event: update\ndata: {\"version\":" + version + "}\n\n";
+        }
+        if (completePending && !completeWritten) {
+            completeWritten = true;
+            return "event: complete\ndata: {}\n\n";
+        }
+        if (heartbeatPending) {
+            heartbeatPending = false;
+            return ": heartbeat\n\n";
+        }
+        return null;
+    }
+
+    private synchronized void finish() {
+        if (done) {
+            return;
+        }
+        done = true;
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+        LiveGraphRegistry.get().unsubscribe(run, this);
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the container.
+        }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+}
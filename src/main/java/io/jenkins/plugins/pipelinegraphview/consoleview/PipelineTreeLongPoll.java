@@ -0,0 +1,202 @@
+package io.jenkins.plugins.pipelinegraphview.consoleview;
+
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
+import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphSubscriber;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Parks a {@code tree?waitForVersion=<v>} request until the run's tree version exceeds
+ * {@code v}, the run's live state goes away (usually completion), or the timeout elapses —
+ * whichever comes first — and then answers it. Uses {@link AsyncContext}, so no request
+ * thread is held while waiting. The wake-up arrives on a shared thread — the
+ * {@link LiveGraphSubscriber} callback's Timer or Caffeine thread, or the container's timeout
+ * thread — so the answer, a tree computation plus a blocking write, is handed to a small
+ * dedicated pool instead.
+ *
+ * <p>Waits on the tree version rather than the node version: steps appended inside a running
+ * stage don't change the tree response, so waking for them would only return an empty delta.
+ *
+ * <p>Operator knobs:
+ * <ul>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.consoleview.PipelineTreeLongPoll.maxTimeoutMillis}
+ *       ({@code long}, default {@code 60000}) — upper bound on the client-supplied
+ *       {@code timeout}, so parked requests stay inside common proxy read timeouts.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.consoleview.PipelineTreeLongPoll.threads}
+ *       ({@code int}, default {@code 4}) — parked requests answered at once.</li>
+ * </ul>
+ */
+final class PipelineTreeLongPoll implements LiveGraphSubscriber, AsyncListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineTreeLongPoll.class);
+
+    static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private static final long MAX_TIMEOUT_MILLIS =
+            SystemProperties.getLong(PipelineTreeLongPoll.class.getName() + ".maxTimeoutMillis", 60_000L);
+
+    private static final int THREADS =
+            Math.max(1, SystemProperties.getInteger(PipelineTreeLongPoll.class.getName() + ".threads", 4));
+
+    // The queue needs no bound of its own: each parked request queues one answer at most,
+    // and parking is capped by the registry's subscriber budget.
+    private static final ThreadPoolExecutor RESPONDERS = newResponders();
+
+    /** Writes the response once the wait is over. */
+    @FunctionalInterface
+    interface Responder {
+        void respond() throws IOException;
+    }
+
+    private final WorkflowRun run;
+    private final long waitForVersion;
+    private final AsyncContext context;
+    private final Responder responder;
+    // The parked request's caller; responses are written on other threads.
+    private final Authentication authentication;
+    private boolean done = false;
+
+    private PipelineTreeLongPoll(
+            WorkflowRun run,
+            long waitForVersion,
+            AsyncContext context,
+            Responder responder,
+            Authentication authentication) {
+        this.run = run;
+        this.waitForVersion = waitForVersion;
+        this.context = context;
+        this.responder = responder;
+        this.authentication = authentication;
+    }
+
+    /**
+     * Parks the request if the run's tree is still at or below {@code waitForVersion}.
+     * Returns {@code false} without touching the response when the caller should answer
+     * immediately: the tree already moved on, the run isn't tracked live, the timeout is not
+     * positive, async isn't supported, or the subscriber budget is exhausted.
+     */
+    static boolean park(
+            WorkflowRun run, long waitForVersion, long timeoutMillis, StaplerRequest2 req, Responder responder) {
+        if (timeoutMillis <= 0 || !isBehind(run, waitForVersion)) {
+            return false;
+        }
+        AsyncContext context;
+        try {
+            context = req.startAsync();
+        } catch (IllegalStateException e) {
+            logger.debug("async not supported; answering tree long-poll immediately", e);
+            return false;
+        }
+        context.setTimeout(Math.min(timeoutMillis, MAX_TIMEOUT_MILLIS));
+        PipelineTreeLongPoll poll =
+                new PipelineTreeLongPoll(run, waitForVersion, context, responder, Jenkins.getAuthentication2());
+        context.addListener(poll);
+        // Once async has started the response has to be completed through the context, so
+        // every later outcome goes through finish().
+        if (!LiveGraphRegistry.get().subscribe(run, poll) || !isBehind(run, waitForVersion)) {
+            // Refused, or the tree advanced between the first check and the subscription.
+            poll.finish();
+        }
+        return true;
+    }
+
+    private static boolean isBehind(WorkflowRun run, long waitForVersion) {
+        Long treeVersion = LiveGraphRegistry.get().currentTreeVersion(run);
+        return treeVersion != null && treeVersion <= waitForVersion;
+    }
+
+    @Override
+    public void updated(long version) {
+        // Notifications follow the node version; only answer once the tree itself moved.
+        if (!isBehind(run, waitForVersion)) {
+            finish();
+        }
+    }
+
+    @Override
+    public void closed() {
+        finish();
+    }
+
+    private static ThreadPoolExecutor newResponders() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                THREADS,
+                THREADS,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "PipelineTreeLongPoll"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+        }
+        LiveGraphRegistry.get().unsubscribe(run, this);
+        try {
+            RESPONDERS.execute(this::respond);
+        } catch (RejectedExecutionException e) {
+            // The queue is unbounded, so only if the pool was shut down. Never leave it parked.
+            respond();
+        }
+    }
+
+    private void respond() {
+        try (ACLContext ignored = ACL.as2(authentication)) {
+            responder.respond();
+        } catch (IOException | RuntimeException e) {
+            // Most likely the client went away while parked.
+            logger.debug("answering tree long-poll failed", e);
+        } finally {
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container.
+            }
+        }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        // Only reached after finish() or a container-side abort; either way just stop waiting.
+        synchronized (this) {
+            done = true;
+        }
+        LiveGraphRegistry.get().unsubscribe(run, this);
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+}
@@ -1,6 +1,8 @@
 package io.jenkins.plugins.pipelinegraphview.livestate;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.pipelinegraphview.analysis.GenericStatus;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
 import io.jenkins.plugins.pipelinegraphview.utils.NodeRunStatus;
 import java.util.Map;
@@ -11,11 +13,18 @@ import java.util.function.Supplier;
  * Per-run cache of computed {@link TimingInfo} and {@link NodeRunStatus} for closed
  * block relationships, keyed by {@code (startId, endId)}. Entries are stable once the
  * block has ended, so the cache never needs to invalidate.
+ *
+ * <p>Finished branches of a parallel that is still running are kept separately: their
+ * timing and status are measured against the open parallel rather than the node after the
+ * branch, but are just as final once the branch has ended. Without them, every poll of a wide
+ * parallel recomputed all of its branches to learn about the few still running.
  */
 public final class BlockResolutionCache {
 
     private final Map<String, TimingInfo> timingByRange = new ConcurrentHashMap<>();
     private final Map<String, NodeRunStatus> statusByRange = new ConcurrentHashMap<>();
+    private final Map<String, TimingInfo> branchTimingByRange = new ConcurrentHashMap<>();
+    private final Map<String, GenericStatus> branchStatusByRange = new ConcurrentHashMap<>();
 
     BlockResolutionCache() {}
 
@@ -31,9 +40,26 @@ public final class BlockResolutionCache {
         return statusByRange.computeIfAbsent(key(startId, endId), k -> computer.get());
     }
 
+    /**
+     * Timing of the finished parallel branch {@code (startId, endId)} inside a parallel that
+     * hasn't ended. A {@code null} result isn't cached.
+     */
+    @CheckForNull
+    public TimingInfo getOrComputeBranchTiming(
+            @NonNull String startId, @NonNull String endId, @NonNull Supplier<TimingInfo> computer) {
+        return branchTimingByRange.computeIfAbsent(key(startId, endId), k -> computer.get());
+    }
+
+    /** Like {@link #getOrComputeBranchTiming}, for the branch's status. */
+    @CheckForNull
+    public GenericStatus getOrComputeBranchStatus(
+            @NonNull String startId, @NonNull String endId, @NonNull Supplier<GenericStatus> computer) {
+        return branchStatusByRange.computeIfAbsent(key(startId, endId), k -> computer.get());
+    }
+
     /** Visible for testing — combined size of the timing and status caches. */
     int size() {
-        return timingByRange.size() + statusByRange.size();
+        return timingByRange.size() + statusByRange.size() + branchTimingByRange.size() + branchStatusByRange.size();
     }
 
     private static String key(String startId, String endId) {
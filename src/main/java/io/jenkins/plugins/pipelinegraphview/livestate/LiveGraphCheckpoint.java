@@ -0,0 +1,221 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the compact part of a {@link LiveGraphState} — node order, ancestry and the
+ * hideFromView / workspace / tree-sensitive flags — in the run's build directory, so that
+ * after a controller restart {@link LiveGraphLifecycle#onResumed} only has to walk the nodes
+ * added since the checkpoint instead of the whole graph. Restoring loads no nodes: they come
+ * back as {@link RestoredNode}s, each read from storage when a reader first needs it.
+ *
+ * <p>Written periodically and on shutdown by {@link LiveGraphCheckpointWork}, and deleted
+ * when the run completes. The format is binary, big-endian: magic and format version, then
+ * per node in capture order its id, direct enclosing id, depth and a flags byte. The file is
+ * created through a temporary file moved into place, then only appended to: each checkpoint
+ * adds the nodes captured since the last one. A torn append leaves a partial last record,
+ * which reading ignores; a failed append makes the next checkpoint write the file afresh.
+ * Anything unreadable is ignored in favour of a full catch-up.
+ *
+ * <p>A node's flags are those it had when appended. The tree-sensitive flag clears once the
+ * node's successor arrives, which for all but the newest few nodes happens long before the
+ * next checkpoint; the rare flag that is stale on restore costs at most one extra tree
+ * rebuild.
+ *
+ * <p>Operator knobs:
+ * <ul>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphCheckpoint.enabled}
+ *       ({@code boolean}, default {@code true}) — set to {@code false} to neither write nor
+ *       read checkpoints; resumed runs then always walk their whole graph.</li>
+ * </ul>
+ */
+final class LiveGraphCheckpoint {
+
+    static final String FILE_NAME = "pipeline-graph-view-live.bin";
+
+    static final byte HIDE_FROM_VIEW = 1;
+    static final byte WORKSPACE_CANDIDATE = 2;
+    static final byte TREE_SENSITIVE = 4;
+
+    // "PGVL"
+    private static final int MAGIC = 0x5047564c;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 2 * Integer.BYTES;
+    private static final int RECORD_LENGTH = 3 * Integer.BYTES + 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveGraphCheckpoint.class);
+
+    private LiveGraphCheckpoint() {}
+
+    static boolean enabled() {
+        return SystemProperties.getBoolean(LiveGraphCheckpoint.class.getName() + ".enabled", true);
+    }
+
+    static Path fileFor(WorkflowRun run) {
+        return run.getRootDir().toPath().resolve(FILE_NAME);
+    }
+
+    /** Writes {@code state}'s checkpoint, unless nothing changed since the last one. */
+    static void write(LiveGraphState state) {
+        Path file = state.checkpointFile();
+        if (file == null || !enabled()) {
+            return;
+        }
+        synchronized (state.checkpointLock()) {
+            LiveGraphState.Checkpoint checkpoint = state.checkpoint();
+            if (checkpoint != null && checkpoint.append() && !Files.exists(file)) {
+                // Deleted behind our back: there's nothing to append to.
+                state.checkpointLost();
+                checkpoint = state.checkpoint();
+            }
+            if (checkpoint == null) {
+                return;
+            }
+            Path dir = file.getParent();
+            if (dir == null || !Files.isDirectory(dir)) {
+                return;
+            }
+            if (checkpoint.append()) {
+                append(file, checkpoint, state);
+            } else {
+                create(file, dir, checkpoint, state);
+            }
+        }
+    }
+
+    private static void append(Path file, LiveGraphState.Checkpoint checkpoint, LiveGraphState state) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND), BUFFER_SIZE))) {
+            writeRecords(out, checkpoint);
+        } catch (IOException e) {
+            logger.warn("Failed to append to live graph checkpoint {}", file, e);
+            // Whatever made it to disk may end in a partial record that later appends would
+            // misalign, so start over next time.
+            state.checkpointLost();
+            delete(file);
+            return;
+        }
+        state.checkpointed(checkpoint.count());
+    }
+
+    private static void create(Path file, Path dir, LiveGraphState.Checkpoint checkpoint, LiveGraphState state) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(dir, FILE_NAME + ".", ".tmp");
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeRecords(out, checkpoint);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+            state.checkpointed(checkpoint.count());
+        } catch (IOException e) {
+            logger.warn("Failed to write live graph checkpoint {}", file, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete temporary live graph checkpoint", e);
+                }
+            }
+        }
+    }
+
+    private static void writeRecords(DataOutputStream out, LiveGraphState.Checkpoint checkpoint) throws IOException {
+        for (int i = 0; i < checkpoint.ids().length; i++) {
+            out.writeInt(checkpoint.ids()[i]);
+            out.writeInt(checkpoint.parents()[i]);
+            out.writeInt(checkpoint.depths()[i]);
+            out.writeByte(checkpoint.flags()[i]);
+        }
+    }
+
+    /**
+     * Loads the run's checkpoint into {@code state}. Returns {@code false}, leaving the state
+     * untouched, when there's no usable checkpoint — missing or unreadable. Nodes aren't read
+     * from storage here; one the execution no longer has poisons the state when first read.
+     */
+    static boolean restore(FlowExecution execution, LiveGraphState state) {
+        Path file = state.checkpointFile();
+        if (file == null || !enabled() || !Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            long size = Files.size(file);
+            if (size < HEADER_LENGTH || in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.info("Ignoring live graph checkpoint {} in an unknown format", file);
+                return false;
+            }
+            // A torn append leaves a partial record at the end; only whole ones count.
+            long records = (size - HEADER_LENGTH) / RECORD_LENGTH;
+            if (records > Integer.MAX_VALUE) {
+                return false;
+            }
+            int count = (int) records;
+            List<RestoredNode> nodes = new ArrayList<>(count);
+            int[] parents = new int[count];
+            int[] depths = new int[count];
+            byte[] flags = new byte[count];
+            for (int i = 0; i < count; i++) {
+                nodes.add(new RestoredNode(execution, Integer.toString(in.readInt()), state));
+                parents[i] = in.readInt();
+                depths[i] = in.readInt();
+                flags[i] = in.readByte();
+            }
+            state.restore(nodes, parents, depths, flags);
+            if ((size - HEADER_LENGTH) % RECORD_LENGTH != 0) {
+                // Appending after the partial record would misalign everything after it.
+                state.checkpointLost();
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read live graph checkpoint {}; walking the whole graph", file, e);
+            return false;
+        }
+    }
+
+    /** Deletes {@code state}'s checkpoint for good, once its run has completed or it was evicted. */
+    static void discard(LiveGraphState state) {
+        Path file = state.checkpointFile();
+        synchronized (state.checkpointLock()) {
+            state.discardCheckpoint();
+            if (file != null) {
+                delete(file);
+            }
+        }
+    }
+
+    /** Deletes a checkpoint {@code file}, whether or not a state still writes it. */
+    static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete live graph checkpoint {}", file, e);
+        }
+    }
+}
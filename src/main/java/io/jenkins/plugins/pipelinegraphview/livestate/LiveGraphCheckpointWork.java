@@ -0,0 +1,51 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes {@link LiveGraphCheckpoint}s for every tracked run that changed since its last one,
+ * on a timer and once more on shutdown. Nodes added between the last checkpoint and a
+ * restart are still found on resume, by walking back from the heads.
+ *
+ * <p>Operator knobs:
+ * <ul>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphCheckpointWork.periodSeconds}
+ *       ({@code long}, default {@code 60}) — how often changed runs are checkpointed.</li>
+ * </ul>
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class LiveGraphCheckpointWork extends PeriodicWork {
+
+    private static final long PERIOD_SECONDS =
+            SystemProperties.getLong(LiveGraphCheckpointWork.class.getName() + ".periodSeconds", 60L);
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveGraphCheckpointWork.class);
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(Math.max(1L, PERIOD_SECONDS));
+    }
+
+    @Override
+    protected void doRun() {
+        LiveGraphRegistry.get().checkpointAll();
+    }
+
+    @Terminator
+    public static void checkpointOnShutdown() {
+        try {
+            LiveGraphRegistry.get().checkpointAll();
+        } catch (Throwable t) {
+            logger.warn("live graph checkpoint on shutdown failed", t);
+        }
+    }
+}
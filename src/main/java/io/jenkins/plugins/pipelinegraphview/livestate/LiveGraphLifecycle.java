@@ -42,12 +42,15 @@ public class LiveGraphLifecycle extends FlowExecutionListener {
     public void onResumed(@NonNull FlowExecution execution) {
         try {
             // Resumed after a Jenkins restart: the execution's persisted graph already holds
-            // nodes we never saw live. Running here (not on the CPS VM) makes a scanner walk
-            // safe.
+            // nodes we never saw live. Running here (not on the CPS VM) makes a graph walk
+            // safe. A checkpoint from before the restart leaves only the newer nodes to walk.
             LiveGraphState state = LiveGraphRegistry.get().getOrCreate(execution);
             if (state != null) {
+                LiveGraphCheckpoint.restore(execution, state);
                 LiveGraphPopulator.catchUp(execution, state);
                 state.markReady();
+                // Catch-up bypasses nodeAdded, so weigh the backfilled graph here.
+                LiveGraphRegistry.get().reweighIfGrown(execution, state);
             }
         } catch (Throwable t) {
             logger.warn("onResumed failed", t);
@@ -66,17 +69,13 @@ public class LiveGraphLifecycle extends FlowExecutionListener {
                     // Share a single adapter so both graph and step builds reuse one
                     // tree-scanner pass.
                     PipelineNodeGraphAdapter adapter = new PipelineNodeGraphAdapter(
-                            run, snapshot.nodes(), snapshot.enclosingIdsByNodeId(), snapshot.activeNodeIds());
+                            run, snapshot.nodes(), snapshot.ancestry(), snapshot.activeNodeIds());
                     // Force runIsComplete=true for the step list: WorkflowRun.isBuilding() can
                     // still return true here even though the execution is complete.
                     graph = new PipelineGraphApi(run)
-                            .createTreeFrom(adapter, snapshot.workspaceNodes(), snapshot.enclosingIdsByNodeId());
+                            .createTreeFrom(adapter, snapshot.workspaceNodes(), snapshot.ancestry());
                     allSteps = new PipelineStepApi(run)
-                            .getAllStepsFrom(
-                                    adapter,
-                                    true,
-                                    snapshot.hideFromViewBlockStartIds(),
-                                    snapshot.enclosingIdsByNodeId());
+                            .getAllStepsFrom(adapter, true, snapshot.hideFromViewBlockStartIds(), snapshot.ancestry());
                 } else {
                     // Fall back to the scanner-backed paths. Defensively copy the step list:
                     // PipelineStepList.steps is publicly mutable and `raw` may be aliased
@@ -1,12 +1,15 @@
 package io.jenkins.plugins.pipelinegraphview.livestate;
 
 import hudson.Extension;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.flow.GraphListener;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
-import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +38,7 @@ public class LiveGraphPopulator implements GraphListener.Synchronous {
                 return; // feature disabled or execution not a WorkflowRun
             }
             state.addNode(node);
+            LiveGraphRegistry.get().nodeAdded(execution, state);
         } catch (Throwable t) {
             // A thrown exception here propagates into the CPS VM and can abort the build.
             // Poison the state so subsequent reads fall back to the scanner; log the failure
@@ -47,24 +51,36 @@ public class LiveGraphPopulator implements GraphListener.Synchronous {
     }
 
     /**
-     * Backfills the live state from the execution's persisted graph. Called only from
-     * {@link LiveGraphLifecycle#onResumed}, which runs on a Jenkins event thread — never
-     * from a {@link GraphListener.Synchronous} path on the CPS VM.
+     * Backfills the live state with the nodes of the execution's persisted graph it hasn't
+     * seen: all of them for a fresh state, or just those added after a restored
+     * {@link LiveGraphCheckpoint}. Walks parents back from the current heads and stops at
+     * restored nodes, whose ancestors the checkpoint holds too. Nodes captured live since the
+     * restart are walked through but not added again: {@code onNewHead} may have added a
+     * head before this runs, without the nodes between it and the checkpoint. Called
+     * only from {@link LiveGraphLifecycle#onResumed}, which runs on a Jenkins event thread —
+     * never from a {@link GraphListener.Synchronous} path on the CPS VM.
      */
     static void catchUp(FlowExecution execution, LiveGraphState state) {
         try {
-            DepthFirstScanner scanner = new DepthFirstScanner();
-            scanner.setup(execution.getCurrentHeads());
-            // The scanner walks from current heads backward (newest→oldest). Add nodes in
-            // the reverse of that order so the state's insertion order matches the
-            // oldest→newest sequence the onNewHead path maintains — LiveGraphState#snapshot
-            // reverses again to surface workspace candidates newest-first.
-            List<FlowNode> scanned = new ArrayList<>();
-            for (FlowNode existing : scanner) {
-                scanned.add(existing);
+            List<FlowNode> missing = new ArrayList<>();
+            Set<String> visited = new HashSet<>();
+            ArrayDeque<FlowNode> pending = new ArrayDeque<>(execution.getCurrentHeads());
+            while (!pending.isEmpty()) {
+                FlowNode node = pending.pop();
+                if (!visited.add(node.getId()) || state.restoredFromCheckpoint(node.getId())) {
+                    continue;
+                }
+                if (!state.hasSeen(node.getId())) {
+                    missing.add(node);
+                }
+                pending.addAll(node.getParents());
             }
-            for (int i = scanned.size() - 1; i >= 0; i--) {
-                state.addNode(scanned.get(i));
+            // Ids are allocated in creation order. Adding oldest first keeps the state's
+            // insertion order the same as the onNewHead path maintains —
+            // LiveGraphState#snapshot reverses it to surface workspace candidates newest-first.
+            missing.sort(Comparator.comparingInt(node -> Integer.parseInt(node.getId())));
+            for (FlowNode node : missing) {
+                state.addNode(node);
             }
         } catch (Throwable t) {
             logger.warn("catch-up failed; poisoning state", t);
@@ -2,10 +2,17 @@ package io.jenkins.plugins.pipelinegraphview.livestate;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraph;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepList;
+import io.jenkins.plugins.pipelinegraphview.utils.StageChangeLog;
+import io.jenkins.plugins.pipelinegraphview.utils.StepChangeLog;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import jenkins.util.SystemProperties;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -14,7 +21,8 @@ import org.jenkinsci.plugins.workflow.job.WorkflowRun;
  * Singleton holding one {@link LiveGraphState} per in-progress run.
  * Entries are created on demand by the listener / lifecycle code, removed on completion,
  * and otherwise bounded by a Caffeine LRU so abandoned entries (deleted runs, listener
- * bugs) don't leak.
+ * bugs) don't leak. The LRU weighs each entry by its approximate retained heap, so a few very
+ * large runs are evicted before many small ones; evicted runs use the scanner path.
  *
  * <p>Operator knobs:
  * <ul>
@@ -22,30 +30,84 @@ import org.jenkinsci.plugins.workflow.job.WorkflowRun;
  *       ({@code boolean}, default {@code true}) — set to {@code false} to disable the
  *       live-state path entirely and force scanner fallback.</li>
  *   <li>{@code io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry.size}
- *       ({@code int}, default {@code 512}) — max concurrent in-progress runs tracked.
- *       Extra runs use the scanner path until an entry evicts.</li>
+ *       ({@code int}, unset by default) — when set, bounds the registry by the number of
+ *       in-progress runs tracked instead of by {@code .maxBytes}. Extra runs use the scanner
+ *       path until an entry evicts.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry.maxBytes}
+ *       ({@code long}, default an eighth of the max heap) — approximate heap budget for all
+ *       tracked runs together. {@link #estimatedBytesByRun()} shows what each run uses.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry.maxSubscribers}
+ *       ({@code int}, default {@code 1024}) — max concurrent push subscribers across all
+ *       runs. Further subscriptions are refused and those clients keep polling.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry.coalesceMillis}
+ *       ({@code long}, default {@code 500}) — how long a push notification waits for further
+ *       nodes before it is delivered.</li>
  * </ul>
  */
 public final class LiveGraphRegistry {
 
-    // Must be declared before INSTANCE: the Caffeine builder reads this during INSTANCE
+    // Must be declared before INSTANCE: the Caffeine builder reads these during INSTANCE
     // construction, and Caffeine's maximumSize(0) means "no entries allowed".
     private static final int CACHE_MAX_SIZE =
             SystemProperties.getInteger(LiveGraphRegistry.class.getName() + ".size", 512);
 
+    // An explicit .size keeps the old entry-count bound, for operators who tuned it.
+    private static final boolean SIZE_BOUNDED =
+            SystemProperties.getString(LiveGraphRegistry.class.getName() + ".size") != null;
+
+    private static final long CACHE_MAX_BYTES = SystemProperties.getLong(
+            LiveGraphRegistry.class.getName() + ".maxBytes", Runtime.getRuntime().maxMemory() / 8);
+
+    private static final int MAX_SUBSCRIBERS =
+            SystemProperties.getInteger(LiveGraphRegistry.class.getName() + ".maxSubscribers", 1024);
+
+    private static final long COALESCE_MILLIS =
+            SystemProperties.getLong(LiveGraphRegistry.class.getName() + ".coalesceMillis", 500L);
+
     private static final LiveGraphRegistry INSTANCE = new LiveGraphRegistry();
 
     public static LiveGraphRegistry get() {
         return INSTANCE;
     }
 
-    private final Cache<String, LiveGraphState> states = Caffeine.newBuilder()
-            .maximumSize(CACHE_MAX_SIZE)
-            .expireAfterAccess(Duration.ofMinutes(30))
+    // Declared before states: its removal listener updates this count.
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Cache<String, LiveGraphState> states = newStates();
+
+    // Warning indexes of completed runs, which have no live state. Building one walks the
+    // whole graph, so it is shared by the tree and step builds that follow completion, but
+    // only briefly: both results are then served from PipelineGraphViewCache.
+    private final Cache<String, WarningActionIndex> completedWarningIndexes = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(1))
+            .maximumSize(16)
             .build();
 
     LiveGraphRegistry() {}
 
+    private Cache<String, LiveGraphState> newStates() {
+        Caffeine<String, LiveGraphState> builder = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(30))
+                // Completion, expiry and eviction all end the push stream, so subscribers learn
+                // to fall back instead of waiting on a state nobody updates any more. A
+                // re-weigh rewrites the entry with itself, which must not. The checkpoint goes too:
+                // a state recreated after eviction is never marked ready, so nothing would
+                // update or delete it.
+                .removalListener((String key, LiveGraphState state, RemovalCause cause) -> {
+                    if (state != null && cause != RemovalCause.REPLACED) {
+                        subscriberCount.addAndGet(-state.subscribers().close());
+                        LiveGraphCheckpoint.discard(state);
+                    }
+                });
+        if (SIZE_BOUNDED) {
+            return builder.maximumSize(CACHE_MAX_SIZE).build();
+        }
+        // Weights are in KiB so a single entry's weight fits in an int.
+        return builder.maximumWeight(CACHE_MAX_BYTES / 1024)
+                .weigher((String key, LiveGraphState state) -> state.weighKiB())
+                .build();
+    }
+
     /** See the {@code .enabled} knob documented on the class javadoc. */
     private static boolean disabled() {
         return !SystemProperties.getBoolean(LiveGraphRegistry.class.getName() + ".enabled", true);
@@ -55,11 +117,11 @@ public final class LiveGraphRegistry {
         if (disabled()) {
             return null;
         }
-        String key = keyFor(execution);
-        if (key == null) {
+        WorkflowRun run = runFor(execution);
+        if (run == null) {
             return null;
         }
-        return states.get(key, k -> new LiveGraphState());
+        return states.get(run.getExternalizableId(), k -> new LiveGraphState(LiveGraphCheckpoint.fileFor(run)));
     }
 
     /**
@@ -76,6 +138,44 @@ public final class LiveGraphRegistry {
         return state == null ? null : state.currentVersion();
     }
 
+    /**
+     * Returns the version of the last node that changed the stage tree, or {@code null}
+     * under the same conditions as {@link #currentVersion}. Steps appended inside a running
+     * stage don't advance it, so tree readers can keep serving the graph cached at this
+     * version.
+     */
+    public Long currentTreeVersion(WorkflowRun run) {
+        if (disabled()) {
+            return null;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        return state == null ? null : state.currentTreeVersion();
+    }
+
+    /**
+     * Returns a strong entity tag for this run's current tree responses, or {@code null}
+     * under the same conditions as {@link #currentVersion}. Read it before computing the
+     * response: the response is then at least as new as the tag, never older.
+     */
+    @CheckForNull
+    public String treeEtag(WorkflowRun run) {
+        if (disabled()) {
+            return null;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        return state == null ? null : state.treeEtag();
+    }
+
+    /** See {@link #treeEtag(WorkflowRun)} — the matching tag for step list responses. */
+    @CheckForNull
+    public String stepsEtag(WorkflowRun run) {
+        if (disabled()) {
+            return null;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        return state == null ? null : state.stepsEtag();
+    }
+
     /**
      * Returns a snapshot of the live state for this run, or {@code null} if none exists
      * (feature disabled, state never populated, state poisoned). Callers must treat
@@ -89,10 +189,115 @@ public final class LiveGraphRegistry {
         return state == null ? null : state.snapshot(run.getExecution());
     }
 
-    void remove(FlowExecution execution) {
-        String key = keyFor(execution);
+    /**
+     * Registers a push subscriber for this run. Returns {@code false} when the run has no
+     * usable live state or the subscriber budget is exhausted; callers then keep polling.
+     */
+    public boolean subscribe(WorkflowRun run, LiveGraphSubscriber subscriber) {
+        if (disabled()) {
+            return false;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        if (state == null || state.currentVersion() == null) {
+            return false;
+        }
+        if (subscriberCount.incrementAndGet() > MAX_SUBSCRIBERS) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+        if (!state.subscribers().add(subscriber)) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void unsubscribe(WorkflowRun run, LiveGraphSubscriber subscriber) {
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        if (state != null && state.subscribers().remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    /** Called on the CPS VM thread after each node; see {@link LiveGraphSubscribers}. */
+    void nodeAdded(FlowExecution execution, LiveGraphState state) {
+        state.subscribers().nodeAdded(state, COALESCE_MILLIS);
+        reweighIfGrown(execution, state);
+    }
+
+    /**
+     * Re-weighs {@code state} against the byte budget once it has grown noticeably. Caffeine
+     * only weighs an entry when it is written, so the entry is rewritten with itself; that
+     * may evict this or another run.
+     */
+    void reweighIfGrown(FlowExecution execution, LiveGraphState state) {
+        if (!SIZE_BOUNDED && state.reweighDue()) {
+            reweigh(keyFor(execution));
+        }
+    }
+
+    private void reweigh(@CheckForNull String key) {
         if (key != null) {
-            states.invalidate(key);
+            states.asMap().computeIfPresent(key, (k, state) -> state);
+        }
+    }
+
+    /**
+     * Approximate heap retained by this run's live state, in bytes, or {@code null} when the
+     * run isn't tracked.
+     */
+    @CheckForNull
+    public Long estimatedBytes(WorkflowRun run) {
+        if (disabled()) {
+            return null;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        return state == null ? null : state.estimatedBytes();
+    }
+
+    /**
+     * {@link #estimatedBytes} for every tracked run, largest first, keyed by
+     * {@link WorkflowRun#getExternalizableId()}. Lets operators see which builds are
+     * expensive, e.g. from the script console.
+     */
+    public Map<String, Long> estimatedBytesByRun() {
+        Map<String, Long> sizes = new HashMap<>();
+        states.asMap().forEach((key, state) -> sizes.put(key, state.estimatedBytes()));
+        Map<String, Long> largestFirst = new LinkedHashMap<>();
+        sizes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> largestFirst.put(e.getKey(), e.getValue()));
+        return largestFirst;
+    }
+
+    /**
+     * Drops the run's state and its checkpoint; called once the execution completes. The
+     * checkpoint file is deleted even when the state is gone already, e.g. evicted before
+     * its listener got to it.
+     */
+    void remove(FlowExecution execution) {
+        WorkflowRun run = runFor(execution);
+        if (run == null) {
+            return;
+        }
+        String key = run.getExternalizableId();
+        LiveGraphState state = states.getIfPresent(key);
+        states.invalidate(key);
+        if (state != null) {
+            LiveGraphCheckpoint.discard(state);
+        }
+        LiveGraphCheckpoint.delete(LiveGraphCheckpoint.fileFor(run));
+    }
+
+    /** Test hook: drop the run's state the way the byte budget or expiry would. */
+    void evict(WorkflowRun run) {
+        states.invalidate(run.getExternalizableId());
+    }
+
+    /** Checkpoints every tracked run that changed since its last checkpoint. */
+    void checkpointAll() {
+        for (LiveGraphState state : states.asMap().values()) {
+            LiveGraphCheckpoint.write(state);
         }
     }
 
@@ -113,12 +318,29 @@ public final class LiveGraphRegistry {
         if (disabled()) {
             return;
         }
-        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        String key = run.getExternalizableId();
+        LiveGraphState state = states.getIfPresent(key);
         if (state != null) {
             state.cacheGraph(version, graph);
+            if (!SIZE_BOUNDED && state.reweighDue()) {
+                reweigh(key);
+            }
         }
     }
 
+    /**
+     * Returns the per-stage change log of the latest cached graph, or {@code null} when the
+     * live state isn't usable or no graph has been cached yet.
+     */
+    @CheckForNull
+    public StageChangeLog stageChangeLog(WorkflowRun run) {
+        if (disabled()) {
+            return null;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        return state == null ? null : state.stageChanges();
+    }
+
     public PipelineStepList cachedAllSteps(WorkflowRun run, long minVersion) {
         if (disabled()) {
             return null;
@@ -131,12 +353,26 @@ public final class LiveGraphRegistry {
         if (disabled()) {
             return;
         }
-        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        String key = run.getExternalizableId();
+        LiveGraphState state = states.getIfPresent(key);
         if (state != null) {
             state.cacheAllSteps(version, steps);
+            if (!SIZE_BOUNDED && state.reweighDue()) {
+                reweigh(key);
+            }
         }
     }
 
+    /** See {@link #stageChangeLog(WorkflowRun)} — the matching log for the steps path. */
+    @CheckForNull
+    public StepChangeLog stepChangeLog(WorkflowRun run) {
+        if (disabled()) {
+            return null;
+        }
+        LiveGraphState state = states.getIfPresent(run.getExternalizableId());
+        return state == null ? null : state.stepChanges();
+    }
+
     /**
      * Returns a per-run monitor that callers can synchronise on to dedup concurrent graph
      * rebuilds. Null when the live state isn't present (caller just computes directly).
@@ -161,11 +397,12 @@ public final class LiveGraphRegistry {
     }
 
     /**
-     * Returns the {@link WarningActionCache} for this execution, or {@code null} when the
-     * live state isn't present. Callers fall back to uncached scans on null.
+     * Returns the {@link WarningActionIndex} for this execution: the live state's while the
+     * run is tracked, or one built from the whole graph once it has completed. {@code null}
+     * for untracked in-progress runs; callers fall back to scanning on null.
      */
     @CheckForNull
-    public WarningActionCache warningActionCache(FlowExecution execution) {
+    public WarningActionIndex warningActionIndex(FlowExecution execution) {
         if (disabled()) {
             return null;
         }
@@ -174,7 +411,13 @@ public final class LiveGraphRegistry {
             return null;
         }
         LiveGraphState state = states.getIfPresent(key);
-        return state == null ? null : state.warningActionCache();
+        if (state != null) {
+            return state.warningIndex();
+        }
+        if (!execution.isComplete()) {
+            return null;
+        }
+        return completedWarningIndexes.get(key, ignored -> WarningActionIndex.walk(execution.getCurrentHeads()));
     }
 
     /**
@@ -212,12 +455,15 @@ public final class LiveGraphRegistry {
     }
 
     private static String keyFor(FlowExecution execution) {
+        WorkflowRun run = runFor(execution);
+        return run == null ? null : run.getExternalizableId();
+    }
+
+    @CheckForNull
+    private static WorkflowRun runFor(FlowExecution execution) {
         try {
             Object exec = execution.getOwner().getExecutable();
-            if (exec instanceof WorkflowRun run) {
-                return run.getExternalizableId();
-            }
-            return null;
+            return exec instanceof WorkflowRun run ? run : null;
         } catch (Exception e) {
             return null;
         }
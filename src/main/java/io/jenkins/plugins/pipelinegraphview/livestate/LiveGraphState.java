@@ -1,36 +1,79 @@
 package io.jenkins.plugins.pipelinegraphview.livestate;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import io.jenkins.plugins.pipelinegraphview.steps.HideFromViewStep;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraph;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepList;
+import io.jenkins.plugins.pipelinegraphview.utils.StageChangeLog;
+import io.jenkins.plugins.pipelinegraphview.utils.StepChangeLog;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepStartNode;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.AtomNode;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.support.steps.input.InputStep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Per-run mutable state built up by {@link LiveGraphPopulator} as {@code GraphListener}
- * events arrive. Writes run on the CPS VM thread and must not block, so the instance monitor
- * is only held around the append to the nodes list + version bump; the ancestry map and
- * hideFromView set are {@link ConcurrentHashMap}-backed so readers can publish them without
- * copying.
+ * events arrive. Writes run on the CPS VM thread and must never wait on an HTTP reader, so
+ * the captured nodes live in single-writer {@link NodeLog}s and readers take no lock at all:
+ * a {@link #snapshot} is an O(1) view of the first N nodes, and the version is simply N.
+ * Writers serialise on {@link #writeLock}, which only contends during resume catch-up. The
+ * {@link NodeAncestry} store and the {@link ConcurrentHashMap}-backed hideFromView set are
+ * likewise published to readers without copying.
  */
 final class LiveGraphState {
 
-    private final List<FlowNode> nodes = new ArrayList<>();
+    // Rough per-entry heap costs behind #estimatedBytes: a FlowNode with its actions plus
+    // its bookkeeping entries here, and a cached stage or step DTO together with its
+    // change-log entry and share of the serialized responses.
+    private static final long NODE_BYTES = 640;
+    private static final long STAGE_BYTES = 1024;
+    private static final long STEP_BYTES = 768;
+
+    // Growth below which a re-weigh isn't worth the cache write (see #reweighDue).
+    private static final long REWEIGH_MIN_BYTES = 256 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveGraphState.class);
+
+    // Whether #isInputStep has reported a descriptor it couldn't resolve.
+    private static volatile boolean descriptorFailureLogged = false;
+
+    // Seeded from the clock so epochs keep increasing across restarts.
+    private static final AtomicLong EPOCHS = new AtomicLong(System.currentTimeMillis());
+
+    // Distinguishes this state from earlier ones for the same run (e.g. before a restart or
+    // an eviction), whose versions count from zero again. Part of the HTTP ETags.
+    private final long epoch = EPOCHS.incrementAndGet();
+
+    // Serialises writers: addNode, restore and the seenIds they share. Never taken by readers.
+    private final Object writeLock = new Object();
+
+    // Every captured node in capture order. Its published length is the state's version.
+    // Only replaced, never mutated in place, by #restore.
+    private volatile NodeLog nodes = new NodeLog();
     private final Set<String> seenIds = new HashSet<>();
-    // Node ID → its enclosing-block IDs (innermost first). Populated at add time on the CPS
+    // Highest node id restored from a checkpoint, -1 without one. A checkpoint holds every
+    // node up to its newest, so their ancestors need no catch-up walk; nodes captured live
+    // before catch-up carry no such guarantee.
+    private int restoredUpTo = -1;
+    // Each node's enclosing-block chain as parent pointers. Populated at add time on the CPS
     // VM thread so HTTP graph builds don't contend with the storage write lock to resolve
-    // ancestry. ConcurrentHashMap so {@link #snapshot} can publish the live map (wrapped
-    // unmodifiable) without copying — readers iterate weakly-consistent views.
-    private final Map<String, List<String>> enclosingIdsByNodeId = new ConcurrentHashMap<>();
+    // ancestry. Two ints per node instead of a String list per node; {@link #snapshot}
+    // publishes it by reference (see NodeAncestry for the visibility rules).
+    private final NodeAncestry ancestry = new NodeAncestry();
     // IDs of BlockStartNodes that wrap a {@code hideFromView} step. Lets HTTP readers decide
     // whether a step is hidden by intersecting with the step's enclosing IDs, avoiding a
     // per-step {@code iterateEnclosingBlocks} walk through storage.
@@ -40,19 +83,52 @@ final class LiveGraphState {
     // WorkspaceAction. Scanning {@code nodes} for WorkspaceAction at snapshot time was
     // O(N) with ~300k nodes even though only a handful are actual {@code node{}} blocks;
     // keeping this narrower list means snapshot scans O(candidates) instead.
-    private final List<FlowNode> workspaceCandidates = new ArrayList<>();
-    private long version = 0;
+    private volatile NodeLog workspaceCandidates = new NodeLog();
     private volatile boolean poisoned = false;
 
+    // Version of the last node that can change the stage tree (see #affectsTree). Plain
+    // step atoms only lengthen {@link #nodes}, so a running stage that is busy emitting steps
+    // keeps serving the graph cached at this version. Every other node still costs the next
+    // tree read a full rebuild over all captured nodes: this skips rebuilds, it doesn't make
+    // them incremental.
+    private volatile long treeVersion = 0;
+    // Nodes whose successor changes the tree: a closed block's status and duration are only
+    // final once the node after its BlockEndNode exists, and a stage paused on input flips
+    // back to running when the node after the input step appears. Entries are dropped once
+    // that successor arrives, so the set stays tiny. Concurrent so #checkpoint can read it
+    // without the write lock.
+    private final Set<String> treeSensitiveIds = ConcurrentHashMap.newKeySet();
+
     // Starts unready; {@link LiveGraphLifecycle} flips it on after any catch-up. Readers
     // treat a null {@link #snapshot} as "fall back to the scanner", so a state that hasn't
     // been marked ready stays invisible.
-    private boolean ready = false;
+    private volatile boolean ready = false;
 
     private VersionedCache<PipelineGraph> cachedGraph;
+    // Per-stage change versions for cachedGraph, backing {@code tree?since=<version>}.
+    private StageChangeLog stageChanges;
     private VersionedCache<PipelineStepList> cachedAllSteps;
+    // Per-step change versions for cachedAllSteps, backing {@code allSteps?since=<version>}.
+    private StepChangeLog stepChanges;
+
+    // Retained-size estimates for the cached DTOs, and the total last reported to the
+    // registry's weigher.
+    private volatile long cachedGraphBytes;
+    private volatile long cachedStepsBytes;
+    private volatile long weighedBytes;
 
-    private final WarningActionCache warningActionCache = new WarningActionCache();
+    // Where LiveGraphCheckpoint persists this state, or null when it isn't persisted. How
+    // many of the nodes, from the start of #nodes, the file holds (-1 while it must be
+    // written afresh), and whether the run finished and the file was discarded.
+    private final Path checkpointFile;
+    private int checkpointedCount = -1;
+    private boolean checkpointDiscarded = false;
+    // Serialises checkpoint writes with each other and with discarding the file.
+    private final Object checkpointLock = new Object();
+
+    private final LiveGraphSubscribers subscribers = new LiveGraphSubscribers();
+
+    private final WarningActionIndex warningIndex = new WarningActionIndex();
     private final BlockResolutionCache blockResolutionCache = new BlockResolutionCache();
     private final SkippedStageCache skippedStageCache = new SkippedStageCache();
 
@@ -61,93 +137,328 @@ final class LiveGraphState {
     private final Object graphComputeLock = new Object();
     private final Object allStepsComputeLock = new Object();
 
-    synchronized void addNode(FlowNode node) {
-        if (!seenIds.add(node.getId())) {
-            return;
+    LiveGraphState(@CheckForNull Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    void addNode(FlowNode node) {
+        synchronized (writeLock) {
+            if (!seenIds.add(node.getId())) {
+                return;
+            }
+            // Capture ancestry once, at add time. The enclosing chain never changes after
+            // creation, so HTTP readers can resolve parentage from it instead of going back to
+            // storage. Recorded before the node is published, so any reader that can see the
+            // node can also see its ancestry.
+            try {
+                ancestry.record(node.getId(), node.getAllEnclosingIds());
+            } catch (Throwable ignored) {
+                ancestry.record(node.getId(), List.of());
+            }
+            warningIndex.add(node, ancestry.parentOf(Integer.parseInt(node.getId())));
+            boolean candidate = false;
+            if (node instanceof StepStartNode stepStartNode) {
+                // See the hideFromViewBlockStartIds field comment for why this is captured here.
+                try {
+                    StepDescriptor descriptor = stepStartNode.getDescriptor();
+                    if (descriptor != null && HideFromViewStep.class.getName().equals(descriptor.getId())) {
+                        hideFromViewBlockStartIds.add(node.getId());
+                    }
+                } catch (Throwable ignored) {
+                    // Descriptor lookup is best-effort; fall back to "not hidden".
+                }
+                // WorkspaceAction can only attach to a StepStartNode; track all of them so
+                // snapshot can check this narrower list instead of every FlowNode.
+                candidate = true;
+            }
+            boolean affectsTree = affectsTree(node);
+            NodeLog log = nodes;
+            log.append(node);
+            // After the node itself: snapshot reads candidates first, so every candidate it
+            // sees is also in its node view.
+            if (candidate) {
+                workspaceCandidates.append(node);
+            }
+            if (affectsTree) {
+                treeVersion = log.size();
+            }
+        }
+    }
+
+    /**
+     * Classifies a freshly added node as tree-affecting or step-only. Block boundaries always
+     * reshape the tree; an atom only does when it follows a node in {@link #treeSensitiveIds}
+     * or is itself an input step (which pauses its stage). Called with the write lock held.
+     */
+    private boolean affectsTree(FlowNode node) {
+        boolean affects = !(node instanceof AtomNode);
+        for (String parentId : node.getParentIds()) {
+            if (treeSensitiveIds.remove(parentId)) {
+                affects = true;
+            }
+        }
+        if (node instanceof BlockEndNode<?> || isInputStep(node)) {
+            treeSensitiveIds.add(node.getId());
+            affects = true;
+        }
+        return affects;
+    }
+
+    private static boolean isInputStep(FlowNode node) {
+        if (!(node instanceof StepAtomNode atomNode)) {
+            return false;
         }
-        nodes.add(node);
-        // Capture ancestry once, at add time. The enclosing chain never changes after
-        // creation, so HTTP readers can resolve parentage from this map instead of going
-        // back to storage.
         try {
-            enclosingIdsByNodeId.put(node.getId(), List.copyOf(node.getAllEnclosingIds()));
-        } catch (Throwable ignored) {
-            enclosingIdsByNodeId.put(node.getId(), List.of());
+            StepDescriptor descriptor = atomNode.getDescriptor();
+            return descriptor != null && InputStep.class.getName().equals(descriptor.getId());
+        } catch (Throwable t) {
+            // An input step's descriptor always resolves, so a broken one is some other step.
+            // Logged once: it would otherwise repeat for every such step of every run.
+            if (!descriptorFailureLogged) {
+                descriptorFailureLogged = true;
+                logger.warn("Could not resolve the step descriptor of node {}; treating it as a plain step", node, t);
+            }
+            return false;
         }
-        if (node instanceof StepStartNode stepStartNode) {
-            // See the hideFromViewBlockStartIds field comment for why this is captured here.
-            try {
-                StepDescriptor descriptor = stepStartNode.getDescriptor();
-                if (descriptor != null && HideFromViewStep.class.getName().equals(descriptor.getId())) {
-                    hideFromViewBlockStartIds.add(node.getId());
+    }
+
+    /**
+     * Adds checkpointed nodes ahead of any captured since the restart. Stands in for
+     * {@link #addNode} on resume: ancestry and flags come from the checkpoint rather than
+     * from storage, and no node is loaded until a reader needs it. Arrays are indexed like
+     * {@code restored}; flags are {@link LiveGraphCheckpoint} bits.
+     */
+    void restore(List<RestoredNode> restored, int[] parents, int[] depths, byte[] flags) {
+        synchronized (writeLock) {
+            NodeLog merged = new NodeLog();
+            NodeLog candidates = new NodeLog();
+            for (int i = 0; i < restored.size(); i++) {
+                RestoredNode node = restored.get(i);
+                if (!seenIds.add(node.id())) {
+                    continue;
                 }
-            } catch (Throwable ignored) {
-                // Descriptor lookup is best-effort; fall back to "not hidden".
+                merged.append(node);
+                int id = Integer.parseInt(node.id());
+                restoredUpTo = Math.max(restoredUpTo, id);
+                ancestry.restore(id, parents[i], depths[i]);
+                warningIndex.add(node, parents[i]);
+                if ((flags[i] & LiveGraphCheckpoint.HIDE_FROM_VIEW) != 0) {
+                    hideFromViewBlockStartIds.add(node.id());
+                }
+                if ((flags[i] & LiveGraphCheckpoint.WORKSPACE_CANDIDATE) != 0) {
+                    candidates.append(node);
+                }
+                if ((flags[i] & LiveGraphCheckpoint.TREE_SENSITIVE) != 0) {
+                    treeSensitiveIds.add(node.id());
+                }
+            }
+            // The file already holds the restored nodes, which now lead the log, so the
+            // next checkpoint only appends what follows them.
+            int restoredCount = merged.size();
+            // The logs are append-only, so rebuild them with the restored nodes first. Runs
+            // before the state is marked ready, so no reader sees the swap.
+            for (FlowNode node : nodes.view()) {
+                merged.append(node);
+            }
+            for (FlowNode node : workspaceCandidates.view()) {
+                candidates.append(node);
+            }
+            workspaceCandidates = candidates;
+            nodes = merged;
+            treeVersion = merged.size();
+            synchronized (this) {
+                checkpointedCount = restoredCount;
             }
-            // WorkspaceAction can only attach to a StepStartNode; track all of them so
-            // snapshot can check this narrower list instead of every FlowNode.
-            workspaceCandidates.add(node);
         }
-        version++;
     }
 
-    synchronized boolean hasSeen(String nodeId) {
-        return seenIds.contains(nodeId);
+    /**
+     * Captures what {@link LiveGraphCheckpoint} persists: the nodes the file doesn't hold yet,
+     * or all of them when it has to be written afresh. {@code null} when nothing changed since
+     * the last checkpoint or the state isn't usable. Reads the node logs through views, like
+     * {@link #snapshot} does, so the writer is never held up, and reads ids only, so restored
+     * nodes stay unloaded.
+     */
+    Checkpoint checkpoint() {
+        NodeLog.View candidatesView = workspaceCandidates.view();
+        NodeLog.View nodesView = nodes.view();
+        int v = nodesView.size();
+        int from;
+        synchronized (this) {
+            if (poisoned || !ready || checkpointDiscarded || v == checkpointedCount) {
+                return null;
+            }
+            from = Math.max(0, checkpointedCount);
+        }
+        Set<String> candidateIds = new HashSet<>();
+        for (int i = 0; i < candidatesView.size(); i++) {
+            candidateIds.add(candidatesView.idAt(i));
+        }
+        int count = v - from;
+        int[] ids = new int[count];
+        int[] parents = new int[count];
+        int[] depths = new int[count];
+        byte[] flags = new byte[count];
+        for (int i = 0; i < count; i++) {
+            String id = nodesView.idAt(from + i);
+            ids[i] = Integer.parseInt(id);
+            parents[i] = ancestry.parentOf(ids[i]);
+            depths[i] = ancestry.depthOf(ids[i]);
+            if (hideFromViewBlockStartIds.contains(id)) {
+                flags[i] |= LiveGraphCheckpoint.HIDE_FROM_VIEW;
+            }
+            if (candidateIds.contains(id)) {
+                flags[i] |= LiveGraphCheckpoint.WORKSPACE_CANDIDATE;
+            }
+            if (treeSensitiveIds.contains(id)) {
+                flags[i] |= LiveGraphCheckpoint.TREE_SENSITIVE;
+            }
+        }
+        return new Checkpoint(from > 0, v, ids, parents, depths, flags);
+    }
+
+    /** Records that the file now holds the first {@code count} nodes. */
+    synchronized void checkpointed(int count) {
+        checkpointedCount = Math.max(checkpointedCount, count);
+    }
+
+    /** Makes the next checkpoint write the file afresh, e.g. after an append failed. */
+    synchronized void checkpointLost() {
+        checkpointedCount = -1;
+    }
+
+    /** Stops further checkpoints, so the file can be deleted for good. */
+    synchronized void discardCheckpoint() {
+        checkpointDiscarded = true;
+    }
+
+    @CheckForNull
+    Path checkpointFile() {
+        return checkpointFile;
+    }
+
+    Object checkpointLock() {
+        return checkpointLock;
+    }
+
+    /**
+     * Approximate heap retained by this state: the captured nodes, their ancestry and warning
+     * index, and the cached graph and step list. Constant time.
+     */
+    long estimatedBytes() {
+        return NODE_BYTES * nodes.size()
+                + ancestry.retainedBytes()
+                + warningIndex.retainedBytes()
+                + cachedGraphBytes
+                + cachedStepsBytes;
+    }
+
+    /** Weigher callback: {@link #estimatedBytes()} in KiB, remembered for {@link #reweighDue}. */
+    int weighKiB() {
+        long bytes = estimatedBytes();
+        weighedBytes = bytes;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes / 1024));
+    }
+
+    /**
+     * Whether the estimate has grown enough since the last {@link #weighKiB} — by an eighth,
+     * and at least {@link #REWEIGH_MIN_BYTES} — for the registry to re-weigh this entry.
+     * Keeps re-weighs logarithmic in the run's size rather than one per node.
+     */
+    boolean reweighDue() {
+        long weighed = weighedBytes;
+        return estimatedBytes() - weighed >= Math.max(REWEIGH_MIN_BYTES, weighed / 8);
+    }
+
+    boolean hasSeen(String nodeId) {
+        synchronized (writeLock) {
+            return seenIds.contains(nodeId);
+        }
+    }
+
+    /** Whether {@code nodeId} came from a checkpoint, and so every node before it did too. */
+    boolean restoredFromCheckpoint(String nodeId) {
+        synchronized (writeLock) {
+            return restoredUpTo >= 0 && Integer.parseInt(nodeId) <= restoredUpTo && seenIds.contains(nodeId);
+        }
     }
 
-    synchronized int size() {
+    int size() {
         return nodes.size();
     }
 
     /**
      * Cheap version read for cache-hit short-circuits — same readiness/poison semantics as
-     * {@link #snapshot()}, but skips the O(N) copy.
+     * {@link #snapshot()}, without resolving workspaces or active nodes.
      */
-    synchronized Long currentVersion() {
+    Long currentVersion() {
+        if (poisoned || !ready) {
+            return null;
+        }
+        return (long) nodes.size();
+    }
+
+    /**
+     * Like {@link #currentVersion()}, but only advances when a node that can change the stage
+     * tree arrives. A graph cached at or after this version is still accurate.
+     */
+    Long currentTreeVersion() {
+        if (poisoned || !ready) {
+            return null;
+        }
+        return treeVersion;
+    }
+
+    /**
+     * Entity tag for tree responses: changes whenever {@link #currentTreeVersion()} does.
+     * {@code null} under the same conditions.
+     */
+    String treeEtag() {
+        if (poisoned || !ready) {
+            return null;
+        }
+        return "\"tree-" + Long.toHexString(epoch) + "-" + treeVersion + "\"";
+    }
+
+    /** Like {@link #treeEtag()}, for step list responses, following {@link #currentVersion()}. */
+    String stepsEtag() {
         if (poisoned || !ready) {
             return null;
         }
-        return version;
+        return "\"steps-" + Long.toHexString(epoch) + "-" + nodes.size() + "\"";
     }
 
     LiveGraphSnapshot snapshot(FlowExecution execution) {
-        // Only the node lists need to be copied — enclosingIds and hideFromView are on
-        // concurrent structures we can publish by reference. Keeping the monitor-held
-        // section down to a couple of array copies means addNode (on the CPS VM thread)
-        // almost never blocks on a snapshot.
-        List<FlowNode> nodesCopy;
-        List<FlowNode> candidatesCopy;
-        long v;
-        synchronized (this) {
-            if (poisoned || !ready) {
-                return null;
-            }
-            nodesCopy = new ArrayList<>(nodes);
-            candidatesCopy = new ArrayList<>(workspaceCandidates);
-            v = version;
+        if (poisoned || !ready) {
+            return null;
         }
-        // Scan for WorkspaceAction outside the monitor: each getAction call walks the node's
-        // action list, and a node can gain WorkspaceAction after onNewHead fires (when the
-        // workspace is allocated), so resolving here observes the latest state. Newest-first
-        // order matches DepthFirstScanner so PipelineGraphApi#getStageNode picks the
+        // No lock and no copy: views are fixed at the length read here, so addNode (on the CPS
+        // VM thread) never waits for a reader. Candidates are read first — addNode appends a
+        // node before its candidate entry, so every candidate seen is within the node view.
+        List<FlowNode> candidatesView = workspaceCandidates.view();
+        List<FlowNode> nodesView = nodes.view();
+        long v = nodesView.size();
+        // Scan for WorkspaceAction here rather than at add time: a node can gain
+        // WorkspaceAction after onNewHead fires (when the workspace is allocated), so
+        // resolving here observes the latest state. Newest-first
+        // order matches DepthFirstScanner so WorkspaceNodeIndex picks the
         // innermost workspace for nested agents.
         List<FlowNode> workspaceNodes = new ArrayList<>();
-        for (int i = candidatesCopy.size() - 1; i >= 0; i--) {
-            FlowNode n = candidatesCopy.get(i);
+        for (int i = candidatesView.size() - 1; i >= 0; i--) {
+            FlowNode n = candidatesView.get(i);
             if (n.getAction(WorkspaceAction.class) != null) {
                 workspaceNodes.add(n);
             }
         }
-        // Concurrent maps/sets are published by reference — consumers must treat them as
+        // Ancestry and hideFromView are published by reference — consumers must treat them as
         // read-only (see {@link LiveGraphSnapshot}).
         Set<String> activeNodeIds = computeActiveNodeIds(execution);
-        return new LiveGraphSnapshot(
-                nodesCopy, workspaceNodes, enclosingIdsByNodeId, hideFromViewBlockStartIds, activeNodeIds, v);
+        return new LiveGraphSnapshot(nodesView, workspaceNodes, ancestry, hideFromViewBlockStartIds, activeNodeIds, v);
     }
 
     /**
      * Resolves the "active" node set for this snapshot: all current heads plus every
-     * enclosing block start. Prefers the already-captured {@link #enclosingIdsByNodeId} over
+     * enclosing block start. Prefers the already-captured {@link #ancestry} over
      * a fresh storage walk when looking up a head's enclosing chain.
      */
     private Set<String> computeActiveNodeIds(FlowExecution execution) {
@@ -158,9 +469,8 @@ final class LiveGraphState {
         try {
             for (FlowNode head : execution.getCurrentHeads()) {
                 active.add(head.getId());
-                List<String> enclosing = enclosingIdsByNodeId.get(head.getId());
-                if (enclosing != null) {
-                    active.addAll(enclosing);
+                if (ancestry.contains(head.getId())) {
+                    active.addAll(ancestry.enclosingIds(head.getId()));
                 } else {
                     try {
                         active.addAll(head.getAllEnclosingIds());
@@ -186,27 +496,69 @@ final class LiveGraphState {
         return (cachedGraph != null && cachedGraph.version >= minVersion) ? cachedGraph.value : null;
     }
 
-    synchronized void cacheGraph(long version, PipelineGraph graph) {
-        if (cachedGraph == null || cachedGraph.version < version) {
-            cachedGraph = new VersionedCache<>(version, graph);
+    void cacheGraph(long version, PipelineGraph graph) {
+        StageChangeLog previous;
+        synchronized (this) {
+            if (cachedGraph != null && cachedGraph.version >= version) {
+                return;
+            }
+            previous = stageChanges;
+        }
+        // The diff is O(stages); keep it outside the monitor so addNode never waits on it.
+        StageChangeLog next = StageChangeLog.advance(previous, graph, version);
+        synchronized (this) {
+            if (cachedGraph == null || cachedGraph.version < version) {
+                cachedGraph = new VersionedCache<>(version, graph);
+                // Callers hold graphComputeLock, so a concurrent install is unexpected; if one
+                // slipped in anyway, re-diff against it rather than lose its changes.
+                stageChanges = stageChanges == previous ? next : StageChangeLog.advance(stageChanges, graph, version);
+                cachedGraphBytes = STAGE_BYTES * stageChanges.stageCount();
+            }
         }
     }
 
+    synchronized StageChangeLog stageChanges() {
+        if (poisoned || !ready) {
+            return null;
+        }
+        return stageChanges;
+    }
+
     synchronized PipelineStepList cachedAllSteps(long minVersion) {
         return (cachedAllSteps != null && cachedAllSteps.version >= minVersion) ? cachedAllSteps.value : null;
     }
 
-    synchronized void cacheAllSteps(long version, PipelineStepList steps) {
-        if (cachedAllSteps == null || cachedAllSteps.version < version) {
-            cachedAllSteps = new VersionedCache<>(version, steps);
+    void cacheAllSteps(long version, PipelineStepList steps) {
+        StepChangeLog previous;
+        synchronized (this) {
+            if (cachedAllSteps != null && cachedAllSteps.version >= version) {
+                return;
+            }
+            previous = stepChanges;
+        }
+        // See cacheGraph — diff outside the monitor.
+        StepChangeLog next = StepChangeLog.advance(previous, steps, version);
+        synchronized (this) {
+            if (cachedAllSteps == null || cachedAllSteps.version < version) {
+                cachedAllSteps = new VersionedCache<>(version, steps);
+                stepChanges = stepChanges == previous ? next : StepChangeLog.advance(stepChanges, steps, version);
+                cachedStepsBytes = STEP_BYTES * steps.steps.size();
+            }
+        }
+    }
+
+    synchronized StepChangeLog stepChanges() {
+        if (poisoned || !ready) {
+            return null;
         }
+        return stepChanges;
     }
 
     void poison() {
         poisoned = true;
     }
 
-    synchronized void markReady() {
+    void markReady() {
         ready = true;
     }
 
@@ -218,8 +570,12 @@ final class LiveGraphState {
         return allStepsComputeLock;
     }
 
-    WarningActionCache warningActionCache() {
-        return warningActionCache;
+    LiveGraphSubscribers subscribers() {
+        return subscribers;
+    }
+
+    WarningActionIndex warningIndex() {
+        return warningIndex;
     }
 
     BlockResolutionCache blockResolutionCache() {
@@ -231,4 +587,11 @@ final class LiveGraphState {
     }
 
     private record VersionedCache<T>(long version, T value) {}
+
+    /**
+     * Per-node data for {@link LiveGraphCheckpoint}, in capture order: the nodes after those
+     * already in the file when {@code append} is set, otherwise all of them. {@code count} is
+     * how many nodes the file holds once this is written.
+     */
+    record Checkpoint(boolean append, int count, int[] ids, int[] parents, int[] depths, byte[] flags) {}
 }
@@ -0,0 +1,23 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+/**
+ * Receives push notifications for one in-progress run. Register through
+ * {@link LiveGraphRegistry#subscribe}; callbacks arrive on a {@link jenkins.util.Timer} thread
+ * (never the CPS VM thread), or on Caffeine's removal-listener thread for {@link #closed}.
+ * Both are shared, and one delivery walks every subscriber of the run, so implementations must
+ * not block: no blocking writes to a client and no graph computation on the calling thread.
+ */
+public interface LiveGraphSubscriber {
+
+    /**
+     * Called after new flow nodes raised the run's version. Bursts of nodes are coalesced,
+     * so intermediate versions may be skipped.
+     */
+    void updated(long version);
+
+    /**
+     * Called once when the run's live state goes away — the run completed, or the entry was
+     * evicted. No further callbacks follow; clients should refetch (or resume polling).
+     */
+    void closed();
+}
@@ -0,0 +1,86 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The push subscribers of one {@link LiveGraphState}. {@link #nodeAdded} runs on the CPS VM
+ * thread for every node, so it only checks for subscribers and, at most once per coalescing
+ * window, schedules a delivery on {@link Timer}. A burst of nodes therefore produces a single
+ * event carrying the version at delivery time. The Timer only schedules and notifies:
+ * subscribers hand writing to clients off the Timer thread (see {@link LiveGraphSubscriber}).
+ */
+final class LiveGraphSubscribers {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveGraphSubscribers.class);
+
+    private final List<LiveGraphSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean deliveryPending = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    /** Returns {@code false} if the state already went away. */
+    boolean add(LiveGraphSubscriber subscriber) {
+        if (closed) {
+            return false;
+        }
+        subscribers.add(subscriber);
+        // Re-check: close() may have drained the list between the check and the add.
+        if (closed && subscribers.remove(subscriber)) {
+            return false;
+        }
+        return true;
+    }
+
+    boolean remove(LiveGraphSubscriber subscriber) {
+        return subscribers.remove(subscriber);
+    }
+
+    void nodeAdded(LiveGraphState state, long coalesceMillis) {
+        if (subscribers.isEmpty() || !deliveryPending.compareAndSet(false, true)) {
+            return;
+        }
+        Timer.get().schedule(() -> deliver(state), coalesceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(LiveGraphState state) {
+        // Clear the flag before reading the version so a node added mid-delivery schedules
+        // a follow-up rather than being lost.
+        deliveryPending.set(false);
+        Long version = state.currentVersion();
+        if (version == null) {
+            return;
+        }
+        for (LiveGraphSubscriber subscriber : subscribers) {
+            try {
+                subscriber.updated(version);
+            } catch (Throwable t) {
+                logger.debug("subscriber update failed", t);
+            }
+        }
+    }
+
+    /** Notifies and drops every subscriber; returns how many there were. */
+    int close() {
+        closed = true;
+        List<LiveGraphSubscriber> drained = new ArrayList<>();
+        for (LiveGraphSubscriber subscriber : subscribers) {
+            if (subscribers.remove(subscriber)) {
+                drained.add(subscriber);
+            }
+        }
+        for (LiveGraphSubscriber subscriber : drained) {
+            try {
+                subscriber.closed();
+            } catch (Throwable t) {
+                logger.debug("subscriber close failed", t);
+            }
+        }
+        return drained.size();
+    }
+}
@@ -0,0 +1,18 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Thrown while reading a {@link LiveGraphSnapshot} when a node restored from a checkpoint can
+ * no longer be loaded. The live state is poisoned by then, so callers should build from the
+ * scanner instead.
+ */
+@Restricted(NoExternalUse.class)
+public final class MissingCheckpointedNodeException extends IllegalStateException {
+
+    MissingCheckpointedNodeException(String nodeId, @CheckForNull Throwable cause) {
+        super("Checkpointed node " + nodeId + " no longer exists", cause);
+    }
+}
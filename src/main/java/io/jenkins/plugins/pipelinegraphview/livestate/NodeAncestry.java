@@ -0,0 +1,170 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Enclosing-block chains for a run's FlowNodes, stored as one parent pointer and one depth
+ * per node id in a flat {@code int} array. Replaces a {@code List<String>} per node: a chain
+ * is recovered by following parent pointers, so each query is O(depth) and nothing is
+ * allocated per node.
+ *
+ * <p>Single writer: {@link #record} must be called by one thread at a time (the CPS VM thread
+ * under the {@link LiveGraphState} write lock). Readers may run concurrently for ids that were
+ * recorded before they obtained this instance through a monitor or other happens-before edge,
+ * which is how {@link LiveGraphSnapshot} publishes it.
+ */
+@Restricted(NoExternalUse.class)
+public final class NodeAncestry {
+
+    /** Parent of a top-level node, and the answer for unknown ids. */
+    public static final int NONE = -1;
+
+    // Slot value for ids that were never recorded.
+    private static final int UNKNOWN = -2;
+
+    private static final int INITIAL_IDS = 64;
+
+    // Two slots per id: [2 * id] = direct enclosing id (or NONE / UNKNOWN), [2 * id + 1] = depth.
+    private volatile int[] slots = newSlots(INITIAL_IDS);
+
+    public NodeAncestry() {}
+
+    /**
+     * Records {@code id}'s enclosing chain, innermost first, as returned by
+     * {@code FlowNode#getAllEnclosingIds()}. Links for chain members that weren't recorded
+     * yet are filled in as well, so ancestry stays complete when nodes arrive out of order.
+     */
+    public void record(@NonNull String id, @NonNull List<String> enclosingIds) {
+        int depth = enclosingIds.size();
+        int child = parse(id);
+        for (int i = 0; i <= depth; i++) {
+            int parent = i < depth ? parse(enclosingIds.get(i)) : NONE;
+            // Always (re)write the node itself; only fill gaps for its ancestors.
+            if (i == 0 || !contains(child)) {
+                set(child, parent, depth - i);
+            }
+            child = parent;
+        }
+    }
+
+    /** Sets {@code id}'s links as previously read through {@link #parentOf} and {@link #depthOf}. */
+    void restore(int id, int parent, int depth) {
+        set(id, parent, depth);
+    }
+
+    public boolean contains(@NonNull String id) {
+        return contains(parse(id));
+    }
+
+    public boolean contains(int id) {
+        int[] s = slots;
+        return id >= 0 && 2 * id < s.length && s[2 * id] != UNKNOWN;
+    }
+
+    /** Id of the innermost block enclosing {@code id}, or {@link #NONE}. */
+    public int parentOf(int id) {
+        int[] s = slots;
+        if (id < 0 || 2 * id >= s.length) {
+            return NONE;
+        }
+        int parent = s[2 * id];
+        return parent == UNKNOWN ? NONE : parent;
+    }
+
+    /** Number of blocks enclosing {@code id}; 0 for top-level and unknown ids. */
+    public int depthOf(int id) {
+        int[] s = slots;
+        return contains(id) ? s[2 * id + 1] : 0;
+    }
+
+    @CheckForNull
+    public String directEnclosingId(@NonNull String id) {
+        return enclosingIdAt(id, 0);
+    }
+
+    /**
+     * The {@code level}-th enclosing block of {@code id}: 0 is the innermost, matching index
+     * {@code level} of {@code FlowNode#getAllEnclosingIds()}. {@code null} past the outermost.
+     */
+    @CheckForNull
+    public String enclosingIdAt(@NonNull String id, int level) {
+        int current = parentOf(parse(id));
+        for (int i = 0; i < level && current != NONE; i++) {
+            current = parentOf(current);
+        }
+        return current == NONE ? null : Integer.toString(current);
+    }
+
+    /** Whether {@code ancestorId} is one of the blocks enclosing {@code id}. */
+    public boolean isAncestor(@NonNull String ancestorId, @NonNull String id) {
+        int ancestor = parse(ancestorId);
+        if (!contains(ancestor)) {
+            return false;
+        }
+        int ancestorDepth = depthOf(ancestor);
+        int current = parentOf(parse(id));
+        while (current != NONE && depthOf(current) > ancestorDepth) {
+            current = parentOf(current);
+        }
+        return current == ancestor;
+    }
+
+    /** Whether any block enclosing {@code id} satisfies {@code test}, innermost first. */
+    public boolean anyEnclosing(@NonNull String id, @NonNull Predicate<String> test) {
+        for (int current = parentOf(parse(id)); current != NONE; current = parentOf(current)) {
+            if (test.test(Integer.toString(current))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@code id}'s enclosing chain, innermost first — the same list
+     * {@code FlowNode#getAllEnclosingIds()} would return. Allocates; prefer the other queries.
+     */
+    @NonNull
+    public List<String> enclosingIds(@NonNull String id) {
+        int current = parse(id);
+        List<String> ids = new ArrayList<>(depthOf(current));
+        for (current = parentOf(current); current != NONE; current = parentOf(current)) {
+            ids.add(Integer.toString(current));
+        }
+        return ids;
+    }
+
+    /** Approximate heap held by the backing array, in bytes. */
+    public long retainedBytes() {
+        return 16L + 4L * slots.length;
+    }
+
+    private void set(int id, int parent, int depth) {
+        int[] s = slots;
+        if (2 * id + 1 >= s.length) {
+            int[] grown = newSlots(Math.max(id + 1, s.length));
+            System.arraycopy(s, 0, grown, 0, s.length);
+            s = grown;
+        }
+        s[2 * id] = parent;
+        s[2 * id + 1] = depth;
+        // Volatile write publishes both the new slots and, after growth, the new array.
+        slots = s;
+    }
+
+    private static int[] newSlots(int ids) {
+        int[] s = new int[2 * ids];
+        Arrays.fill(s, UNKNOWN);
+        return s;
+    }
+
+    private static int parse(String id) {
+        return Integer.parseInt(id);
+    }
+}
@@ -0,0 +1,99 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+/**
+ * Append-only list of FlowNodes with a single writer and lock-free readers.
+ *
+ * <p>Nodes live in fixed-size chunks that are never copied or moved once allocated, so an
+ * append never pays for a resize and a {@link #view()} of the first {@link #size()} nodes
+ * stays valid, and unchanged, however long the writer keeps appending. The writer stores
+ * each node before publishing the new size through a volatile write; readers read the size
+ * first, so every slot below it is visible to them.
+ *
+ * <p>Slots hold either a {@link FlowNode} or a {@link RestoredNode}, which views resolve when
+ * the node is read. {@link View#idAt} reads ids without resolving anything.
+ *
+ * <p>{@link #append} must only be called by one thread at a time.
+ */
+final class NodeLog {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Only the outer array is ever replaced when it fills up; the chunks themselves are
+    // shared between the old and new outer arrays.
+    private volatile Object[][] chunks = new Object[4][];
+    private volatile int size;
+
+    void append(FlowNode node) {
+        appendSlot(node);
+    }
+
+    void append(RestoredNode node) {
+        appendSlot(node);
+    }
+
+    private void appendSlot(Object node) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        Object[][] current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            chunks = current;
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Object[CHUNK_SIZE];
+        }
+        current[chunk][index & CHUNK_MASK] = node;
+        // Publishes the node: readers never look past the size they read.
+        size = index + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** The nodes appended so far, in order. O(1) and copy-free; later appends don't show. */
+    View view() {
+        int n = size;
+        return new View(chunks, n);
+    }
+
+    static final class View extends AbstractList<FlowNode> implements RandomAccess {
+        private final Object[][] chunks;
+        private final int size;
+
+        View(Object[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public FlowNode get(int index) {
+            Object slot = slot(index);
+            return slot instanceof RestoredNode restored ? restored.get() : (FlowNode) slot;
+        }
+
+        /** The id of the node at {@code index}, without loading a restored node. */
+        String idAt(int index) {
+            Object slot = slot(index);
+            return slot instanceof RestoredNode restored ? restored.id() : ((FlowNode) slot).getId();
+        }
+
+        private Object slot(int index) {
+            Objects.checkIndex(index, size);
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
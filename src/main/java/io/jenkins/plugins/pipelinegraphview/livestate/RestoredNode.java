@@ -0,0 +1,53 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import java.io.IOException;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+/**
+ * Stand-in for a node restored from a {@link LiveGraphCheckpoint}. Only its id is known until
+ * a reader needs the node itself, which is then loaded from the execution's storage once.
+ * Resuming a run thus reads no nodes at all; each one costs its storage read when a graph or
+ * step build first touches it, as it would have for a scanner build.
+ *
+ * <p>A node that no longer resolves means the checkpoint doesn't match the execution: the
+ * state is poisoned, so later reads fall back to the scanner, and this read fails with
+ * {@link MissingCheckpointedNodeException}.
+ */
+final class RestoredNode {
+
+    private final FlowExecution execution;
+    private final String id;
+    private final LiveGraphState state;
+    // Racy but idempotent: concurrent first reads may each load the node.
+    private volatile FlowNode node;
+
+    RestoredNode(FlowExecution execution, String id, LiveGraphState state) {
+        this.execution = execution;
+        this.id = id;
+        this.state = state;
+    }
+
+    String id() {
+        return id;
+    }
+
+    FlowNode get() {
+        FlowNode n = node;
+        if (n != null) {
+            return n;
+        }
+        try {
+            n = execution.getNode(id);
+        } catch (IOException e) {
+            state.poison();
+            throw new MissingCheckpointedNodeException(id, e);
+        }
+        if (n == null) {
+            state.poison();
+            throw new MissingCheckpointedNodeException(id, null);
+        }
+        node = n;
+        return n;
+    }
+}
@@ -0,0 +1,160 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+
+/**
+ * Per-run index answering "worst {@link WarningAction} inside block X" without walking the
+ * graph between X's start and end. {@code StatusAndTiming.findWorstWarningBetween} used to run
+ * a {@code DepthFirstScanner} over every stage, so a node nested N stages deep was read N
+ * times; here each closed block's worst warning is aggregated once, from its direct children
+ * and the memoised aggregates of the blocks nested in it, which keeps the total work linear in
+ * the number of nodes.
+ *
+ * <p>Nodes are linked to their direct enclosing block as they are added — by
+ * {@link LiveGraphState} while a run is live, or in one walk for a completed run. Aggregates
+ * are only computed, and memoised, for closed blocks: a WarningAction is attached while its
+ * step runs, so once a block's end node exists nothing inside it can change.
+ *
+ * <p>Single writer, like {@link NodeAncestry}: {@link #add} must be called by one thread at a
+ * time, and readers only ask about blocks whose end node they saw added.
+ */
+public final class WarningActionIndex {
+
+    private static final int NONE = -1;
+
+    private static final int INITIAL_IDS = 64;
+
+    // A FlowNode, or a RestoredNode that is only loaded when its block's warning is asked for.
+    private volatile Object[] nodesById = new Object[INITIAL_IDS];
+    // Children of a block as a linked list, two slots per id:
+    // [2 * id] = most recently added child, [2 * id + 1] = next sibling; NONE when absent.
+    private volatile int[] links = newLinks(INITIAL_IDS);
+
+    // Worst warning among each closed block's descendants, keyed by the block start's id.
+    // Optional because ConcurrentHashMap disallows null values: empty means "no warning".
+    private final Map<Integer, Optional<WarningAction>> worstByBlock = new ConcurrentHashMap<>();
+
+    WarningActionIndex() {}
+
+    /** Builds the index for a completed run in one walk back from its {@code heads}. */
+    static WarningActionIndex walk(@NonNull List<FlowNode> heads) {
+        WarningActionIndex index = new WarningActionIndex();
+        DepthFirstScanner scanner = new DepthFirstScanner();
+        scanner.setup(heads);
+        for (FlowNode node : scanner) {
+            String enclosingId = node.getEnclosingId();
+            index.add(node, enclosingId == null ? NONE : Integer.parseInt(enclosingId));
+        }
+        return index;
+    }
+
+    /** Links {@code node} under {@code parentId}, its direct enclosing block ({@code -1} for none). */
+    void add(@NonNull FlowNode node, int parentId) {
+        add(Integer.parseInt(node.getId()), node, parentId);
+    }
+
+    /** Like {@link #add(FlowNode, int)}, without loading the node until a warning lookup needs it. */
+    void add(@NonNull RestoredNode node, int parentId) {
+        add(Integer.parseInt(node.id()), node, parentId);
+    }
+
+    private void add(int id, Object node, int parentId) {
+        Object[] n = nodesById;
+        int[] l = links;
+        int needed = Math.max(id, parentId) + 1;
+        if (needed > n.length) {
+            int capacity = Math.max(needed, n.length * 2);
+            n = Arrays.copyOf(n, capacity);
+            int[] grown = newLinks(capacity);
+            System.arraycopy(l, 0, grown, 0, l.length);
+            l = grown;
+        }
+        if (n[id] != null) {
+            return;
+        }
+        if (parentId >= 0) {
+            l[2 * id + 1] = l[2 * parentId];
+            l[2 * parentId] = id;
+        }
+        n[id] = node;
+        // Volatile writes publish the links and, after growth, the new arrays.
+        links = l;
+        nodesById = n;
+    }
+
+    /**
+     * Worst WarningAction between {@code start} (exclusive) and {@code end} (inclusive), the
+     * same range a {@code DepthFirstScanner} from {@code end} stopping at {@code start} covers.
+     * Returns {@code null} when the index can't answer: {@code end} isn't the end of the block
+     * {@code start} opens, or the block isn't indexed.
+     */
+    @CheckForNull
+    public Optional<WarningAction> worstBetween(@NonNull FlowNode start, @NonNull FlowNode end) {
+        if (!(start instanceof BlockStartNode)
+                || !(end instanceof BlockEndNode<?> blockEnd)
+                || !blockEnd.getStartNode().getId().equals(start.getId())) {
+            return null;
+        }
+        int startId = Integer.parseInt(start.getId());
+        int endId = Integer.parseInt(end.getId());
+        Object[] n = nodesById;
+        if (endId >= n.length || n[endId] == null || n[startId] == null) {
+            return null;
+        }
+        return Optional.ofNullable(worse(worstInside(startId), end.getPersistentAction(WarningAction.class)));
+    }
+
+    /** Rough heap held by the index itself, not counting the nodes it points to. */
+    long retainedBytes() {
+        return 32L + 4L * nodesById.length + 4L * links.length + 64L * worstByBlock.size();
+    }
+
+    // Worst warning on any node nested in the closed block started by blockId.
+    @CheckForNull
+    private WarningAction worstInside(int blockId) {
+        Optional<WarningAction> memo = worstByBlock.get(blockId);
+        if (memo != null) {
+            return memo.orElse(null);
+        }
+        Object[] n = nodesById;
+        int[] l = links;
+        WarningAction worst = null;
+        for (int child = l[2 * blockId]; child != NONE; child = l[2 * child + 1]) {
+            FlowNode node = n[child] instanceof RestoredNode restored ? restored.get() : (FlowNode) n[child];
+            worst = worse(worst, node.getPersistentAction(WarningAction.class));
+            if (node instanceof BlockStartNode) {
+                worst = worse(worst, worstInside(child));
+            }
+        }
+        worstByBlock.put(blockId, Optional.ofNullable(worst));
+        return worst;
+    }
+
+    @CheckForNull
+    private static WarningAction worse(@CheckForNull WarningAction a, @CheckForNull WarningAction b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return b.getResult().ordinal > a.getResult().ordinal ? b : a;
+    }
+
+    private static int[] newLinks(int ids) {
+        int[] l = new int[2 * ids];
+        Arrays.fill(l, NONE);
+        return l;
+    }
+}
@@ -0,0 +1,148 @@
+package io.jenkins.plugins.pipelinegraphview.treescanner;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+/**
+ * Map keyed by FlowNode id, stored in an array indexed by the id's integer value.
+ *
+ * <p>FlowNode ids are small, dense integers, so this replaces the {@code String} keys and hash
+ * entries of a {@link LinkedHashMap} with one array slot per id. Iteration is in ascending id
+ * order, which is also the insertion order the scanner used to rely on. Not thread-safe.
+ */
+final class NodeIdMap<V> {
+
+    static final int NO_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] values;
+    private int size;
+
+    NodeIdMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    NodeIdMap(int capacity) {
+        this.values = new Object[Math.max(capacity, INITIAL_CAPACITY)];
+    }
+
+    /** Parses each node's id once and indexes the nodes by it. */
+    static NodeIdMap<FlowNode> of(@NonNull Collection<FlowNode> nodes) {
+        NodeIdMap<FlowNode> map = new NodeIdMap<>(nodes.size() + 2);
+        for (FlowNode node : nodes) {
+            map.put(parseId(node.getId()), node);
+        }
+        return map;
+    }
+
+    static int parseId(@NonNull String id) {
+        return Integer.parseInt(id);
+    }
+
+    /** {@link #parseId} that maps {@code null} to {@link #NO_ID}. */
+    static int parseIdOrNone(@CheckForNull String id) {
+        return id == null ? NO_ID : Integer.parseInt(id);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    V get(int id) {
+        return id >= 0 && id < values.length ? (V) values[id] : null;
+    }
+
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    V put(int id, @NonNull V value) {
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+        }
+        V previous = (V) values[id];
+        values[id] = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    V remove(int id) {
+        V previous = get(id);
+        if (previous != null) {
+            values[id] = null;
+            size--;
+        }
+        return previous;
+    }
+
+    /** The value with the highest id, or {@code null} when empty. */
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    V last() {
+        for (int id = values.length - 1; id >= 0 && size > 0; id--) {
+            if (values[id] != null) {
+                return (V) values[id];
+            }
+        }
+        return null;
+    }
+
+    /** Visits entries in ascending id order. */
+    @SuppressWarnings("unchecked")
+    void forEach(@NonNull ObjIntConsumer<V> action) {
+        for (int id = 0, seen = 0; seen < size; id++) {
+            if (values[id] != null) {
+                seen++;
+                action.accept((V) values[id], id);
+            }
+        }
+    }
+
+    /** Visits entries in descending id order. */
+    @SuppressWarnings("unchecked")
+    void forEachDescending(@NonNull ObjIntConsumer<V> action) {
+        for (int id = values.length - 1, seen = 0; seen < size; id--) {
+            if (values[id] != null) {
+                seen++;
+                action.accept((V) values[id], id);
+            }
+        }
+    }
+
+    /** Values in ascending id order. */
+    @NonNull
+    List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEach((value, id) -> list.add(value));
+        return list;
+    }
+
+    /** Copies into a {@code String}-keyed map, in ascending id order, for public callers. */
+    @NonNull
+    Map<String, V> toMap() {
+        Map<String, V> map = new LinkedHashMap<>();
+        forEach((value, id) -> map.put(Integer.toString(id), value));
+        return map;
+    }
+}
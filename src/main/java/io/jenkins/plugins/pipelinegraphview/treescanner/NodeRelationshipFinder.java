@@ -2,11 +2,11 @@ package io.jenkins.plugins.pipelinegraphview.treescanner;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
 import io.jenkins.plugins.pipelinegraphview.utils.FlowNodeWrapper;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineNodeUtil;
 import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -21,7 +21,8 @@ public class NodeRelationshipFinder {
     private static final Logger logger = LoggerFactory.getLogger(NodeRelationshipFinder.class);
     private boolean isDebugEnabled = logger.isDebugEnabled();
 
-    private LinkedHashMap<String, FlowNode> endNodes = new LinkedHashMap<>();
+    // Block start id → end node.
+    private final NodeIdMap<FlowNode> endNodes = new NodeIdMap<>();
 
     /* Stack of stacks to store the last seen node for each nested block we have gone into.
      * Used to assign the after node for relationships.
@@ -31,7 +32,9 @@ public class NodeRelationshipFinder {
      *    - This might be a AtomNode or a BlockStartNode (when a step is followed by a StepBlock).
      */
     private ArrayDeque<ArrayDeque<FlowNode>> lastSeenNodes = new ArrayDeque<>();
-    private Map<String, ArrayDeque<FlowNode>> seenChildNodes = new LinkedHashMap<>();
+    // Enclosing block id → children seen so far (latest first). Top-level nodes have no
+    // enclosing block and are never looked up as siblings, so they aren't tracked.
+    private final NodeIdMap<ArrayDeque<FlowNode>> seenChildNodes = new NodeIdMap<>();
 
     /*  Somewhere to temporarily store the parallel branches information whilst we
      * are handing a parallel block.
@@ -40,20 +43,20 @@ public class NodeRelationshipFinder {
      */
     private ArrayDeque<NodeRelationship> pendingBranchRelationships = new ArrayDeque<>();
 
-    private LinkedHashMap<String, NodeRelationship> relationships = new LinkedHashMap<>();
+    private final NodeIdMap<NodeRelationship> relationships = new NodeIdMap<>();
 
-    // Pre-computed ancestry (node id → enclosing ids, innermost first). When present, this
-    // class never calls FlowNode#getEnclosingId / #getEnclosingBlocks, both of which hit the
-    // execution's storage read lock and contend with the running build's writes.
+    // Pre-computed ancestry. When present, this class never calls FlowNode#getEnclosingId /
+    // #getEnclosingBlocks, both of which hit the execution's storage read lock and contend
+    // with the running build's writes.
     @CheckForNull
-    private final Map<String, List<String>> enclosingIdsByNodeId;
+    private final NodeAncestry ancestry;
 
     public NodeRelationshipFinder() {
         this(null);
     }
 
-    public NodeRelationshipFinder(@CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
-        this.enclosingIdsByNodeId = enclosingIdsByNodeId;
+    public NodeRelationshipFinder(@CheckForNull NodeAncestry ancestry) {
+        this.ancestry = ancestry;
     }
 
     /**
@@ -61,23 +64,28 @@ public class NodeRelationshipFinder {
      */
     @NonNull
     public Map<String, NodeRelationship> getNodeRelationships(@NonNull Collection<FlowNode> nodes) {
+        return findRelationships(NodeIdMap.of(nodes)).toMap();
+    }
+
+    /**
+     * Same as {@link #getNodeRelationships(Collection)}, over nodes already indexed by id. The
+     * result is keyed by the id of each start, end and step node it covers.
+     */
+    @NonNull
+    NodeIdMap<NodeRelationship> findRelationships(@NonNull NodeIdMap<FlowNode> nodesById) {
         if (isDebugEnabled) {
             logger.atDebug()
-                    .addArgument(() -> nodes.stream().map(FlowNode::getId).collect(Collectors.joining(", ")))
-                    .log("Original Ids: {}");
+                    .addArgument(() -> nodesById.values().stream()
+                            .map(FlowNode::getId)
+                            .collect(Collectors.joining(", ")))
+                    .log("Ids: {}");
         }
         // This is important, determining the relationships depends on the order of
-        // iteration.
+        // iteration (latest node first).
         // If there was a method to tell if a node was a parallel block this might be
         // less of an issue.
-        List<FlowNode> sorted = FlowNodeWrapper.sortByFlowNodeId(nodes, true);
-        if (isDebugEnabled) {
-            logger.atDebug()
-                    .addArgument(() -> sorted.stream().map(FlowNode::getId).collect(Collectors.joining(", ")))
-                    .log("Sorted Ids: {}");
-        }
-        sorted.forEach(node -> {
-            getRelationshipForNode(node);
+        nodesById.forEachDescending((node, id) -> {
+            getRelationshipForNode(node, id);
             // Add this node to the parents's stack as the last of it's child nodes that
             //  we have seen.
             addSeenNodes(node);
@@ -85,35 +93,40 @@ public class NodeRelationshipFinder {
         return relationships;
     }
 
-    private void getRelationshipForNode(@NonNull FlowNode node) {
+    private void getRelationshipForNode(@NonNull FlowNode node, int id) {
         // Assign start node to end node.
         if (node instanceof StepAtomNode atomNode) {
-            addStepRelationship(atomNode);
+            addStepRelationship(atomNode, id);
         } else if (node instanceof BlockEndNode<?> endNode) {
             handleBlockEnd(endNode);
         } else {
-            handleBlockStart(node);
+            handleBlockStart(node, id);
         }
     }
 
-    private void handleBlockStart(@NonNull FlowNode node) {
+    private void handleBlockStart(@NonNull FlowNode node, int id) {
         // Assign end node to start node.
         if (FlowNodeWrapper.isStart(node)) {
-            addBlockRelationship(node);
+            addBlockRelationship(node, id);
         } else {
             logger.debug("Why are we here?? {} - {}", node.getId(), node.getClass());
         }
     }
 
     private void addSeenNodes(FlowNode node) {
-        String enclosingId = firstEnclosingIdOf(node);
-        if (!seenChildNodes.containsKey(enclosingId)) {
-            seenChildNodes.put(enclosingId, new ArrayDeque<>());
-        }
+        int enclosingId = firstEnclosingIdOf(node);
         if (isDebugEnabled) {
             logger.debug("Adding {} to seenChildNodes {}", node.getId(), enclosingId);
         }
-        seenChildNodes.get(enclosingId).push(node);
+        if (enclosingId == NodeIdMap.NO_ID) {
+            return;
+        }
+        ArrayDeque<FlowNode> children = seenChildNodes.get(enclosingId);
+        if (children == null) {
+            children = new ArrayDeque<>();
+            seenChildNodes.put(enclosingId, children);
+        }
+        children.push(node);
     }
 
     @CheckForNull
@@ -121,12 +134,12 @@ public class NodeRelationshipFinder {
         FlowNode after;
         // The after node is the last child of the enclosing node, except for the last node in
         // a block, then it's the last node in the enclosing nodes list (likely, this blocks end node).
-        String parentStartId = firstEnclosingIdOf(node);
+        int parentStartId = firstEnclosingIdOf(node);
         ArrayDeque<FlowNode> laterSiblings = getProcessedChildren(parentStartId);
-        if (parentStartId != null && laterSiblings.isEmpty()) {
+        if (parentStartId != NodeIdMap.NO_ID && laterSiblings.isEmpty()) {
             // If there are no later siblings, get the parent's later siblings via the
             // grandparent id.
-            String grandparentId = secondEnclosingIdOf(node);
+            int grandparentId = secondEnclosingIdOf(node);
             ArrayDeque<FlowNode> parentsLaterSiblings = getProcessedChildren(grandparentId);
             after = parentsLaterSiblings.isEmpty() ? null : parentsLaterSiblings.peek();
         } else {
@@ -135,33 +148,28 @@ public class NodeRelationshipFinder {
         return after;
     }
 
-    @CheckForNull
-    private String firstEnclosingIdOf(FlowNode node) {
-        if (enclosingIdsByNodeId != null) {
-            List<String> ids = enclosingIdsByNodeId.get(node.getId());
-            return (ids != null && !ids.isEmpty()) ? ids.get(0) : null;
+    private int firstEnclosingIdOf(FlowNode node) {
+        if (ancestry != null) {
+            return ancestry.parentOf(NodeIdMap.parseId(node.getId()));
         }
-        return node.getEnclosingId();
+        return NodeIdMap.parseIdOrNone(node.getEnclosingId());
     }
 
-    @CheckForNull
-    private String secondEnclosingIdOf(FlowNode node) {
-        if (enclosingIdsByNodeId != null) {
-            List<String> ids = enclosingIdsByNodeId.get(node.getId());
-            return (ids != null && ids.size() >= 2) ? ids.get(1) : null;
+    private int secondEnclosingIdOf(FlowNode node) {
+        if (ancestry != null) {
+            int parent = ancestry.parentOf(NodeIdMap.parseId(node.getId()));
+            return parent == NodeAncestry.NONE ? NodeIdMap.NO_ID : ancestry.parentOf(parent);
         }
         List<? extends BlockStartNode> enclosingBlocks = node.getEnclosingBlocks();
-        return enclosingBlocks.size() >= 2 ? enclosingBlocks.get(1).getId() : null;
+        return enclosingBlocks.size() >= 2 ? NodeIdMap.parseId(enclosingBlocks.get(1).getId()) : NodeIdMap.NO_ID;
     }
 
-    private ArrayDeque<FlowNode> getProcessedChildren(@CheckForNull String nodeId) {
-        if (nodeId != null && seenChildNodes.containsKey(nodeId)) {
-            return seenChildNodes.get(nodeId);
-        }
-        return new ArrayDeque<>();
+    private ArrayDeque<FlowNode> getProcessedChildren(int nodeId) {
+        ArrayDeque<FlowNode> children = seenChildNodes.get(nodeId);
+        return children != null ? children : new ArrayDeque<>();
     }
 
-    private void addStepRelationship(@NonNull StepAtomNode step) {
+    private void addStepRelationship(@NonNull StepAtomNode step, int id) {
         if (isDebugEnabled) {
             logger.debug("Generating relationship for step {}", step.getId());
         }
@@ -176,23 +184,26 @@ public class NodeRelationshipFinder {
                     after == null ? "null" : after.getClass().getName());
         }
         NodeRelationship nodeRelationship = new NodeRelationship(step, step, after);
-        relationships.put(step.getId(), nodeRelationship);
+        relationships.put(id, nodeRelationship);
     }
 
     private void handleBlockEnd(@NonNull BlockEndNode<?> endNode) {
         // Blindly push a new start pending reliable way to check for parallel node.
         FlowNode startNode = endNode.getStartNode();
-        endNodes.put(startNode.getId(), endNode);
+        endNodes.put(NodeIdMap.parseId(startNode.getId()), endNode);
         // Create new stack for this block, add the end node and push it to stack of stacks.
         ArrayDeque<FlowNode> nodeBlockStack = new ArrayDeque<>();
         lastSeenNodes.push(nodeBlockStack);
     }
 
-    private void addBlockRelationship(@NonNull FlowNode node) {
+    private void addBlockRelationship(@NonNull FlowNode node, int id) {
         NodeRelationship blockRelationship = null;
         // Can be null if the block is running, in this case we give the end node as the
         // current nodes.
-        FlowNode endNode = endNodes.getOrDefault(node.getId(), node);
+        FlowNode endNode = endNodes.get(id);
+        if (endNode == null) {
+            endNode = node;
+        }
         if (PipelineNodeUtil.isParallelBranch(node)) {
             addParallelBranchRelationship(node, endNode);
         } else {
@@ -204,11 +215,11 @@ public class NodeRelationshipFinder {
             } else {
                 blockRelationship = addStageRelationship(node, endNode);
             }
-            relationships.put(node.getId(), blockRelationship);
+            relationships.put(id, blockRelationship);
             // Set this relationship for the end node as well - as the relationship
             // encompasses it too.
             if (endNode != node) {
-                relationships.put(endNode.getId(), blockRelationship);
+                relationships.put(NodeIdMap.parseId(endNode.getId()), blockRelationship);
             }
         }
     }
@@ -246,10 +257,10 @@ public class NodeRelationshipFinder {
         // Set branch relationship to the parent ParallelBlockRelationship - as they are
         // fairly interdependent.
         for (NodeRelationship r : pendingBranchRelationships) {
-            relationships.put(r.getStart().getId(), parallelRelationship);
+            relationships.put(NodeIdMap.parseId(r.getStart().getId()), parallelRelationship);
             // End nodes can be null when graph is running.
             if (r.getEnd() != null) {
-                relationships.put(r.getEnd().getId(), parallelRelationship);
+                relationships.put(NodeIdMap.parseId(r.getEnd().getId()), parallelRelationship);
             }
         }
         pendingBranchRelationships.clear();
@@ -5,14 +5,19 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import io.jenkins.plugins.pipelinegraphview.analysis.GenericStatus;
 import io.jenkins.plugins.pipelinegraphview.analysis.StatusAndTiming;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
+import io.jenkins.plugins.pipelinegraphview.livestate.BlockResolutionCache;
+import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
 import io.jenkins.plugins.pipelinegraphview.utils.NodeRunStatus;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineNodeUtil;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
 import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
 import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -109,14 +114,15 @@ public class ParallelBlockRelationship extends NodeRelationship {
      * Gets TimingInfo for relationship.
      */
     private void calculateTimings(WorkflowRun run) {
-        long[] pauseDurations = this.branchStarts.stream()
-                .mapToLong(s -> PauseAction.getPauseDuration(s))
-                .toArray();
         // The parallel API expects parallel end to be null if this is still running -
         // so only pass it if it;s not the start node;
         FlowNode parallelEndNode = (this.start != this.end) ? this.end : null;
+        BlockResolutionCache cache = finishedBranchCache(run, parallelEndNode);
+        Map<String, TimingInfo> finished = new HashMap<>();
+        List<BlockStartNode> starts = new ArrayList<>(this.branchStarts.size());
+        List<FlowNode> ends = new ArrayList<>(this.branchEnds.size());
         for (int i = 0; i < this.branchStarts.size(); i++) {
-            FlowNode branchStart = this.branchStarts.get(i);
+            BlockStartNode branchStart = this.branchStarts.get(i);
             FlowNode branchEnd = this.branchEnds.get(i);
             if (isDebugEnabled) {
                 logger.debug(
@@ -124,9 +130,24 @@ public class ParallelBlockRelationship extends NodeRelationship {
                         branchStart.getId(),
                         (branchEnd != null) ? branchEnd.getId() : "null");
             }
+            if (cache != null && branchEnd instanceof BlockEndNode<?>) {
+                finished.put(
+                        getBranchName(branchStart),
+                        cache.getOrComputeBranchTiming(
+                                branchStart.getId(),
+                                branchEnd.getId(),
+                                () -> StatusAndTiming.computeChunkTiming(
+                                        run, PauseAction.getPauseDuration(branchStart), branchStart, branchEnd, null)));
+            } else {
+                starts.add(branchStart);
+                ends.add(branchEnd);
+            }
         }
+        long[] pauseDurations =
+                starts.stream().mapToLong(s -> PauseAction.getPauseDuration(s)).toArray();
         this.branchTimings = StatusAndTiming.computeParallelBranchTimings(
-                run, this.start, this.branchStarts, this.branchEnds, parallelEndNode, pauseDurations);
+                run, this.start, starts, ends, parallelEndNode, pauseDurations);
+        this.branchTimings.putAll(finished);
         if (isDebugEnabled) {
             logger.debug("Calculating parallel timings {}, {} (with above branches)", start.getId(), end.getId());
         }
@@ -181,8 +202,33 @@ public class ParallelBlockRelationship extends NodeRelationship {
         // The parallel API expects parallel end to be null if this is still running -
         // so only pass it if its not the start node;
         FlowNode parallelEndNode = (this.start != this.end) ? this.end : null;
-        this.branchStatuses = StatusAndTiming.computeBranchStatuses2(
-                run, this.start, this.branchStarts, this.branchEnds, parallelEndNode);
+        BlockResolutionCache cache = finishedBranchCache(run, parallelEndNode);
+        // A finished branch's status only settles while something else is still running: once
+        // it holds the only head, computeChunkStatus2 reports it as in progress.
+        if (cache != null && run.getExecution().getCurrentHeads().size() < 2) {
+            cache = null;
+        }
+        Map<String, GenericStatus> finished = new HashMap<>();
+        List<BlockStartNode> starts = new ArrayList<>(this.branchStarts.size());
+        List<FlowNode> ends = new ArrayList<>(this.branchEnds.size());
+        for (int i = 0; i < this.branchStarts.size(); i++) {
+            BlockStartNode branchStart = this.branchStarts.get(i);
+            FlowNode branchEnd = this.branchEnds.get(i);
+            if (cache != null && branchEnd instanceof BlockEndNode<?>) {
+                finished.put(
+                        getBranchName(branchStart),
+                        cache.getOrComputeBranchStatus(
+                                branchStart.getId(),
+                                branchEnd.getId(),
+                                () -> StatusAndTiming.computeChunkStatus2(
+                                        run, this.start, branchStart, branchEnd, null)));
+            } else {
+                starts.add(branchStart);
+                ends.add(branchEnd);
+            }
+        }
+        this.branchStatuses = StatusAndTiming.computeBranchStatuses2(run, this.start, starts, ends, parallelEndNode);
+        this.branchStatuses.putAll(finished);
         for (int i = 0; i < this.branchStarts.size(); i++) {
             BlockStartNode branchStart = this.branchStarts.get(i);
             FlowNode branchEnd = this.branchEnds.get(i);
@@ -201,4 +247,17 @@ public class ParallelBlockRelationship extends NodeRelationship {
         }
         this.overallStatus = StatusAndTiming.condenseStatus(this.branchStatuses.values());
     }
+
+    /*
+     * The live run's cache for branches that finished inside this parallel, or null when the
+     * parallel has ended (its own block is cached then) or the run isn't tracked.
+     */
+    @CheckForNull
+    private static BlockResolutionCache finishedBranchCache(WorkflowRun run, @CheckForNull FlowNode parallelEnd) {
+        FlowExecution execution = run.getExecution();
+        if (parallelEnd != null || execution == null || execution.isComplete()) {
+            return null;
+        }
+        return LiveGraphRegistry.get().blockResolutionCache(execution);
+    }
 }
@@ -1,16 +1,17 @@
 package io.jenkins.plugins.pipelinegraphview.treescanner;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
 import io.jenkins.plugins.pipelinegraphview.utils.FlowNodeWrapper;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphBuilderApi;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepBuilderApi;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
 import java.util.stream.Collectors;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -32,7 +33,8 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
     private final PipelineNodeTreeScanner treeScanner;
     private volatile List<FlowNodeWrapper> pipelineNodesList;
     private volatile Map<String, List<FlowNodeWrapper>> stepsMap;
-    private volatile Map<String, String> nodesToRemap;
+    // Node id → the node that replaces it as a parent.
+    private volatile NodeIdMap<FlowNodeWrapper> nodesToRemap;
 
     public PipelineNodeGraphAdapter(WorkflowRun run) {
         treeScanner = new PipelineNodeTreeScanner(run);
@@ -45,22 +47,22 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
 
     /**
      * Builds the adapter over a pre-collected node set plus pre-computed snapshot data.
-     * Supply {@code enclosingIdsByNodeId} to read ancestry from the map instead of FlowNode
-     * storage, and {@code activeNodeIds} to use the set for per-node liveness checks.
+     * Supply {@code ancestry} to read enclosing blocks from it instead of FlowNode storage,
+     * and {@code activeNodeIds} to use the set for per-node liveness checks.
      */
     public PipelineNodeGraphAdapter(
             WorkflowRun run,
             Collection<FlowNode> preCollectedNodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId,
+            @CheckForNull NodeAncestry ancestry,
             @CheckForNull Set<String> activeNodeIds) {
-        treeScanner = new PipelineNodeTreeScanner(run, preCollectedNodes, enclosingIdsByNodeId, activeNodeIds);
+        treeScanner = new PipelineNodeTreeScanner(run, preCollectedNodes, ancestry, activeNodeIds);
     }
 
     private final Object pipelineLock = new Object();
     private final Object stepLock = new Object();
     private final Object remapLock = new Object();
 
-    private Map<String, String> getNodesToRemap(List<FlowNodeWrapper> pipelineNodesList) {
+    private NodeIdMap<FlowNodeWrapper> getNodesToRemap(List<FlowNodeWrapper> pipelineNodesList) {
         if (this.nodesToRemap != null) {
             return this.nodesToRemap;
         }
@@ -68,17 +70,23 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
             if (this.nodesToRemap != null) {
                 return this.nodesToRemap;
             }
-            Map<String, Integer> childrenCount = new HashMap<>();
+            int maxId = NodeIdMap.NO_ID;
             for (FlowNodeWrapper node : pipelineNodesList) {
+                maxId = Math.max(maxId, node.getIdAsInt());
                 for (FlowNodeWrapper parent : node.getParents()) {
-                    int prev = childrenCount.getOrDefault(parent.getId(), 0);
-                    childrenCount.put(parent.getId(), prev + 1);
+                    maxId = Math.max(maxId, parent.getIdAsInt());
                 }
             }
-            // Get a map of nodes to remap. The first id is the node to map from, the second
+            int[] childrenCount = new int[maxId + 1];
+            for (FlowNodeWrapper node : pipelineNodesList) {
+                for (FlowNodeWrapper parent : node.getParents()) {
+                    childrenCount[parent.getIdAsInt()]++;
+                }
+            }
+            // Get a map of nodes to remap. The key is the id of the node to map from, the value
             // is the node to map to.
             // Most of the logic here is to recreate old behavior - it might not be to everyone's liking.
-            Map<String, String> nodesToRemap = new HashMap<>();
+            NodeIdMap<FlowNodeWrapper> nodesToRemap = new NodeIdMap<>(maxId + 1);
             for (int i = pipelineNodesList.size() - 1; i >= 0; i--) {
                 FlowNodeWrapper node = pipelineNodesList.get(i);
                 for (FlowNodeWrapper parent : node.getParents()) {
@@ -86,7 +94,7 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
                     // that parent.
                     if (node.getType() == FlowNodeWrapper.NodeType.PARALLEL_BLOCK
                             && parent.getType() == FlowNodeWrapper.NodeType.STAGE
-                            && childrenCount.get(parent.getId()) == 1) {
+                            && childrenCount[parent.getIdAsInt()] == 1) {
                         if (isDebugEnabled) {
                             logger.debug(
                                     "getNodesToRemap => Found Parallel block {id: {}, name: {}, type: {}} that has a Stage {id: {}, name: {}, type: {}} as a parent. Adding to remap list.",
@@ -97,7 +105,7 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
                                     parent.getDisplayName(),
                                     parent.getType());
                         }
-                        nodesToRemap.put(node.getId(), parent.getId());
+                        nodesToRemap.put(node.getIdAsInt(), parent);
                         // Skip other checks.
                         continue;
                     }
@@ -105,7 +113,7 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
                     // has only one child (this node) then remap child nodes to that parent.
                     // This removes some superfluous stages in parallel branches.
                     if (parent.getType() == FlowNodeWrapper.NodeType.PARALLEL
-                            && childrenCount.get(parent.getId()) == 1
+                            && childrenCount[parent.getIdAsInt()] == 1
                             && node.getDisplayName().equals(parent.getDisplayName())) {
                         if (isDebugEnabled) {
                             logger.debug(
@@ -117,27 +125,26 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
                                     parent.getDisplayName(),
                                     parent.getType());
                         }
-                        nodesToRemap.put(node.getId(), parent.getId());
+                        nodesToRemap.put(node.getIdAsInt(), parent);
                     }
                 }
             }
-            for (String nodeId : nodesToRemap.keySet()) {
-                nodesToRemap.put(nodeId, getFinalParent(nodeId, nodesToRemap));
-            }
+            nodesToRemap.forEach((parent, nodeId) -> nodesToRemap.put(nodeId, getFinalParent(parent, nodesToRemap)));
             this.nodesToRemap = nodesToRemap;
         }
         return this.nodesToRemap;
     }
 
-    private String getFinalParent(String nodeId, Map<String, String> nodesToRemap) {
-        if (nodesToRemap.containsKey(nodeId)) {
+    private FlowNodeWrapper getFinalParent(FlowNodeWrapper node, NodeIdMap<FlowNodeWrapper> nodesToRemap) {
+        FlowNodeWrapper remapped = nodesToRemap.get(node.getIdAsInt());
+        if (remapped != null) {
             // We only want to calculate this once if we do it after remapping the nodes it
             // will cause
             // issues.
             // So store the result in the class and return it if we have already calculated.
-            return getFinalParent(nodesToRemap.get(nodeId), nodesToRemap);
+            return getFinalParent(remapped, nodesToRemap);
         }
-        return nodeId;
+        return node;
     }
 
     // Useful for dumping node maps to console. These can then be viewed in dor or
@@ -166,17 +173,15 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
         if (pipelineNodesList != null) {
             return;
         }
-        Map<String, FlowNodeWrapper> pipelineNodeMap = treeScanner.getPipelineNodeMap();
-        List<FlowNodeWrapper> pipelineNodes = new ArrayList<>(pipelineNodeMap.values());
-        pipelineNodes.sort(new FlowNodeWrapper.NodeComparator());
+        NodeIdMap<FlowNodeWrapper> pipelineNodeMap = treeScanner.getPipelineNodeIdMap();
+        // Already in ascending id order.
+        List<FlowNodeWrapper> pipelineNodes = pipelineNodeMap.values();
         // Remove children whose parents were skipped.
-        Map<String, String> nodesToRemap = getNodesToRemap(pipelineNodes);
+        NodeIdMap<FlowNodeWrapper> nodesToRemap = getNodesToRemap(pipelineNodes);
         if (isDebugEnabled) {
-            logger.debug(
-                    "remapStageParentage => nodesToRemap: {}",
-                    nodesToRemap.entrySet().stream()
-                            .map(entrySet -> entrySet.getKey() + ":" + entrySet.getValue())
-                            .collect(Collectors.joining(",", "[", "]")));
+            StringJoiner remaps = new StringJoiner(",", "[", "]");
+            nodesToRemap.forEach((parent, nodeId) -> remaps.add(nodeId + ":" + parent.getId()));
+            logger.debug("remapStageParentage => nodesToRemap: {}", remaps);
         }
         dumpNodeGraphviz(pipelineNodes);
         // Find all nodes that have a parent to remap (see 'getNodesToRemap') and change
@@ -184,16 +189,15 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
         // to the designated parent.
         for (int i = pipelineNodes.size() - 1; i >= 0; i--) {
             FlowNodeWrapper node = pipelineNodes.get(i);
-            List<String> parentIds =
-                    node.getParents().stream().map(FlowNodeWrapper::getId).toList();
-            for (String parentId : parentIds) {
-                if (nodesToRemap.containsKey(parentId)) {
+            for (FlowNodeWrapper originalParent : List.copyOf(node.getParents())) {
+                int parentId = originalParent.getIdAsInt();
+                FlowNodeWrapper remapTarget = nodesToRemap.get(parentId);
+                if (remapTarget != null) {
                     FlowNodeWrapper parent = pipelineNodeMap.get(parentId);
                     node.removeEdge(parent);
                     node.removeParent(parent);
-                    String newParentId = nodesToRemap.get(parentId);
-                    if (newParentId != null) {
-                        FlowNodeWrapper newParent = pipelineNodeMap.get(newParentId);
+                    FlowNodeWrapper newParent = pipelineNodeMap.get(remapTarget.getIdAsInt());
+                    if (newParent != null) {
                         node.addEdge(newParent);
                         node.addParent(newParent);
                         if (isDebugEnabled) {
@@ -230,7 +234,7 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
                 // Filter out obsolete Parallel block nodes - ones whose children were remapped
                 // to a
                 // stage.
-                filter(n -> !nodesToRemap.containsKey(n.getId()))
+                filter(n -> !nodesToRemap.containsKey(n.getIdAsInt()))
                 .
                 // Fitter out children from not-run nodes.
                 filter(n -> n.getParents().isEmpty()
@@ -247,11 +251,11 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
         Map<String, List<FlowNodeWrapper>> stepsMap = treeScanner.getAllSteps();
         List<FlowNodeWrapper> pipelineNodes = getPipelineNodes();
         dumpNodeGraphviz(pipelineNodes, stepsMap);
-        Map<String, String> nodesToRemap = getNodesToRemap(pipelineNodes);
-        for (Map.Entry<String, String> remapEntry : nodesToRemap.entrySet()) {
-            String originalParentId = remapEntry.getKey();
+        NodeIdMap<FlowNodeWrapper> nodesToRemap = getNodesToRemap(pipelineNodes);
+        nodesToRemap.forEach((remappedParent, nodeId) -> {
+            String originalParentId = Integer.toString(nodeId);
             if (stepsMap.containsKey(originalParentId)) {
-                String remappedParentId = remapEntry.getValue();
+                String remappedParentId = remappedParent.getId();
                 if (isDebugEnabled) {
                     logger.debug(
                             "remapStepParentage => Remapping {} steps from stage {} to {}.",
@@ -267,7 +271,7 @@ public class PipelineNodeGraphAdapter implements PipelineGraphBuilderApi, Pipeli
                 stepsMap.put(remappedParentId, remappedParentStepsList);
                 stepsMap.remove(originalParentId);
             }
-        }
+        });
         this.stepsMap = stepsMap;
         dumpNodeGraphviz(pipelineNodes, this.stepsMap);
     }
@@ -3,9 +3,12 @@ package io.jenkins.plugins.pipelinegraphview.treescanner;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
 import io.jenkins.plugins.pipelinegraphview.livestate.BlockResolutionCache;
 import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
 import io.jenkins.plugins.pipelinegraphview.utils.FlowNodeWrapper;
 import io.jenkins.plugins.pipelinegraphview.utils.NodeRunStatus;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineNodeUtil;
@@ -17,7 +20,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeoutException;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.plugins.pipeline.modeldefinition.actions.ExecutionModelAction;
 import org.jenkinsci.plugins.workflow.actions.ArgumentsAction;
 import org.jenkinsci.plugins.workflow.actions.ErrorAction;
@@ -36,10 +44,23 @@ import org.jenkinsci.plugins.workflow.support.steps.input.InputStep;
 import org.jenkinsci.plugins.workflow.support.steps.input.InputStepExecution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
 
 /**
  * Generates a Tree Representation of the DAG.
  *
+ * <p>Operator knobs:
+ * <ul>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner.forkJoin}
+ *       ({@code boolean}, default {@code false}) — wrap the nodes of each top-level parallel
+ *       branch concurrently, on a shared pool, when building large graphs.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner.forkJoinMinNodes}
+ *       ({@code int}, default {@code 5000}) — graphs with fewer nodes are always built on the
+ *       calling thread.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner.forkJoinThreads}
+ *       ({@code int}, default: available processors) — size of the shared pool. Read once.</li>
+ * </ul>
+ *
  * @author Tim Brown
  */
 public class PipelineNodeTreeScanner {
@@ -48,16 +69,20 @@ public class PipelineNodeTreeScanner {
 
     // Maps a node ID to a given node wrapper. Stores Stages and parallel blocks -
     // not steps.
-    private Map<String, FlowNodeWrapper> stageNodeMap = new LinkedHashMap<>();
+    private NodeIdMap<FlowNodeWrapper> stageNodeMap = new NodeIdMap<>();
 
     // Maps a node ID to a given step node wrapper.
-    private Map<String, FlowNodeWrapper> stepNodeMap = new LinkedHashMap<>();
+    private NodeIdMap<FlowNodeWrapper> stepNodeMap = new NodeIdMap<>();
 
     private final boolean declarative;
 
     private static final Logger logger = LoggerFactory.getLogger(PipelineNodeTreeScanner.class);
     private final boolean isDebugEnabled = logger.isDebugEnabled();
 
+    private static final int FORK_JOIN_THREADS = SystemProperties.getInteger(
+            PipelineNodeTreeScanner.class.getName() + ".forkJoinThreads",
+            Runtime.getRuntime().availableProcessors());
+
     public PipelineNodeTreeScanner(@NonNull WorkflowRun run) {
         this.run = run;
         this.execution = run.getExecution();
@@ -68,19 +93,19 @@ public class PipelineNodeTreeScanner {
     /**
      * Builds from a caller-supplied node collection, skipping the {@link DepthFirstScanner}
      * walk. The caller is responsible for having observed every node already. Supply
-     * {@code enclosingIdsByNodeId} to read ancestry from the map instead of FlowNode storage,
-     * and {@code activeNodeIds} to use the set for liveness checks instead of
+     * {@code ancestry} to read enclosing blocks from it instead of FlowNode storage, and
+     * {@code activeNodeIds} to use the set for liveness checks instead of
      * {@link FlowNode#isActive()}.
      */
     public PipelineNodeTreeScanner(
             @NonNull WorkflowRun run,
             @NonNull Collection<FlowNode> nodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId,
+            @CheckForNull NodeAncestry ancestry,
             @CheckForNull Set<String> activeNodeIds) {
         this.run = run;
         this.execution = run.getExecution();
         this.declarative = run.getAction(ExecutionModelAction.class) != null;
-        this.buildFrom(nodes, enclosingIdsByNodeId, activeNodeIds);
+        this.buildFrom(nodes, ancestry, activeNodeIds);
     }
 
     /**
@@ -93,8 +118,8 @@ public class PipelineNodeTreeScanner {
         if (execution != null) {
             buildFrom(getAllNodes(), null, null);
         } else {
-            this.stageNodeMap = new LinkedHashMap<>();
-            this.stepNodeMap = new LinkedHashMap<>();
+            this.stageNodeMap = new NodeIdMap<>();
+            this.stepNodeMap = new NodeIdMap<>();
         }
         if (isDebugEnabled) {
             logger.debug("Graph built");
@@ -102,18 +127,18 @@ public class PipelineNodeTreeScanner {
     }
 
     private void buildFrom(
-            Collection<FlowNode> nodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId,
-            @CheckForNull Set<String> activeNodeIds) {
+            Collection<FlowNode> nodes, @CheckForNull NodeAncestry ancestry, @CheckForNull Set<String> activeNodeIds) {
         if (execution == null || nodes.isEmpty()) {
-            this.stageNodeMap = new LinkedHashMap<>();
-            this.stepNodeMap = new LinkedHashMap<>();
+            this.stageNodeMap = new NodeIdMap<>();
+            this.stepNodeMap = new NodeIdMap<>();
             return;
         }
-        NodeRelationshipFinder finder = new NodeRelationshipFinder(enclosingIdsByNodeId);
-        Map<String, NodeRelationship> relationships = finder.getNodeRelationships(nodes);
+        // Each node's id is parsed once here; everything below is keyed by the int.
+        NodeIdMap<FlowNode> nodesById = NodeIdMap.of(nodes);
+        NodeRelationshipFinder finder = new NodeRelationshipFinder(ancestry);
+        NodeIdMap<NodeRelationship> relationships = finder.findRelationships(nodesById);
         GraphBuilder builder =
-                new GraphBuilder(nodes, relationships, this.run, this.execution, enclosingIdsByNodeId, activeNodeIds);
+                new GraphBuilder(nodesById, relationships, this.run, this.execution, ancestry, activeNodeIds);
         if (isDebugEnabled) {
             logger.debug("Original nodes: count={}", builder.getNodes().size());
         }
@@ -147,46 +172,53 @@ public class PipelineNodeTreeScanner {
 
     @NonNull
     public Map<String, List<FlowNodeWrapper>> getAllSteps() {
+        NodeIdMap<List<FlowNodeWrapper>> buckets = new NodeIdMap<>();
         Map<String, List<FlowNodeWrapper>> stageNodeStepMap = new LinkedHashMap<>();
-        for (String stageId : stageNodeMap.keySet()) {
-            stageNodeStepMap.put(stageId, new ArrayList<>());
-        }
-        for (FlowNodeWrapper step : stepNodeMap.values()) {
+        stageNodeMap.forEach((stage, id) -> {
+            List<FlowNodeWrapper> bucket = new ArrayList<>();
+            buckets.put(id, bucket);
+            stageNodeStepMap.put(stage.getId(), bucket);
+        });
+        stepNodeMap.forEach((step, id) -> {
             List<FlowNodeWrapper> parents = step.getParents();
             if (parents.isEmpty()) {
-                continue;
+                return;
             }
             if (parents.size() == 1) {
-                List<FlowNodeWrapper> bucket =
-                        stageNodeStepMap.get(parents.get(0).getId());
+                List<FlowNodeWrapper> bucket = buckets.get(parents.get(0).getIdAsInt());
                 if (bucket != null) {
                     bucket.add(step);
                 }
-                continue;
+                return;
             }
             // A step with multiple parents belongs to every matching stage, but only once.
-            Set<String> seen = new HashSet<>(parents.size());
+            Set<Integer> seen = new HashSet<>(parents.size());
             for (FlowNodeWrapper parent : parents) {
-                if (seen.add(parent.getId())) {
-                    List<FlowNodeWrapper> bucket = stageNodeStepMap.get(parent.getId());
+                if (seen.add(parent.getIdAsInt())) {
+                    List<FlowNodeWrapper> bucket = buckets.get(parent.getIdAsInt());
                     if (bucket != null) {
                         bucket.add(step);
                     }
                 }
             }
-        }
+        });
         return stageNodeStepMap;
     }
 
     @NonNull
     public List<FlowNodeWrapper> getPipelineNodes() {
-        List<FlowNodeWrapper> stageNodes = new ArrayList<>(this.stageNodeMap.values());
-        stageNodes.sort(new FlowNodeWrapper.NodeComparator());
-        return stageNodes;
+        // Already in ascending id order.
+        return this.stageNodeMap.values();
     }
 
     @NonNull
     public Map<String, FlowNodeWrapper> getPipelineNodeMap() {
+        return this.stageNodeMap.toMap();
+    }
+
+    /** {@link #getPipelineNodeMap()} without the copy into a {@code String}-keyed map. */
+    @NonNull
+    NodeIdMap<FlowNodeWrapper> getPipelineNodeIdMap() {
         return this.stageNodeMap;
     }
 
@@ -194,9 +226,30 @@ public class PipelineNodeTreeScanner {
         return this.declarative;
     }
 
+    /** See the {@code .forkJoin} and {@code .forkJoinMinNodes} knobs on the class javadoc. */
+    private static boolean forkJoin(int nodeCount) {
+        String prefix = PipelineNodeTreeScanner.class.getName();
+        return SystemProperties.getBoolean(prefix + ".forkJoin", false)
+                && nodeCount >= SystemProperties.getInteger(prefix + ".forkJoinMinNodes", 5000);
+    }
+
+    // Holder so the pool is only started once a fork/join build actually happens.
+    private static final class BuildPool {
+        static final ForkJoinPool POOL =
+                new ForkJoinPool(Math.max(1, FORK_JOIN_THREADS), BuildPool::newThread, null, false);
+
+        private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("PipelineNodeTreeScanner graph build " + thread.getPoolIndex());
+            // Node actions may be loaded from storage on these threads.
+            thread.setContextClassLoader(Jenkins.get().getPluginManager().uberClassLoader);
+            return thread;
+        }
+    }
+
     private static class GraphBuilder {
-        private final Collection<FlowNode> nodes;
-        private final Map<String, NodeRelationship> relationships;
+        private final NodeIdMap<FlowNode> nodes;
+        private final NodeIdMap<NodeRelationship> relationships;
         private final WorkflowRun run;
 
         @NonNull
@@ -205,18 +258,18 @@ public class PipelineNodeTreeScanner {
         // Optional pre-computed ancestry. When present, findParentNode avoids the storage
         // read lock that FlowNode#getAllEnclosingIds would take.
         @CheckForNull
-        private final Map<String, List<String>> enclosingIdsByNodeId;
+        private final NodeAncestry ancestry;
 
         // Node IDs considered active at snapshot time (current heads + enclosing blocks).
         // When non-null, {@code NodeRunStatus} reads liveness from this set.
         @CheckForNull
         private final Set<String> activeNodeIds;
 
-        private final Map<String, FlowNodeWrapper> wrappedNodeMap = new LinkedHashMap<>();
+        private final NodeIdMap<FlowNodeWrapper> wrappedNodeMap;
         // These two are populated when required using by filtering unwanted nodes from
         // 'wrappedNodeMap' into a new map.
-        private Map<String, FlowNodeWrapper> wrappedStepMap;
-        private Map<String, FlowNodeWrapper> wrappedStageMap;
+        private NodeIdMap<FlowNodeWrapper> wrappedStepMap;
+        private NodeIdMap<FlowNodeWrapper> wrappedStageMap;
 
         // The root stage in the graph. We assign any unhandled exceptions to this.
         // FlowNodeWrapper rootStage = null;
@@ -231,25 +284,26 @@ public class PipelineNodeTreeScanner {
          * in the same graph.
          */
         public GraphBuilder(
-                Collection<FlowNode> nodes,
-                @NonNull Map<String, NodeRelationship> relationships,
+                @NonNull NodeIdMap<FlowNode> nodes,
+                @NonNull NodeIdMap<NodeRelationship> relationships,
                 @NonNull WorkflowRun run,
                 @NonNull FlowExecution execution,
-                @CheckForNull Map<String, List<String>> enclosingIdsByNodeId,
+                @CheckForNull NodeAncestry ancestry,
                 @CheckForNull Set<String> activeNodeIds) {
             this.nodes = nodes;
             this.relationships = relationships;
+            this.wrappedNodeMap = new NodeIdMap<>(nodes.size());
             this.run = run;
             this.inputAction = run.getAction(InputAction.class);
             this.downstreamBuildAction = run.getAction(DownstreamBuildAction.class);
             this.execution = execution;
-            this.enclosingIdsByNodeId = enclosingIdsByNodeId;
+            this.ancestry = ancestry;
             this.activeNodeIds = activeNodeIds;
             buildGraph();
         }
 
         protected List<FlowNodeWrapper> getNodes() {
-            return new ArrayList<>(wrappedNodeMap.values());
+            return wrappedNodeMap.values();
         }
 
         /*
@@ -259,33 +313,31 @@ public class PipelineNodeTreeScanner {
          * allocate node block)
          * will be remapped to the closest not-step parent.
          */
-        public @NonNull Map<String, FlowNodeWrapper> getStageMapping() {
+        public @NonNull NodeIdMap<FlowNodeWrapper> getStageMapping() {
             if (this.wrappedStageMap != null) {
                 return this.wrappedStageMap;
             }
             if (isDebugEnabled) {
                 logger.debug("Remapping stages");
             }
-            // Preserve wrappedNodeMap's LinkedHashMap insertion order (ID-ascending) —
-            // downstream code in getAllSteps relies on iteration order to produce
-            // per-stage step buckets without an extra sort.
-            // i.e., don't change this to a stream.
-            Map<String, FlowNodeWrapper> stageMap = new LinkedHashMap<>();
-            for (Map.Entry<String, FlowNodeWrapper> e : this.wrappedNodeMap.entrySet()) {
-                if (shouldBeInStageMap(e.getValue())) {
-                    stageMap.put(e.getKey(), e.getValue());
+            // NodeIdMap iterates in ascending id order — downstream code in getAllSteps
+            // relies on that to produce per-stage step buckets without an extra sort.
+            NodeIdMap<FlowNodeWrapper> stageMap = new NodeIdMap<>();
+            this.wrappedNodeMap.forEach((node, id) -> {
+                if (shouldBeInStageMap(node)) {
+                    stageMap.put(id, node);
                 }
-            }
+            });
 
             if (stageMap.isEmpty()) {
                 // Force at least one stage so that the log can be viewed
-                for (Map.Entry<String, FlowNodeWrapper> e : this.wrappedNodeMap.entrySet()) {
-                    if (isStartNode(e.getValue())) {
-                        stageMap.put(e.getKey(), e.getValue());
+                this.wrappedNodeMap.forEach((node, id) -> {
+                    if (isStartNode(node)) {
+                        stageMap.put(id, node);
                     }
-                }
+                });
             }
-            for (FlowNodeWrapper stage : stageMap.values()) {
+            stageMap.forEach((stage, id) -> {
                 FlowNodeWrapper firstParent = stage.getFirstParent();
                 // Remap parentage of stages that aren't children of stages (e.g. allocate node
                 // step).
@@ -293,13 +345,14 @@ public class PipelineNodeTreeScanner {
                     logger.debug("Stages has {} parents", stage.getParents().size());
                     logger.debug("First parent of stage {}: {}", stage.getId(), firstParent);
                     if (firstParent != null) {
-                        logger.debug("Parent exists in stage map: {}", stageMap.containsKey(firstParent.getId()));
+                        logger.debug(
+                                "Parent exists in stage map: {}", stageMap.containsKey(firstParent.getIdAsInt()));
                     }
                 }
-                if (firstParent != null && !stageMap.containsKey(firstParent.getId())) {
-                    stageMap.put(stage.getId(), remapNode(stage, stageMap));
+                if (firstParent != null && !stageMap.containsKey(firstParent.getIdAsInt())) {
+                    stageMap.put(id, remapNode(stage, stageMap));
                 }
-            }
+            });
             this.wrappedStageMap = stageMap;
             return this.wrappedStageMap;
         }
@@ -325,7 +378,7 @@ public class PipelineNodeTreeScanner {
          * findParentNode.
          */
         private @NonNull FlowNodeWrapper remapNode(
-                @NonNull FlowNodeWrapper wrappedNode, @NonNull Map<String, FlowNodeWrapper> stageMap) {
+                @NonNull FlowNodeWrapper wrappedNode, @NonNull NodeIdMap<FlowNodeWrapper> stageMap) {
             if (isDebugEnabled) {
                 logger.debug("Remapping node {}, {}", wrappedNode.getId(), wrappedNode.getClass());
             }
@@ -357,7 +410,7 @@ public class PipelineNodeTreeScanner {
          * children of stages.
          * This provides a similar representation to PipelineStepVisitor.
          */
-        public @NonNull Map<String, FlowNodeWrapper> getStepMapping() {
+        public @NonNull NodeIdMap<FlowNodeWrapper> getStepMapping() {
             if (wrappedStepMap != null) {
                 return wrappedStepMap;
             }
@@ -365,22 +418,22 @@ public class PipelineNodeTreeScanner {
             if (isDebugEnabled) {
                 logger.debug("Remapping steps");
             }
-            Map<String, FlowNodeWrapper> stepMap = new LinkedHashMap<>();
-            for (Map.Entry<String, FlowNodeWrapper> e : this.wrappedNodeMap.entrySet()) {
-                if (shouldBeInStepMap(e.getValue())) {
-                    stepMap.put(e.getKey(), e.getValue());
+            NodeIdMap<FlowNodeWrapper> stepMap = new NodeIdMap<>();
+            this.wrappedNodeMap.forEach((node, id) -> {
+                if (shouldBeInStepMap(node)) {
+                    stepMap.put(id, node);
                 }
-            }
+            });
 
-            Map<String, FlowNodeWrapper> stageMap = this.getStageMapping();
-            for (FlowNodeWrapper step : stepMap.values()) {
+            NodeIdMap<FlowNodeWrapper> stageMap = this.getStageMapping();
+            stepMap.forEach((step, id) -> {
                 FlowNodeWrapper firstParent = step.getFirstParent();
                 // Remap parentage of steps that aren't children of stages (e.g. are in Step
                 // Block).
-                if (firstParent != null && !stageMap.containsKey(firstParent.getId())) {
-                    stepMap.put(step.getId(), remapNode(step, stageMap));
+                if (firstParent != null && !stageMap.containsKey(firstParent.getIdAsInt())) {
+                    stepMap.put(id, remapNode(step, stageMap));
                 }
-            }
+            });
 
             this.wrappedStepMap = stepMap;
             return this.wrappedStepMap;
@@ -402,34 +455,120 @@ public class PipelineNodeTreeScanner {
          * Builds a graph from the list of nodes and relationships given to the class.
          */
         private void buildGraph() {
-            List<FlowNode> nodeList = FlowNodeWrapper.sortByFlowNodeId(nodes, false);
             // If the Pipeline ended with an unhandled exception, then we want to catch the
             // node which threw it.
-            BlockEndNode<?> nodeThatThrewException = null;
-            if (!nodeList.isEmpty()) {
-                nodeThatThrewException = getUnhandledException(nodeList.get(nodeList.size() - 1));
-            }
-            for (FlowNode node : nodeList) {
+            FlowNode lastNode = nodes.last();
+            BlockEndNode<?> nodeThatThrewException = lastNode != null ? getUnhandledException(lastNode) : null;
+            NodeIdMap<FlowNodeWrapper> branchNodes =
+                    forkJoin(nodes.size()) ? wrapBranchesConcurrently(nodeThatThrewException) : null;
+            nodes.forEach((node, id) -> {
                 if (nodeThatThrewException == node) {
-                    handleException(node, this.relationships.get(node.getId()));
-                    continue;
+                    handleException(node, id, this.relationships.get(id));
+                    return;
                 } else if (node instanceof BlockEndNode) {
                     // Drop End nodes from Pipeline - unless they are responsible for the unhandled
                     // exception.
                     if (isDebugEnabled) {
                         logger.debug("Skipping end node {}, {}", node.getId(), node.getClass());
                     }
-                    continue;
+                    return;
                 }
                 if (isDebugEnabled) {
                     logger.debug("Wrapping {} [{}]", node.getId(), node.getClass());
                 }
-                FlowNodeWrapper wrappedNode = wrapNode(node, relationships.get(node.getId()));
+                FlowNodeWrapper wrappedNode = branchNodes != null ? branchNodes.get(id) : null;
+                if (wrappedNode == null) {
+                    wrappedNode = wrapNode(node, relationships.get(id));
+                }
                 // Assign parent.
                 FlowNodeWrapper parent = findParentNode(wrappedNode, wrappedNodeMap);
                 assignParent(wrappedNode, parent);
-                wrappedNodeMap.put(node.getId(), wrappedNode);
+                wrappedNodeMap.put(id, wrappedNode);
+            });
+        }
+
+        /*
+         * Fork/join mode: wraps the nodes inside each top-level parallel branch on the shared
+         * pool, one task per branch. A branch's timing and status never depend on another
+         * branch, and every nested relationship belongs to exactly one branch, so the tasks
+         * share nothing mutable. Branch starts themselves (whose parallel relationship computes
+         * all branches at once), nodes outside any parallel, and parent links are left to
+         * buildGraph, which stitches the wrappers together in id order once every task is done.
+         * Returns null, meaning "wrap everything here", when there are fewer than two branches
+         * or a task failed.
+         */
+        private @CheckForNull NodeIdMap<FlowNodeWrapper> wrapBranchesConcurrently(@CheckForNull FlowNode skipped) {
+            FlowNode lastNode = nodes.last();
+            if (lastNode == null) {
+                return null;
+            }
+            // Index (1-based) into branches of the top-level branch enclosing each node; 0 for
+            // nodes outside any parallel. Ancestors have lower ids, so one ascending pass works.
+            int[] branchOf = new int[NodeIdMap.parseId(lastNode.getId()) + 1];
+            List<List<FlowNode>> branches = new ArrayList<>();
+            nodes.forEach((node, id) -> {
+                int parentId = enclosingIdOf(node, id);
+                int branch = parentId >= 0 && parentId < branchOf.length ? branchOf[parentId] : 0;
+                if (branch == 0) {
+                    if (PipelineNodeUtil.isParallelBranch(node)) {
+                        branches.add(new ArrayList<>());
+                        branchOf[id] = branches.size();
+                    }
+                    return;
+                }
+                branchOf[id] = branch;
+                if (node != skipped && !(node instanceof BlockEndNode)) {
+                    branches.get(branch - 1).add(node);
+                }
+            });
+            if (branches.size() < 2) {
+                return null;
+            }
+            // Pool threads don't carry the caller's identity, and wrapNode resolves downstream
+            // builds through permission-checked lookups.
+            Authentication authentication = Jenkins.getAuthentication2();
+            List<ForkJoinTask<FlowNodeWrapper[]>> tasks = new ArrayList<>(branches.size());
+            for (List<FlowNode> branch : branches) {
+                tasks.add(BuildPool.POOL.submit(() -> {
+                    try (ACLContext ignored = ACL.as2(authentication)) {
+                        return wrapAll(branch);
+                    }
+                }));
+            }
+            NodeIdMap<FlowNodeWrapper> wrapped = new NodeIdMap<>(branchOf.length);
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    List<FlowNode> branch = branches.get(i);
+                    FlowNodeWrapper[] branchWrappers = tasks.get(i).join();
+                    for (int j = 0; j < branchWrappers.length; j++) {
+                        wrapped.put(NodeIdMap.parseId(branch.get(j).getId()), branchWrappers[j]);
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Concurrent graph build failed for {}; building on the calling thread", run, e);
+                tasks.forEach(task -> task.cancel(false));
+                return null;
             }
+            if (isDebugEnabled) {
+                logger.debug("Wrapped {} nodes across {} parallel branches", wrapped.size(), branches.size());
+            }
+            return wrapped;
+        }
+
+        private FlowNodeWrapper[] wrapAll(List<FlowNode> branch) {
+            FlowNodeWrapper[] wrapped = new FlowNodeWrapper[branch.size()];
+            for (int i = 0; i < wrapped.length; i++) {
+                FlowNode node = branch.get(i);
+                wrapped[i] = wrapNode(node, relationships.get(NodeIdMap.parseId(node.getId())));
+            }
+            return wrapped;
+        }
+
+        private int enclosingIdOf(@NonNull FlowNode node, int id) {
+            if (ancestry != null) {
+                return ancestry.parentOf(id);
+            }
+            return NodeIdMap.parseIdOrNone(node.getEnclosingId());
         }
 
         /*
@@ -482,7 +621,7 @@ public class PipelineNodeTreeScanner {
          * (the underlying FlowNode class isn't guaranteed).
          */
         private void handleException(
-                @NonNull FlowNode nodeWhichThrewException, @NonNull NodeRelationship relationship) {
+                @NonNull FlowNode nodeWhichThrewException, int id, @NonNull NodeRelationship relationship) {
             assert relationship != null;
             if (isDebugEnabled) {
                 logger.debug(
@@ -494,7 +633,7 @@ public class PipelineNodeTreeScanner {
             FlowNode startNode = null;
             startNode = ((BlockEndNode<?>) nodeWhichThrewException).getStartNode();
             assignParent(wrappedNode, startNode);
-            wrappedNodeMap.put(wrappedNode.getId(), wrappedNode);
+            wrappedNodeMap.put(id, wrappedNode);
         }
 
         /*
@@ -502,13 +641,13 @@ public class PipelineNodeTreeScanner {
          */
         private void assignParent(@NonNull FlowNodeWrapper wrappedNode, @CheckForNull FlowNode parent) {
             if (parent != null) {
-                if (!wrappedNodeMap.containsKey(parent.getId())) {
+                FlowNodeWrapper wrappedParent = wrappedNodeMap.get(NodeIdMap.parseId(parent.getId()));
+                if (wrappedParent == null) {
                     logger.error(
                             "Couldn't find start of node {} (parent of {}) in wrappedNodeMap.",
                             parent.getId(),
                             wrappedNode.getId());
                 } else {
-                    FlowNodeWrapper wrappedParent = wrappedNodeMap.get(parent.getId());
                     assignParent(wrappedNode, wrappedParent);
                 }
             }
@@ -531,19 +670,24 @@ public class PipelineNodeTreeScanner {
          * map of nodes.
          */
         private @CheckForNull FlowNodeWrapper findParentNode(
-                @NonNull FlowNodeWrapper child, @NonNull Map<String, FlowNodeWrapper> wrappedNodeMap) {
+                @NonNull FlowNodeWrapper child, @NonNull NodeIdMap<FlowNodeWrapper> wrappedNodeMap) {
             // Prefer the pre-computed ancestry: FlowNode#getAllEnclosingIds goes through the
             // storage read lock and contends with the running build's writes.
-            List<String> enclosingIds;
-            if (enclosingIdsByNodeId != null) {
-                enclosingIds = enclosingIdsByNodeId.getOrDefault(child.getId(), List.of());
-            } else {
-                enclosingIds = child.getNode().getAllEnclosingIds();
+            if (ancestry != null) {
+                int possibleParentId = ancestry.parentOf(child.getIdAsInt());
+                while (possibleParentId != NodeAncestry.NONE) {
+                    FlowNodeWrapper parent = wrappedNodeMap.get(possibleParentId);
+                    if (parent != null) {
+                        return parent;
+                    }
+                    possibleParentId = ancestry.parentOf(possibleParentId);
+                }
+                return null;
             }
-            Set<String> knownNodes = wrappedNodeMap.keySet();
-            for (String possibleParentId : enclosingIds) {
-                if (knownNodes.contains(possibleParentId)) {
-                    return wrappedNodeMap.get(possibleParentId);
+            for (String possibleParentId : child.getNode().getAllEnclosingIds()) {
+                FlowNodeWrapper parent = wrappedNodeMap.get(NodeIdMap.parseId(possibleParentId));
+                if (parent != null) {
+                    return parent;
                 }
             }
             // Should only happen for the first node in the graph we are remapping.
@@ -3,6 +3,7 @@ package io.jenkins.plugins.pipelinegraphview.utils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
+import java.util.Objects;
 
 public class AbstractPipelineNode {
     final String name;
@@ -85,4 +86,17 @@ public class AbstractPipelineNode {
     public String getCauseOfBlockage() {
         return causeOfBlockage;
     }
+
+    /** Whether every serialised field of this node matches {@code other}'s. */
+    boolean sameFieldsAs(AbstractPipelineNode other) {
+        return id.equals(other.id)
+                && Objects.equals(name, other.name)
+                && state == other.state
+                && Objects.equals(type, other.type)
+                && Objects.equals(title, other.title)
+                && pauseDurationMillis == other.pauseDurationMillis
+                && getStartTimeMillis() == other.getStartTimeMillis()
+                && Objects.equals(getTotalDurationMillis(), other.getTotalDurationMillis())
+                && Objects.equals(causeOfBlockage, other.causeOfBlockage);
+    }
 }
@@ -1,38 +1,217 @@
 package io.jenkins.plugins.pipelinegraphview.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
+import java.time.Duration;
 import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Builds {@link PipelineNodeGraphAdapter}s for runs the live state doesn't cover, on a
+ * dedicated bounded pool. Concurrent requests for the same run share one build, which stays
+ * shared until every waiting caller has its result. When the queue is full the caller builds
+ * its own adapter, so a burst slows the requesting threads down instead of piling up work.
+ *
+ * <p>Adapters for in-progress runs are also kept for a short while, keyed by the run and its
+ * current head ids. Polls that arrive before the run moves on — typically every viewer's
+ * next poll — reuse the last adapter instead of walking the whole graph again. This is the
+ * path taken when the live state is disabled, poisoned or evicted, so it is where the
+ * controller can least afford repeated walks.
+ *
+ * <p>Operator knobs:
+ * <ul>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.utils.CachedPipelineNodeGraphAdaptor.threads}
+ *       ({@code int}, default: available processors) — builds that run at once.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.utils.CachedPipelineNodeGraphAdaptor.queueLimit}
+ *       ({@code int}, default {@code 64}) — builds that may wait for a thread before callers
+ *       start building on their own threads.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.utils.CachedPipelineNodeGraphAdaptor.resultTtlMillis}
+ *       ({@code long}, default {@code 1000}, one front-end poll interval) — how long an
+ *       in-progress run's adapter is reused while its heads don't change. {@code 0} disables
+ *       reuse.</li>
+ *   <li>{@code io.jenkins.plugins.pipelinegraphview.utils.CachedPipelineNodeGraphAdaptor.resultCacheSize}
+ *       ({@code int}, default {@code 32}) — adapters kept for reuse at most.</li>
+ * </ul>
+ *
+ * <p>{@link #getQueueDepth()} and {@link #getActiveCount()} show the pool's load; read them from
+ * the script console via {@code CachedPipelineNodeGraphAdaptor.instance} when sizing the knobs.
+ */
 public class CachedPipelineNodeGraphAdaptor {
 
+    private static final int THREADS = Math.max(
+            1,
+            SystemProperties.getInteger(
+                    CachedPipelineNodeGraphAdaptor.class.getName() + ".threads",
+                    Runtime.getRuntime().availableProcessors()));
+    private static final int QUEUE_LIMIT = Math.max(
+            1, SystemProperties.getInteger(CachedPipelineNodeGraphAdaptor.class.getName() + ".queueLimit", 64));
+    private static final long RESULT_TTL_MILLIS =
+            SystemProperties.getLong(CachedPipelineNodeGraphAdaptor.class.getName() + ".resultTtlMillis", 1000L);
+    private static final int RESULT_CACHE_SIZE = Math.max(
+            1, SystemProperties.getInteger(CachedPipelineNodeGraphAdaptor.class.getName() + ".resultCacheSize", 32));
+
     public static final CachedPipelineNodeGraphAdaptor instance = new CachedPipelineNodeGraphAdaptor();
     private static final Logger log = LoggerFactory.getLogger(CachedPipelineNodeGraphAdaptor.class);
 
-    private final Map<String, CompletableFuture<PipelineNodeGraphAdapter>> tasks = new ConcurrentHashMap<>();
+    private final Map<String, PendingBuild> tasks = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final long resultTtlMillis;
+
+    // Recent adapters of in-progress runs, keyed by headsKeyFor.
+    private final Cache<String, PipelineNodeGraphAdapter> recentResults;
 
-    private CachedPipelineNodeGraphAdaptor() {}
+    private final Function<WorkflowRun, PipelineNodeGraphAdapter> builder;
+
+    private CachedPipelineNodeGraphAdaptor() {
+        this(THREADS, QUEUE_LIMIT, RESULT_TTL_MILLIS, PipelineNodeGraphAdapter::new);
+    }
+
+    // Package-private so tests can use a fresh instance with their own limits and builds.
+    CachedPipelineNodeGraphAdaptor(
+            int threads,
+            int queueLimit,
+            long resultTtlMillis,
+            Function<WorkflowRun, PipelineNodeGraphAdapter> builder) {
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit),
+                new NamingThreadFactory(new DaemonThreadFactory(), "CachedPipelineNodeGraphAdaptor"));
+        executor.allowCoreThreadTimeOut(true);
+        this.resultTtlMillis = resultTtlMillis;
+        recentResults = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(Math.max(1L, resultTtlMillis)))
+                .maximumSize(RESULT_CACHE_SIZE)
+                .build();
+        this.builder = builder;
+    }
 
     public PipelineNodeGraphAdapter getFor(WorkflowRun run) {
         String key = run.getExternalizableId();
+        // Read before any build starts, so whatever gets built covers at least these heads.
+        String headsKey = headsKeyFor(run, key);
+        if (headsKey != null) {
+            PipelineNodeGraphAdapter recent = recentResults.getIfPresent(headsKey);
+            if (recent != null) {
+                return recent;
+            }
+        }
 
-        CompletableFuture<PipelineNodeGraphAdapter> task = tasks.computeIfAbsent(key, (ignored) -> {
-            log.debug("Creating new PipelineNodeGraphAdapter for run: {}", key);
-            return CompletableFuture.supplyAsync(() -> new PipelineNodeGraphAdapter(run));
+        boolean[] created = new boolean[1];
+        PendingBuild build = tasks.compute(key, (ignored, existing) -> {
+            PendingBuild pending = existing;
+            if (pending == null) {
+                pending = new PendingBuild();
+                created[0] = true;
+            }
+            pending.waiters++;
+            return pending;
         });
+        if (created[0]) {
+            log.debug("Creating new PipelineNodeGraphAdapter for run: {}", key);
+            submit(key, run, build.future, headsKey);
+        }
 
         try {
-            return task.join();
+            return build.future.join();
         } catch (CancellationException | CompletionException e) {
             throw new RuntimeException("Failure computing graph for " + key, e);
         } finally {
-            tasks.remove(key);
+            // Only the last waiter drops the entry; anyone arriving after that starts afresh,
+            // as the run may have moved on since.
+            tasks.computeIfPresent(
+                    key, (ignored, pending) -> pending == build && --pending.waiters == 0 ? null : pending);
         }
     }
+
+    /** Builds waiting for a thread, not counting those running or built by their callers. */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /** Builds currently running on the pool. */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /** Callers currently waiting on the run's pending build, {@code 0} if there is none. */
+    int getWaiters(WorkflowRun run) {
+        int[] waiters = new int[1];
+        tasks.computeIfPresent(run.getExternalizableId(), (ignored, pending) -> {
+            waiters[0] = pending.waiters;
+            return pending;
+        });
+        return waiters[0];
+    }
+
+    /**
+     * The run's id plus its sorted current head ids, or {@code null} when adapters of this run
+     * shouldn't be reused: it has finished (the graph cache covers it then) or reuse is off.
+     */
+    @CheckForNull
+    private String headsKeyFor(WorkflowRun run, String key) {
+        if (resultTtlMillis <= 0 || !run.isBuilding()) {
+            return null;
+        }
+        FlowExecution execution = run.getExecution();
+        if (execution == null) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(",", key + "@", "");
+        execution.getCurrentHeads().stream().map(FlowNode::getId).sorted().forEach(joiner::add);
+        return joiner.toString();
+    }
+
+    private void submit(
+            String key,
+            WorkflowRun run,
+            CompletableFuture<PipelineNodeGraphAdapter> future,
+            @CheckForNull String headsKey) {
+        Runnable task = () -> {
+            try {
+                PipelineNodeGraphAdapter adapter = builder.apply(run);
+                if (headsKey != null) {
+                    recentResults.put(headsKey, adapter);
+                }
+                future.complete(adapter);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Graph build queue full ({} waiting); building {} on the calling thread", getQueueDepth(), key);
+            task.run();
+        }
+    }
+
+    private static final class PendingBuild {
+        private final CompletableFuture<PipelineNodeGraphAdapter> future = new CompletableFuture<>();
+        // Callers that still need the result. Only read and written inside tasks.compute*.
+        private int waiters;
+    }
 }
@@ -0,0 +1,60 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/** Conditional-request helpers for the {@code tree} / {@code allSteps} endpoints. */
+@Restricted(NoExternalUse.class)
+public final class Etags {
+
+    private Etags() {}
+
+    /**
+     * Sets {@code ETag} and, when the request's {@code If-None-Match} already names it, answers
+     * {@code 304 Not Modified} and returns {@code true}; the caller then writes nothing more.
+     * A {@code null} tag leaves the response untouched.
+     */
+    public static boolean notModified(HttpServletRequest req, HttpServletResponse rsp, @CheckForNull String etag) {
+        if (etag == null) {
+            return false;
+        }
+        rsp.setHeader("ETag", etag);
+        if (matches(req.getHeader("If-None-Match"), etag)) {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Derives the tag of the gzip-encoded variant of a response from the identity one, as
+     * strong tags must differ per content coding. Passes {@code null} through.
+     */
+    @CheckForNull
+    public static String forCoding(@CheckForNull String etag, boolean gzip) {
+        if (etag == null || !gzip) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    static boolean matches(@CheckForNull String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses weak comparison.
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -5,12 +5,11 @@ import static java.util.Collections.emptyList;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
 import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphSnapshot;
+import io.jenkins.plugins.pipelinegraphview.livestate.MissingCheckpointedNodeException;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
 import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
-import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
-import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
@@ -25,6 +24,10 @@ public class PipelineGraphApi {
     private static final Logger logger = LoggerFactory.getLogger(PipelineGraphApi.class);
     private final transient WorkflowRun run;
 
+    // Set by tests that pin how the work of tree assembly grows with the stage count.
+    @CheckForNull
+    transient TreeAssemblyWork assemblyWork;
+
     public PipelineGraphApi(WorkflowRun run) {
         this.run = run;
     }
@@ -32,7 +35,12 @@ public class PipelineGraphApi {
     private List<PipelineStageInternal> getPipelineNodes(
             PipelineGraphBuilderApi builder,
             @CheckForNull List<FlowNode> workspaceNodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
+            @CheckForNull NodeAncestry ancestry) {
+        // One pass over the workspace nodes for all stages; the scanner path has no candidate
+        // list, so every node of the run is a candidate there.
+        WorkspaceNodeIndex workspaces = new WorkspaceNodeIndex(
+                workspaceNodes != null ? workspaceNodes : new DepthFirstScanner().allNodes(run.getExecution()),
+                ancestry);
         return builder.getPipelineNodes().stream()
                 .map(flowNodeWrapper -> new PipelineStageInternal(
                         flowNodeWrapper.getId(), // TODO no need to parse it BO returns a string even though the
@@ -46,26 +54,33 @@ public class PipelineGraphApi {
                         flowNodeWrapper.getDisplayName(), // TODO blue ocean uses timing information: "Passed in 0s"
                         flowNodeWrapper.isSynthetic(),
                         flowNodeWrapper.getTiming(),
-                        getStageNode(flowNodeWrapper, workspaceNodes, enclosingIdsByNodeId),
+                        workspaces.agentFor(flowNodeWrapper),
                         flowNodeWrapper.getCauseOfBlockage()))
                 .collect(Collectors.toList());
     }
 
-    private Function<String, PipelineStage> mapper(
-            Map<String, PipelineStageInternal> stageMap, Map<String, List<String>> stageToChildrenMap) {
-        String runUrl = run.getUrl();
-        return id -> {
-            List<String> orDefault = stageToChildrenMap.getOrDefault(id, emptyList());
-            List<PipelineStage> children =
-                    orDefault.stream().map(mapper(stageMap, stageToChildrenMap)).collect(Collectors.toList());
-            return stageMap.get(id).toPipelineStage(children, runUrl);
-        };
+    // Recursion is bounded by stage nesting depth.
+    private static PipelineStage toPipelineStage(
+            PipelineStageInternal stage,
+            Map<String, PipelineStageInternal> stageMap,
+            Map<String, List<String>> stageToChildrenMap,
+            String runUrl,
+            TreeAssemblyWork work) {
+        work.probes++;
+        List<String> childIds = stageToChildrenMap.getOrDefault(stage.getId(), emptyList());
+        List<PipelineStage> children = new ArrayList<>(childIds.size());
+        for (String childId : childIds) {
+            work.probes++;
+            children.add(toPipelineStage(stageMap.get(childId), stageMap, stageToChildrenMap, runUrl, work));
+        }
+        work.conversions++;
+        return stage.toPipelineStage(children, runUrl);
     }
 
     private PipelineGraph createTree(
             PipelineGraphBuilderApi builder,
             @CheckForNull List<FlowNode> workspaceNodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
+            @CheckForNull NodeAncestry ancestry) {
         FlowExecution execution = run.getExecution();
         if (execution == null) {
             // No execution either means the run finished without one (e.g. a syntax error),
@@ -82,7 +97,7 @@ public class PipelineGraphApi {
         // We want to remap children here, so we don't update the parents of the
         // original objects - as
         // these are completely new representations.
-        List<PipelineStageInternal> stages = getPipelineNodes(builder, workspaceNodes, enclosingIdsByNodeId);
+        List<PipelineStageInternal> stages = getPipelineNodes(builder, workspaceNodes, ancestry);
 
         // Get InputAction once for all stages
         InputAction inputAction = run.getAction(InputAction.class);
@@ -95,119 +110,86 @@ public class PipelineGraphApi {
             });
         }
 
+        TreeAssemblyWork work = assemblyWork != null ? assemblyWork : new TreeAssemblyWork();
         // id => stage
-        Map<String, PipelineStageInternal> stageMap = stages.stream()
-                .collect(Collectors.toMap(
-                        PipelineStageInternal::getId, stage -> stage, (u, v) -> u, LinkedHashMap::new));
-
+        Map<String, PipelineStageInternal> stageMap = new LinkedHashMap<>();
+        // Parent id => child ids, plus every id that hangs off a parent, in one pass.
         Map<String, List<String>> stageToChildrenMap = new HashMap<>();
-        List<String> childNodes = new ArrayList<>();
-
-        stages.forEach(stage -> {
+        Set<String> childNodes = new HashSet<>();
+        for (PipelineStageInternal stage : stages) {
+            work.probes++;
+            stageMap.putIfAbsent(stage.getId(), stage);
+            work.probes++;
             if (stage.getParents().isEmpty()) {
                 stageToChildrenMap.put(stage.getId(), new ArrayList<>());
             } else {
-                List<String> parentChildren =
-                        stageToChildrenMap.getOrDefault(stage.getParents().get(0), new ArrayList<String>());
-                parentChildren.add(stage.getId());
+                stageToChildrenMap
+                        .computeIfAbsent(stage.getParents().get(0), k -> new ArrayList<>())
+                        .add(stage.getId());
+                work.probes++;
                 childNodes.add(stage.getId());
-                stageToChildrenMap.put(stage.getParents().get(0), parentChildren);
             }
-        });
+        }
+        // Only roots are converted here; each converts its own subtree, so every stage is
+        // converted exactly once.
         String runUrl = run.getUrl();
-        List<PipelineStage> stageResults = stageMap.values().stream()
-                .map(pipelineStageInternal -> {
-                    List<PipelineStage> children =
-                            stageToChildrenMap.getOrDefault(pipelineStageInternal.getId(), emptyList()).stream()
-                                    .map(mapper(stageMap, stageToChildrenMap))
-                                    .collect(Collectors.toList());
-
-                    return pipelineStageInternal.toPipelineStage(children, runUrl);
-                })
-                .filter(stage -> !childNodes.contains(stage.id))
-                .collect(Collectors.toList());
+        List<PipelineStage> stageResults = new ArrayList<>();
+        for (PipelineStageInternal stage : stageMap.values()) {
+            work.probes++;
+            if (!childNodes.contains(stage.getId())) {
+                stageResults.add(toPipelineStage(stage, stageMap, stageToChildrenMap, runUrl, work));
+            }
+        }
         return new PipelineGraph(stageResults, complete);
     }
 
-    private static String getStageNode(
-            FlowNodeWrapper flowNodeWrapper,
-            @CheckForNull List<FlowNode> workspaceNodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
-        FlowNode flowNode = flowNodeWrapper.getNode();
-        logger.debug("Checking node {}", flowNode);
-        FlowExecution execution = flowNode.getExecution();
-        Iterable<FlowNode> candidates =
-                workspaceNodes != null ? workspaceNodes : new DepthFirstScanner().allNodes(execution);
-        // Prefer pre-computed ancestry: FlowNode#getAllEnclosingIds / getEnclosingId /
-        // execution.getNode all acquire the storage read lock, which contends with the
-        // running build's writes.
-        List<String> flowNodeEnclosingIds = enclosingIdsFor(flowNode, enclosingIdsByNodeId);
-        for (FlowNode n : candidates) {
-            WorkspaceAction ws = n.getAction(WorkspaceAction.class);
-            if (ws != null) {
-                logger.debug("Found workspace node: {}", n);
-                List<String> nEnclosingIds = enclosingIdsFor(n, enclosingIdsByNodeId);
-                String nDirectEnclosingId = nEnclosingIds.isEmpty() ? null : nEnclosingIds.get(0);
-                boolean isWorkspaceNode = Objects.equals(n.getId(), flowNode.getId())
-                        || Objects.equals(nDirectEnclosingId, flowNode.getId())
-                        || flowNodeEnclosingIds.contains(n.getId());
-
-                // For parallel stages the stage wrapper sits three levels above the workspace
-                // node (branch → parallel block → sub-stage → workspace).
-                if (flowNodeWrapper.getType() == FlowNodeWrapper.NodeType.PARALLEL) {
-                    if (enclosingIdsByNodeId != null) {
-                        if (nEnclosingIds.size() >= 3) {
-                            isWorkspaceNode = Objects.equals(flowNode.getId(), nEnclosingIds.get(2));
-                        }
-                    } else {
-                        try {
-                            if (n.getEnclosingId() != null) {
-                                FlowNode p = execution.getNode(n.getEnclosingId());
-                                if (p != null && p.getEnclosingId() != null) {
-                                    p = execution.getNode(p.getEnclosingId());
-                                    if (p != null && p.getEnclosingId() != null) {
-                                        isWorkspaceNode = Objects.equals(flowNode.getId(), p.getEnclosingId());
-                                    }
-                                }
-                            }
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                }
+    public PipelineGraph createTree() {
+        return PipelineGraphViewCache.get().getGraph(run, this::computeTree);
+    }
 
-                if (isWorkspaceNode) {
-                    logger.debug("Found correct stage node: {}", n.getId());
-                    String node = ws.getNode();
-                    if (node.isEmpty()) {
-                        node = "built-in";
-                    }
-                    return node;
-                }
+    /**
+     * {@link #createTree()} serialized for the {@code tree} endpoint. For live runs the bytes
+     * are shared by every viewer of the same version.
+     */
+    @Restricted(NoExternalUse.class)
+    public ResponseBytes createTreeResponse() {
+        PipelineGraph graph = createTree();
+        if (!graph.complete) {
+            StageChangeLog changes = LiveGraphRegistry.get().stageChangeLog(run);
+            // The log only holds bytes for its own graph; a newer log is served next time.
+            if (changes != null && changes.graph() == graph) {
+                return changes.fullResponse();
             }
         }
-        return null;
+        return ResponseBytes.streamed(graph, graph.complete);
     }
 
-    private static List<String> enclosingIdsFor(FlowNode node, @CheckForNull Map<String, List<String>> map) {
-        if (map != null) {
-            List<String> pre = map.get(node.getId());
-            if (pre != null) {
-                return pre;
+    /**
+     * Returns the stages a client holding the live graph at version {@code since} needs to
+     * catch up, serialized and shared per version like {@link #createTreeResponse()}. Runs the
+     * live state doesn't track (completed, or on the scanner fallback) always get the full
+     * graph, without a version.
+     */
+    @Restricted(NoExternalUse.class)
+    public ResponseBytes createTreeUpdateResponse(long since) {
+        PipelineGraph graph = createTree();
+        if (!graph.complete) {
+            // Read the log after createTree so it covers at least that graph; it answers
+            // from its own copy, which is the same graph or a newer one.
+            StageChangeLog changes = LiveGraphRegistry.get().stageChangeLog(run);
+            if (changes != null) {
+                return changes.responseSince(since);
             }
         }
-        return node.getAllEnclosingIds();
-    }
-
-    public PipelineGraph createTree() {
-        return PipelineGraphViewCache.get().getGraph(run, this::computeTree);
+        return ResponseBytes.streamed(PipelineGraphUpdate.full(graph, null), graph.complete);
     }
 
     /** Uncached compute path; callers are responsible for any caching. */
     @Restricted(NoExternalUse.class)
     public PipelineGraph computeTree() {
-        // Fast path: cache hit without locking.
-        Long currentVersion = LiveGraphRegistry.get().currentVersion(run);
+        // Fast path: cache hit without locking. Keyed on the tree version rather than the
+        // node version so steps appended inside a running stage reuse the cached graph.
+        Long currentVersion = LiveGraphRegistry.get().currentTreeVersion(run);
         if (currentVersion != null) {
             PipelineGraph cached = LiveGraphRegistry.get().cachedGraph(run, currentVersion);
             if (cached != null) {
@@ -220,7 +202,7 @@ public class PipelineGraphApi {
         if (lock != null) {
             synchronized (lock) {
                 // Re-check — another thread likely computed while we waited.
-                Long retryVersion = LiveGraphRegistry.get().currentVersion(run);
+                Long retryVersion = LiveGraphRegistry.get().currentTreeVersion(run);
                 if (retryVersion != null) {
                     PipelineGraph cached = LiveGraphRegistry.get().cachedGraph(run, retryVersion);
                     if (cached != null) {
@@ -229,13 +211,18 @@ public class PipelineGraphApi {
                 }
                 LiveGraphSnapshot snapshot = LiveGraphRegistry.get().snapshot(run);
                 if (snapshot != null) {
-                    PipelineGraph computed = createTree(
-                            new PipelineNodeGraphAdapter(
-                                    run, snapshot.nodes(), snapshot.enclosingIdsByNodeId(), snapshot.activeNodeIds()),
-                            snapshot.workspaceNodes(),
-                            snapshot.enclosingIdsByNodeId());
-                    LiveGraphRegistry.get().cacheGraph(run, snapshot.version(), computed);
-                    return computed;
+                    try {
+                        PipelineGraph computed = createTree(
+                                new PipelineNodeGraphAdapter(
+                                        run, snapshot.nodes(), snapshot.ancestry(), snapshot.activeNodeIds()),
+                                snapshot.workspaceNodes(),
+                                snapshot.ancestry());
+                        LiveGraphRegistry.get().cacheGraph(run, snapshot.version(), computed);
+                        return computed;
+                    } catch (MissingCheckpointedNodeException e) {
+                        // The live state poisoned itself; the scanner below doesn't need it.
+                        logger.warn("Live state of {} is stale; building from the scanner", run, e);
+                    }
                 }
             }
         }
@@ -244,14 +231,23 @@ public class PipelineGraphApi {
 
     /**
      * Builds a {@link PipelineGraph} from a caller-supplied adapter, workspace-node list,
-     * and optional pre-computed ancestry map. Doesn't touch the live-state DTO cache —
+     * and optional pre-computed ancestry. Doesn't touch the live-state DTO cache —
      * caller owns caching.
      */
     @Restricted(NoExternalUse.class)
     public PipelineGraph createTreeFrom(
             PipelineGraphBuilderApi builder,
             @CheckForNull List<FlowNode> workspaceNodes,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
-        return createTree(builder, workspaceNodes, enclosingIdsByNodeId);
+            @CheckForNull NodeAncestry ancestry) {
+        return createTree(builder, workspaceNodes, ancestry);
+    }
+
+    /**
+     * Work done by one tree assembly: stages converted to {@link PipelineStage}s, and lookups in
+     * the id, children and child-id structures. Both must grow linearly with the stage count.
+     */
+    static final class TreeAssemblyWork {
+        long conversions;
+        long probes;
     }
 }
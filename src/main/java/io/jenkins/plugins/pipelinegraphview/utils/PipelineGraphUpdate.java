@@ -0,0 +1,33 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import java.util.List;
+
+/**
+ * Response body of {@code tree?since=<version>}. When {@link #delta} is {@code true},
+ * {@link #stages} only holds the subtrees that changed after the requested version, each of
+ * which replaces the stage with the same ID in the client's copy; otherwise it is the full
+ * top-level stage list, exactly as {@link PipelineGraph} would serialise it.
+ */
+public class PipelineGraphUpdate {
+
+    final List<PipelineStage> stages;
+    public final boolean complete;
+
+    // Live-state version this payload reflects; clients pass it back as {@code since}.
+    // Omitted when the run isn't tracked by the live state, in which case only full
+    // responses are possible.
+    final Long version;
+
+    final boolean delta;
+
+    PipelineGraphUpdate(List<PipelineStage> stages, boolean complete, Long version, boolean delta) {
+        this.stages = stages;
+        this.complete = complete;
+        this.version = version;
+        this.delta = delta;
+    }
+
+    static PipelineGraphUpdate full(PipelineGraph graph, Long version) {
+        return new PipelineGraphUpdate(graph.stages, graph.complete, version, false);
+    }
+}
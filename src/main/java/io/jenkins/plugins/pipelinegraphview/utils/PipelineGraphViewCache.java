@@ -4,33 +4,53 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tools.jackson.core.JacksonException;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 
 /**
  * Disk-backed cache for the computed pipeline graph and step list of completed runs.
  * For in-progress runs the cache is transparent (every call recomputes). Once a run is
- * no longer building, results are persisted as JSON under the run's directory and can be
- * streamed straight back to HTTP clients without going through Jackson on the read path.
+ * no longer building, results are persisted as gzipped JSON under the run's directory and can
+ * be streamed straight back to HTTP clients without going through Jackson on the read path.
  *
- * <p>The on-disk format is the same wire JSON the {@code tree} / {@code allSteps} endpoints
- * emit (the {@code data} portion of the {@code {"status":"ok","data":...}} envelope).
- * {@link #tryServeTree(WorkflowRun, OutputStream)} / {@link #tryServeAllSteps(WorkflowRun,
- * OutputStream)} wrap that in the envelope and copy bytes through.
+ * <p>The on-disk format is the complete gzipped response body the {@code tree} /
+ * {@code allSteps} endpoints emit, {@code {"status":"ok","data":...}} envelope included.
+ * {@link #tryServeTree(WorkflowRun, HttpServletRequest, HttpServletResponse)} copies those
+ * bytes through unchanged with {@code Content-Encoding: gzip} when the client accepts it, and
+ * inflates them on the fly otherwise. Files written by older releases hold plain JSON without
+ * the envelope ({@link #LEGACY_TREE_FILE_NAME}); they are still read and served until the
+ * entry is next written.
+ *
+ * <p>The step list is additionally stored split by stage ({@link #STAGE_STEPS_FILE_NAME}, laid
+ * out as described in {@link StageStepSegments}), so
+ * {@link #tryServeStageSteps(WorkflowRun, String, HttpServletRequest, HttpServletResponse)} can
+ * answer for one stage with a positional read of its segment rather than parsing every step.
  *
  * <p>Schema version is encoded in the file name: a future format change just bumps
  * {@link #SCHEMA_VERSION} so old files become orphans on disk and are ignored.
@@ -39,13 +59,19 @@ public class PipelineGraphViewCache {
 
     public static final int SCHEMA_VERSION = 3;
 
-    public static final String TREE_FILE_NAME = "pipeline-graph-view-tree.v" + SCHEMA_VERSION + ".json";
-    public static final String ALL_STEPS_FILE_NAME = "pipeline-graph-view-allsteps.v" + SCHEMA_VERSION + ".json";
+    public static final String LEGACY_TREE_FILE_NAME = "pipeline-graph-view-tree.v" + SCHEMA_VERSION + ".json";
+    public static final String LEGACY_ALL_STEPS_FILE_NAME =
+            "pipeline-graph-view-allsteps.v" + SCHEMA_VERSION + ".json";
+    public static final String TREE_FILE_NAME = LEGACY_TREE_FILE_NAME + ".gz";
+    public static final String ALL_STEPS_FILE_NAME = LEGACY_ALL_STEPS_FILE_NAME + ".gz";
+    public static final String STAGE_STEPS_FILE_NAME = "pipeline-graph-view-stagesteps.v" + SCHEMA_VERSION + ".bin";
     public static final String LEGACY_XSTREAM_FILE_NAME = "pipeline-graph-view-cache.xml";
 
     private static final byte[] ENVELOPE_PREFIX = "{\"status\":\"ok\",\"data\":".getBytes(StandardCharsets.UTF_8);
     private static final byte[] ENVELOPE_SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
 
+    private static final int BUFFER_SIZE = 8192;
+
     private static final Logger logger = LoggerFactory.getLogger(PipelineGraphViewCache.class);
     private static final PipelineGraphViewCache INSTANCE = new PipelineGraphViewCache();
 
@@ -64,19 +90,172 @@ public class PipelineGraphViewCache {
     PipelineGraphViewCache() {}
 
     /**
-     * If a cached graph file exists for {@code run}, write it to {@code out} wrapped in the
-     * Stapler {@code okJSON} envelope and return {@code true}. Otherwise no bytes are written.
+     * If a cached graph file exists for {@code run}, write it to {@code rsp} as the Stapler
+     * {@code okJSON} envelope and return {@code true} — gzip-encoded as stored when the request
+     * accepts it. The response carries an {@code ETag} derived from the file's size and
+     * modification time, and is answered with {@code 304 Not Modified} (still returning
+     * {@code true}) when the request's {@code If-None-Match} matches it. Otherwise nothing is
+     * written and no headers are set.
+     */
+    public boolean tryServeTree(WorkflowRun run, HttpServletRequest req, HttpServletResponse rsp)
+            throws IOException {
+        return tryServe(treeFile(run), legacyTreeFile(run), req, rsp);
+    }
+
+    /** {@link #tryServeTree(WorkflowRun, HttpServletRequest, HttpServletResponse)} for the all-steps payload. */
+    public boolean tryServeAllSteps(WorkflowRun run, HttpServletRequest req, HttpServletResponse rsp)
+            throws IOException {
+        return tryServe(allStepsFile(run), legacyAllStepsFile(run), req, rsp);
+    }
+
+    /**
+     * If a cached graph file exists for {@code run}, write it to {@code out} uncompressed,
+     * wrapped in the Stapler {@code okJSON} envelope, and return {@code true}. Otherwise no
+     * bytes are written.
      */
     public boolean tryServeTree(WorkflowRun run, OutputStream out) throws IOException {
-        return tryServe(treeFile(run), out);
+        return tryServe(treeFile(run), legacyTreeFile(run), out);
     }
 
-    /** {@link #tryServeTree} for the all-steps payload. */
+    /** {@link #tryServeTree(WorkflowRun, OutputStream)} for the all-steps payload. */
     public boolean tryServeAllSteps(WorkflowRun run, OutputStream out) throws IOException {
-        return tryServe(allStepsFile(run), out);
+        return tryServe(allStepsFile(run), legacyAllStepsFile(run), out);
+    }
+
+    /**
+     * If the per-stage step file exists for {@code run}, write the steps of {@code stageId} to
+     * {@code rsp} as {@link #tryServeTree(WorkflowRun, HttpServletRequest, HttpServletResponse)}
+     * does for the graph, and return {@code true}. A stage without steps gets an empty list.
+     * Otherwise, or if the file can't be read, nothing is written and no headers are set.
+     */
+    public boolean tryServeStageSteps(
+            WorkflowRun run, String stageId, HttpServletRequest req, HttpServletResponse rsp) throws IOException {
+        Path file = stageStepsFile(run);
+        StageSegment segment = readStageSegment(run, file, stageId);
+        if (segment == null) {
+            return false;
+        }
+        rsp.addHeader("Vary", "Accept-Encoding");
+        boolean gzip = ResponseBytes.acceptsGzip(req);
+        if (Etags.notModified(req, rsp, etag(file, gzip ? "gzip" : "json"))) {
+            return true;
+        }
+        if (segment.gzipped == null) {
+            PipelineJsonWriter.write(new PipelineStepList(segment.runIsComplete), rsp.getOutputStream());
+        } else if (gzip) {
+            rsp.setHeader("Content-Encoding", "gzip");
+            rsp.setContentLength(segment.gzipped.length);
+            rsp.getOutputStream().write(segment.gzipped);
+        } else {
+            try (InputStream in = segment.inflate()) {
+                in.transferTo(rsp.getOutputStream());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The steps of {@code stageId} from the per-stage step file, parsing that stage's segment
+     * only, or {@code null} when the run is still building or has no readable file.
+     */
+    @CheckForNull
+    public PipelineStepList getStageSteps(WorkflowRun run, String stageId) {
+        if (run.isBuilding()) {
+            return null;
+        }
+        Path file = stageStepsFile(run);
+        StageSegment segment = readStageSegment(run, file, stageId);
+        if (segment == null) {
+            return null;
+        }
+        if (segment.gzipped == null) {
+            return new PipelineStepList(segment.runIsComplete);
+        }
+        try (InputStream in = segment.inflate()) {
+            return MAPPER.readerFor(PipelineStepList.class).at("/data").readValue(in);
+        } catch (IOException | JacksonException e) {
+            logger.warn("Failed to read pipeline graph cache for {}; recomputing", file, e);
+            return null;
+        }
+    }
+
+    private static final class StageSegment {
+        // The stage's gzipped body, null when the run has no steps in it.
+        @CheckForNull
+        final byte[] gzipped;
+
+        final boolean runIsComplete;
+
+        StageSegment(@CheckForNull byte[] gzipped, boolean runIsComplete) {
+            this.gzipped = gzipped;
+            this.runIsComplete = runIsComplete;
+        }
+
+        InputStream inflate() throws IOException {
+            return new GZIPInputStream(new ByteArrayInputStream(gzipped), BUFFER_SIZE);
+        }
+    }
+
+    /** Reads one stage's segment, or returns {@code null} if there is no readable file. */
+    @CheckForNull
+    private StageSegment readStageSegment(WorkflowRun run, Path file, String stageId) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        CachedValue entry = memCache.get(run.getExternalizableId(), k -> new CachedValue());
+        // No lock: the entry's monitor is held for whole parses and computes, and the index
+        // is immutable and checked against the file opened here.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            StageStepSegments segments = StageStepSegments.read(channel, entry.stageSteps);
+            entry.stageSteps = segments;
+            return new StageSegment(segments.segment(channel, stageId), segments.runIsComplete());
+        } catch (NoSuchFileException e) {
+            // Replaced between the check and the open; rare enough to just compute.
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to read pipeline graph cache for {}; recomputing", file, e);
+            return null;
+        }
+    }
+
+    private boolean tryServe(Path file, Path legacyFile, HttpServletRequest req, HttpServletResponse rsp)
+            throws IOException {
+        if (!Files.exists(file)) {
+            if (!Files.exists(legacyFile)) {
+                return false;
+            }
+            if (Etags.notModified(req, rsp, etag(legacyFile, "json"))) {
+                return true;
+            }
+            return tryServeLegacy(legacyFile, rsp.getOutputStream());
+        }
+        // The body depends on Accept-Encoding, so shared caches must key on it.
+        rsp.addHeader("Vary", "Accept-Encoding");
+        boolean gzip = ResponseBytes.acceptsGzip(req);
+        // Strong tags must differ per content coding.
+        if (Etags.notModified(req, rsp, etag(file, gzip ? "gzip" : "json"))) {
+            return true;
+        }
+        if (gzip) {
+            rsp.setHeader("Content-Encoding", "gzip");
+            rsp.setContentLengthLong(Files.size(file));
+            Files.copy(file, rsp.getOutputStream());
+            return true;
+        }
+        return tryServe(file, legacyFile, rsp.getOutputStream());
     }
 
-    private boolean tryServe(Path file, OutputStream out) throws IOException {
+    private boolean tryServe(Path file, Path legacyFile, OutputStream out) throws IOException {
+        if (!Files.exists(file)) {
+            return tryServeLegacy(legacyFile, out);
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            in.transferTo(out);
+        }
+        return true;
+    }
+
+    private boolean tryServeLegacy(Path file, OutputStream out) throws IOException {
         if (!Files.exists(file)) {
             return false;
         }
@@ -88,6 +267,22 @@ public class PipelineGraphViewCache {
         return true;
     }
 
+    /**
+     * Identifies a cache file by size and modification time. Files are only ever replaced as
+     * a whole (see {@link #writeFile}), so any rewrite changes the tag; {@code null} if the
+     * file vanished meanwhile.
+     */
+    @CheckForNull
+    private static String etag(Path file, String coding) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return "\"" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-"
+                    + Long.toHexString(attributes.size()) + "-" + coding + "\"";
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     public PipelineGraph getGraph(WorkflowRun run, Supplier<PipelineGraph> compute) {
         if (run.isBuilding()) {
             return compute.get();
@@ -95,11 +290,11 @@ public class PipelineGraphViewCache {
         CachedValue entry = memCache.get(run.getExternalizableId(), k -> new CachedValue());
         synchronized (entry) {
             if (entry.graph == null) {
-                entry.graph = readJson(treeFile(run), PipelineGraph.class);
+                entry.graph = readJson(treeFile(run), legacyTreeFile(run), PipelineGraph.class);
             }
             if (entry.graph == null) {
                 entry.graph = compute.get();
-                writeJson(treeFile(run), entry.graph);
+                writeJson(treeFile(run), legacyTreeFile(run), entry.graph);
             }
             return entry.graph;
         }
@@ -112,11 +307,16 @@ public class PipelineGraphViewCache {
         CachedValue entry = memCache.get(run.getExternalizableId(), k -> new CachedValue());
         synchronized (entry) {
             if (entry.allSteps == null) {
-                entry.allSteps = readJson(allStepsFile(run), PipelineStepList.class);
+                entry.allSteps = readJson(allStepsFile(run), legacyAllStepsFile(run), PipelineStepList.class);
+                // Caches written by older releases have no per-stage file yet.
+                if (entry.allSteps != null && !Files.exists(stageStepsFile(run))) {
+                    writeStageSteps(run, entry);
+                }
             }
             if (entry.allSteps == null) {
                 entry.allSteps = compute.get();
-                writeJson(allStepsFile(run), entry.allSteps);
+                writeJson(allStepsFile(run), legacyAllStepsFile(run), entry.allSteps);
+                writeStageSteps(run, entry);
             }
             return entry.allSteps;
         }
@@ -133,26 +333,76 @@ public class PipelineGraphViewCache {
         synchronized (entry) {
             entry.graph = graph;
             entry.allSteps = allSteps;
-            writeJson(treeFile(run), graph);
-            writeJson(allStepsFile(run), allSteps);
+            writeJson(treeFile(run), legacyTreeFile(run), graph);
+            writeJson(allStepsFile(run), legacyAllStepsFile(run), allSteps);
+            writeStageSteps(run, entry);
+        }
+    }
+
+    /**
+     * Returns the JSON-decoded value at {@code source} (or, failing that, the plain
+     * {@code legacySource}), or {@code null} if neither file is present and readable.
+     */
+    private <T> T readJson(Path source, Path legacySource, Class<T> type) {
+        if (!Files.exists(source)) {
+            return readLegacyJson(legacySource, type);
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(source), BUFFER_SIZE)) {
+            // Skip the envelope: the payload is the "data" member.
+            return MAPPER.readerFor(type).at("/data").readValue(in);
+        } catch (IOException | JacksonException e) {
+            // A corrupt/older file shouldn't wedge the cache: drop it and fall back to compute.
+            logger.warn("Failed to read pipeline graph cache for {}; recomputing", source, e);
+            return null;
         }
     }
 
-    /** Returns the JSON-decoded value at {@code source} or {@code null} if the file is absent or unreadable. */
-    private <T> T readJson(Path source, Class<T> type) {
+    private <T> T readLegacyJson(Path source, Class<T> type) {
         if (!Files.exists(source)) {
             return null;
         }
         try (InputStream in = new BufferedInputStream(Files.newInputStream(source))) {
             return MAPPER.readValue(in, type);
-        } catch (IOException e) {
+        } catch (IOException | JacksonException e) {
             // A corrupt/older file shouldn't wedge the cache: drop it and fall back to compute.
             logger.warn("Failed to read pipeline graph cache for {}; recomputing", source, e);
             return null;
         }
     }
 
-    private void writeJson(Path target, Object data) {
+    private void writeJson(Path target, Path legacyTarget, Object data) {
+        boolean written = writeFile(target, tmp -> {
+            try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE)) {
+                PipelineJsonWriter.write(data, CloseShieldOutputStream.wrap(os));
+            }
+        });
+        if (!written) {
+            return;
+        }
+        try {
+            // Best-effort cleanup of any pre-v1 XStream cache or uncompressed JSON left behind
+            // by older versions of the plugin.
+            Files.deleteIfExists(legacyTarget);
+            Files.deleteIfExists(target.resolveSibling(LEGACY_XSTREAM_FILE_NAME));
+        } catch (IOException e) {
+            logger.warn("Failed to delete legacy pipeline graph cache for {}", target.getFileName(), e);
+        }
+    }
+
+    // Caller holds the lock on entry.
+    private void writeStageSteps(WorkflowRun run, CachedValue entry) {
+        writeFile(stageStepsFile(run), tmp -> {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE)) {
+                StageStepSegments.write(entry.allSteps, os);
+            }
+        });
+    }
+
+    /**
+     * Writes {@code target} through a temporary file, so it is replaced as a whole or not at
+     * all. Returns {@code false}, having logged why, if it wasn't.
+     */
+    private boolean writeFile(Path target, TempFileWriter writer) {
         Path dir = target.getParent();
         if (dir == null) {
             throw new RuntimeException("No parent directory for " + target);
@@ -160,20 +410,17 @@ public class PipelineGraphViewCache {
         Path tmp = null;
         try {
             tmp = Files.createTempFile(dir, target.getFileName() + ".", ".tmp");
-            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
-                MAPPER.writeValue(os, data);
-            }
+            writer.write(tmp);
             try {
                 Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
             } catch (AtomicMoveNotSupportedException e) {
                 Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
             }
             tmp = null;
-            // Best-effort cleanup of any pre-v1 XStream cache left behind by older versions
-            // of the plugin.
-            Files.deleteIfExists(dir.resolve(LEGACY_XSTREAM_FILE_NAME));
+            return true;
         } catch (IOException e) {
             logger.warn("Failed to write pipeline graph cache for {}", target.getFileName(), e);
+            return false;
         } finally {
             if (tmp != null) {
                 try {
@@ -193,13 +440,31 @@ public class PipelineGraphViewCache {
         return run.getRootDir().toPath().resolve(ALL_STEPS_FILE_NAME);
     }
 
+    private Path stageStepsFile(WorkflowRun run) {
+        return run.getRootDir().toPath().resolve(STAGE_STEPS_FILE_NAME);
+    }
+
+    private Path legacyTreeFile(WorkflowRun run) {
+        return run.getRootDir().toPath().resolve(LEGACY_TREE_FILE_NAME);
+    }
+
+    private Path legacyAllStepsFile(WorkflowRun run) {
+        return run.getRootDir().toPath().resolve(LEGACY_ALL_STEPS_FILE_NAME);
+    }
+
     /** Test hook: drop in-memory entries so the next call re-runs the supplier. */
     void invalidateMemory() {
         memCache.invalidateAll();
     }
 
+    private interface TempFileWriter {
+        void write(Path tmp) throws IOException;
+    }
+
     static class CachedValue {
         PipelineGraph graph;
         PipelineStepList allSteps;
+        // Index of the per-stage step file, read without the lock. See StageStepSegments.
+        volatile StageStepSegments stageSteps;
     }
 }
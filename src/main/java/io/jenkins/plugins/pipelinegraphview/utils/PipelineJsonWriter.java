@@ -24,7 +24,16 @@ public final class PipelineJsonWriter {
 
     private PipelineJsonWriter() {}
 
+    /**
+     * Writes {@code data} in the envelope to {@code out}, closing it afterwards. Jackson writes
+     * through to {@code out} as it goes, so nothing beyond its buffer is held in memory.
+     */
     public static void write(Object data, OutputStream out) {
         MAPPER.writeValue(out, Map.of("status", "ok", "data", data));
     }
+
+    /** {@link #write} into a byte array, for responses that are served more than once. */
+    public static byte[] toBytes(Object data) {
+        return MAPPER.writeValueAsBytes(Map.of("status", "ok", "data", data));
+    }
 }
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
 import java.util.List;
+import java.util.Objects;
 
 public class PipelineStage extends AbstractPipelineNode {
 
@@ -78,4 +79,36 @@ public class PipelineStage extends AbstractPipelineNode {
         this.agent = agent;
         this.url = url;
     }
+
+    /**
+     * Whether this stage serialises the same as {@code other}, ignoring the contents of its
+     * children (only their IDs and order are compared).
+     */
+    boolean sameShallowAs(PipelineStage other) {
+        if (!sameFieldsAs(other)
+                || sequential != other.sequential
+                || synthetic != other.synthetic
+                || placeholder != other.placeholder
+                || !Objects.equals(seqContainerName, other.seqContainerName)
+                || !Objects.equals(agent, other.agent)
+                || !Objects.equals(url, other.url)) {
+            return false;
+        }
+        if (nextSibling == null || other.nextSibling == null) {
+            if (nextSibling != other.nextSibling) {
+                return false;
+            }
+        } else if (!nextSibling.sameShallowAs(other.nextSibling)) {
+            return false;
+        }
+        if (children.size() != other.children.size()) {
+            return false;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            if (!children.get(i).id.equals(other.children.get(i).id)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
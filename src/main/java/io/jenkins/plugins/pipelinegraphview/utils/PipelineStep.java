@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
 import java.util.Map;
+import java.util.Objects;
 
 public class PipelineStep extends AbstractPipelineNode {
     final String stageId;
@@ -60,4 +61,13 @@ public class PipelineStep extends AbstractPipelineNode {
     public Map<String, Object> getFlags() {
         return flags;
     }
+
+    /** Whether this step serialises the same as {@code other}. */
+    boolean sameAs(PipelineStep other) {
+        return sameFieldsAs(other)
+                && Objects.equals(stageId, other.stageId)
+                && Objects.equals(inputStep, other.inputStep)
+                && Objects.equals(buildStep, other.buildStep)
+                && Objects.equals(flags, other.flags);
+    }
 }
@@ -5,7 +5,10 @@ import hudson.model.Run;
 import io.jenkins.plugins.pipelinegraphview.consoleview.PipelineConsoleViewAction;
 import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphRegistry;
 import io.jenkins.plugins.pipelinegraphview.livestate.LiveGraphSnapshot;
+import io.jenkins.plugins.pipelinegraphview.livestate.MissingCheckpointedNodeException;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
 import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +34,7 @@ public class PipelineStepApi {
             List<FlowNodeWrapper> stepNodes,
             String stageId,
             @CheckForNull Set<String> hideFromViewBlockStartIds,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
+            @CheckForNull NodeAncestry ancestry) {
         if (logger.isDebugEnabled()) {
             logger.debug("PipelineStepApi parsing {} steps for stage {}", stepNodes.size(), stageId);
         }
@@ -66,8 +69,7 @@ public class PipelineStepApi {
                         }
                     }
 
-                    Map<String, Object> flags =
-                            resolveFlags(flowNodeWrapper, hideFromViewBlockStartIds, enclosingIdsByNodeId);
+                    Map<String, Object> flags = resolveFlags(flowNodeWrapper, hideFromViewBlockStartIds, ancestry);
 
                     return new PipelineStep(
                             flowNodeWrapper.getId(),
@@ -93,17 +95,12 @@ public class PipelineStepApi {
     private static Map<String, Object> resolveFlags(
             FlowNodeWrapper wrapper,
             @CheckForNull Set<String> hideFromViewBlockStartIds,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
-        if (hideFromViewBlockStartIds != null && enclosingIdsByNodeId != null) {
+            @CheckForNull NodeAncestry ancestry) {
+        if (hideFromViewBlockStartIds != null && ancestry != null) {
             Map<String, Object> flags = new HashMap<>();
-            List<String> enclosing = enclosingIdsByNodeId.get(wrapper.getId());
-            if (enclosing != null) {
-                for (String id : enclosing) {
-                    if (hideFromViewBlockStartIds.contains(id)) {
-                        flags.put("hidden", Boolean.TRUE);
-                        break;
-                    }
-                }
+            if (!hideFromViewBlockStartIds.isEmpty()
+                    && ancestry.anyEnclosing(wrapper.getId(), hideFromViewBlockStartIds::contains)) {
+                flags.put("hidden", Boolean.TRUE);
             }
             return flags;
         }
@@ -142,12 +139,11 @@ public class PipelineStepApi {
             PipelineStepBuilderApi builder,
             boolean runIsComplete,
             @CheckForNull Set<String> hideFromViewBlockStartIds,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
+            @CheckForNull NodeAncestry ancestry) {
         Map<String, List<FlowNodeWrapper>> stepNodes = builder.getAllSteps();
         PipelineStepList allSteps = new PipelineStepList(runIsComplete);
         for (Map.Entry<String, List<FlowNodeWrapper>> entry : stepNodes.entrySet()) {
-            allSteps.addAll(
-                    parseSteps(entry.getValue(), entry.getKey(), hideFromViewBlockStartIds, enclosingIdsByNodeId));
+            allSteps.addAll(parseSteps(entry.getValue(), entry.getKey(), hideFromViewBlockStartIds, ancestry));
         }
         allSteps.sort();
         return allSteps;
@@ -155,11 +151,29 @@ public class PipelineStepApi {
 
     public PipelineStepList getSteps(String stageId) {
         PipelineStepList all = getAllSteps();
-        List<PipelineStep> filtered =
-                all.steps.stream().filter(s -> stageId.equals(s.stageId)).collect(Collectors.toList());
-        PipelineStepList result = new PipelineStepList(filtered, all.runIsComplete);
-        result.sort();
-        return result;
+        return new PipelineStepList(new ArrayList<>(all.stageSteps(stageId)), all.runIsComplete);
+    }
+
+    /**
+     * Up to {@code limit} steps starting at {@code offset}, of stage {@code stageId} or, when
+     * that is {@code null}, of the whole run. Once the run's step list is cached, a stage's
+     * window costs O(steps in the window); for a completed run, one whose list isn't loaded
+     * yet costs O(steps in the stage), read from that stage's segment of the disk cache.
+     */
+    @Restricted(NoExternalUse.class)
+    public PipelineStepPage getStepPage(@CheckForNull String stageId, int offset, int limit) {
+        PipelineStepList source = stageId == null ? null : PipelineGraphViewCache.get().getStageSteps(run, stageId);
+        List<PipelineStep> matched;
+        if (source != null) {
+            matched = source.steps;
+        } else {
+            source = getAllSteps();
+            matched = stageId == null ? source.steps : source.stageSteps(stageId);
+        }
+        int from = Math.min(Math.max(offset, 0), matched.size());
+        int to = (int) Math.min(matched.size(), (long) from + Math.max(limit, 0));
+        return new PipelineStepPage(
+                new ArrayList<>(matched.subList(from, to)), source.runIsComplete, stageId, from, matched.size());
     }
 
     /* Returns a PipelineStepList, sorted by stageId and Id. */
@@ -167,6 +181,35 @@ public class PipelineStepApi {
         return PipelineGraphViewCache.get().getAllSteps(run, this::computeAllSteps);
     }
 
+    /** See {@link PipelineGraphApi#createTreeResponse()}. */
+    @Restricted(NoExternalUse.class)
+    public ResponseBytes getAllStepsResponse() {
+        PipelineStepList steps = getAllSteps();
+        if (!steps.runIsComplete) {
+            StepChangeLog changes = LiveGraphRegistry.get().stepChangeLog(run);
+            if (changes != null && changes.steps() == steps) {
+                return changes.fullResponse();
+            }
+        }
+        return ResponseBytes.streamed(steps, steps.runIsComplete);
+    }
+
+    /**
+     * Returns the steps a client holding the live step list at version {@code since} needs
+     * to catch up, serialized. See {@link PipelineGraphApi#createTreeUpdateResponse(long)}.
+     */
+    @Restricted(NoExternalUse.class)
+    public ResponseBytes getAllStepsUpdateResponse(long since) {
+        PipelineStepList steps = getAllSteps();
+        if (!steps.runIsComplete) {
+            StepChangeLog changes = LiveGraphRegistry.get().stepChangeLog(run);
+            if (changes != null) {
+                return changes.responseSince(since);
+            }
+        }
+        return ResponseBytes.streamed(PipelineStepListUpdate.full(steps, null), steps.runIsComplete);
+    }
+
     /** Uncached compute path; callers are responsible for any caching. */
     @Restricted(NoExternalUse.class)
     public PipelineStepList computeAllSteps() {
@@ -192,14 +235,19 @@ public class PipelineStepApi {
                 }
                 LiveGraphSnapshot snapshot = LiveGraphRegistry.get().snapshot(run);
                 if (snapshot != null) {
-                    PipelineStepList computed = getAllSteps(
-                            new PipelineNodeGraphAdapter(
-                                    run, snapshot.nodes(), snapshot.enclosingIdsByNodeId(), snapshot.activeNodeIds()),
-                            runIsComplete,
-                            snapshot.hideFromViewBlockStartIds(),
-                            snapshot.enclosingIdsByNodeId());
-                    LiveGraphRegistry.get().cacheAllSteps(run, snapshot.version(), computed);
-                    return computed;
+                    try {
+                        PipelineStepList computed = getAllSteps(
+                                new PipelineNodeGraphAdapter(
+                                        run, snapshot.nodes(), snapshot.ancestry(), snapshot.activeNodeIds()),
+                                runIsComplete,
+                                snapshot.hideFromViewBlockStartIds(),
+                                snapshot.ancestry());
+                        LiveGraphRegistry.get().cacheAllSteps(run, snapshot.version(), computed);
+                        return computed;
+                    } catch (MissingCheckpointedNodeException e) {
+                        // The live state poisoned itself; the scanner below doesn't need it.
+                        logger.warn("Live state of {} is stale; building from the scanner", run, e);
+                    }
                 }
             }
         }
@@ -224,7 +272,7 @@ public class PipelineStepApi {
             PipelineStepBuilderApi builder,
             boolean runIsComplete,
             @CheckForNull Set<String> hideFromViewBlockStartIds,
-            @CheckForNull Map<String, List<String>> enclosingIdsByNodeId) {
-        return getAllSteps(builder, runIsComplete, hideFromViewBlockStartIds, enclosingIdsByNodeId);
+            @CheckForNull NodeAncestry ancestry) {
+        return getAllSteps(builder, runIsComplete, hideFromViewBlockStartIds, ancestry);
     }
 }
@@ -1,14 +1,24 @@
 package io.jenkins.plugins.pipelinegraphview.utils;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PipelineStepList {
 
     public final List<PipelineStep> steps;
     public final boolean runIsComplete;
 
+    // Stage id => [from, to) range of its steps, built on the first stage lookup. Relies on
+    // the steps being sorted by stage, as sort() leaves them and as they are cached.
+    @JsonIgnore
+    private volatile Map<String, int[]> stageRanges;
+
     public PipelineStepList(boolean runIsComplete) {
         this.steps = new ArrayList<>();
         this.runIsComplete = runIsComplete;
@@ -29,9 +39,44 @@ public class PipelineStepList {
             }
             return Integer.compare(lhs.idAsInt, rhs.idAsInt);
         });
+        this.stageRanges = null;
     }
 
     public void addAll(List<PipelineStep> steps) {
         this.steps.addAll(steps);
+        this.stageRanges = null;
+    }
+
+    /**
+     * The steps of stage {@code stageId}, in order, as a read-only view of {@link #steps}.
+     * The first call indexes every stage in one pass; later calls cost O(1).
+     */
+    public List<PipelineStep> stageSteps(String stageId) {
+        int[] range = stageRanges().get(stageId);
+        return range == null ? List.of() : Collections.unmodifiableList(steps.subList(range[0], range[1]));
+    }
+
+    /** Ids of the stages that have steps. */
+    Collection<String> stageIds() {
+        return stageRanges().keySet();
+    }
+
+    private Map<String, int[]> stageRanges() {
+        // Racy lazy init: two threads may both index, either result is fine.
+        Map<String, int[]> ranges = stageRanges;
+        if (ranges == null) {
+            ranges = new HashMap<>();
+            int i = 0;
+            while (i < steps.size()) {
+                String stageId = steps.get(i).stageId;
+                int from = i;
+                while (i < steps.size() && stageId.equals(steps.get(i).stageId)) {
+                    i++;
+                }
+                ranges.put(stageId, new int[] {from, i});
+            }
+            stageRanges = ranges;
+        }
+        return ranges;
     }
 }
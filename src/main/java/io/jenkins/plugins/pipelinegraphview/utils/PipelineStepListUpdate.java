@@ -0,0 +1,31 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import java.util.List;
+
+/**
+ * Response body of {@code allSteps?since=<version>}. When {@link #delta} is {@code true},
+ * {@link #steps} only holds the steps that were added or changed after the requested version;
+ * clients replace steps with the same ID and keep the rest. Otherwise it is the full list,
+ * exactly as {@link PipelineStepList} would serialise it.
+ */
+public class PipelineStepListUpdate {
+
+    final List<PipelineStep> steps;
+    public final boolean runIsComplete;
+
+    // See PipelineGraphUpdate#version.
+    final Long version;
+
+    final boolean delta;
+
+    PipelineStepListUpdate(List<PipelineStep> steps, boolean runIsComplete, Long version, boolean delta) {
+        this.steps = steps;
+        this.runIsComplete = runIsComplete;
+        this.version = version;
+        this.delta = delta;
+    }
+
+    static PipelineStepListUpdate full(PipelineStepList steps, Long version) {
+        return new PipelineStepListUpdate(steps.steps, steps.runIsComplete, version, false);
+    }
+}
@@ -0,0 +1,28 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import java.util.List;
+
+/**
+ * Response body of {@code allSteps?stage=<id>&offset=<n>&limit=<n>}: a window of the run's
+ * steps, narrowed to one stage when {@link #stage} is set. {@link #total} counts every step
+ * the request matched, so clients can tell whether to ask for the next window.
+ */
+public class PipelineStepPage {
+
+    final List<PipelineStep> steps;
+    public final boolean runIsComplete;
+
+    // Omitted for windows over all stages.
+    final String stage;
+
+    final int offset;
+    final int total;
+
+    PipelineStepPage(List<PipelineStep> steps, boolean runIsComplete, String stage, int offset, int total) {
+        this.steps = steps;
+        this.runIsComplete = runIsComplete;
+        this.stage = stage;
+        this.offset = offset;
+        this.total = total;
+    }
+}
@@ -0,0 +1,121 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A JSON response body serialized once — {@code okJSON} envelope included — so it can be
+ * written to any number of clients without going through Jackson again. The gzipped form is
+ * built on first use and kept alongside.
+ *
+ * <p>Bodies that are only ever written once — completed runs before the disk cache has them,
+ * runs on the scanner fallback — are better not buffered at all: {@link #streamed} keeps the
+ * DTO and serializes it straight into the response.
+ */
+@Restricted(NoExternalUse.class)
+public final class ResponseBytes {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // Exactly one of json and data is set.
+    private final byte[] json;
+    private final Object data;
+    private final boolean complete;
+    // Racy lazy init: two threads may both compress, either result is fine.
+    private volatile byte[] gzip;
+
+    private ResponseBytes(byte[] json, Object data, boolean complete) {
+        this.json = json;
+        this.data = data;
+        this.complete = complete;
+    }
+
+    /** Serializes {@code data}; {@code complete} is whether it describes a finished run. */
+    public static ResponseBytes of(Object data, boolean complete) {
+        return new ResponseBytes(PipelineJsonWriter.toBytes(data), null, complete);
+    }
+
+    /**
+     * Like {@link #of}, but {@code data} is only serialized by {@link #writeTo}, directly into
+     * the response. For bodies written once; each call to {@link #writeTo} serializes again.
+     */
+    public static ResponseBytes streamed(Object data, boolean complete) {
+        return new ResponseBytes(null, data, complete);
+    }
+
+    public boolean complete() {
+        return complete;
+    }
+
+    /**
+     * Writes the body, gzip-encoded when the request accepts it. Callers tagging the response
+     * with an {@code ETag} must vary it the same way (see {@link Etags#forCoding}).
+     */
+    public void writeTo(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
+        rsp.addHeader("Vary", "Accept-Encoding");
+        if (data != null) {
+            // Length unknown up front: the response goes out chunked.
+            OutputStream out = CloseShieldOutputStream.wrap(rsp.getOutputStream());
+            if (acceptsGzip(req)) {
+                rsp.setHeader("Content-Encoding", "gzip");
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            // Closing finishes the gzip trailer; the shield keeps the servlet stream open.
+            PipelineJsonWriter.write(data, out);
+            return;
+        }
+        byte[] body = json;
+        if (acceptsGzip(req)) {
+            rsp.setHeader("Content-Encoding", "gzip");
+            body = gzipped();
+        }
+        rsp.setContentLength(body.length);
+        rsp.getOutputStream().write(body);
+    }
+
+    private byte[] gzipped() {
+        byte[] compressed = gzip;
+        if (compressed == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(json);
+            } catch (IOException e) {
+                // In-memory streams don't fail.
+                throw new UncheckedIOException(e);
+            }
+            compressed = out.toByteArray();
+            gzip = compressed;
+        }
+        return compressed;
+    }
+
+    /** True unless the client didn't list gzip or explicitly refused it with {@code q=0}. */
+    public static boolean acceptsGzip(HttpServletRequest req) {
+        String header = req.getHeader("Accept-Encoding");
+        if (header == null) {
+            return false;
+        }
+        for (String part : header.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                if (params[i].replace(" ", "").matches("q=0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Serialized responses for one version of a live run's graph or step list, keyed by the
+ * {@code since} they answer ({@link #FULL} for the plain full body). Owned by the immutable
+ * change log of that version, so the bytes are dropped together with it when a newer version
+ * is cached. Viewers of a hot run mostly sit on the same version and ask the same question,
+ * so this turns N serializations per version into one.
+ */
+final class SerializedResponses {
+
+    static final long FULL = Long.MIN_VALUE;
+
+    // Clients are normally caught up to one of a few recent versions; anything beyond this
+    // is served uncached rather than growing the map.
+    private static final int MAX_ENTRIES = 16;
+
+    private final Map<Long, ResponseBytes> bySince = new ConcurrentHashMap<>();
+
+    ResponseBytes get(long since, Supplier<ResponseBytes> serialize) {
+        ResponseBytes cached = bySince.get(since);
+        if (cached != null) {
+            return cached;
+        }
+        if (bySince.size() >= MAX_ENTRIES) {
+            return serialize.get();
+        }
+        // Concurrent requests for the same entry wait for a single serialization.
+        return bySince.computeIfAbsent(since, k -> serialize.get());
+    }
+}
@@ -0,0 +1,145 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Records, for the latest graph cached for a live run, the version at which each stage last
+ * changed. Lets {@code tree?since=<version>} answer with just the subtrees a client hasn't
+ * seen instead of the whole graph.
+ *
+ * <p>Immutable: each newly cached graph produces a new log via {@link #advance}, diffed
+ * against the previous one in O(stages).
+ */
+@Restricted(NoExternalUse.class)
+public final class StageChangeLog {
+
+    private final PipelineGraph graph;
+    private final long version;
+    // Version of the first graph this log diffed from nothing. Clients holding anything
+    // older than that get a full response.
+    private final long trackedSince;
+    // Last version at which the top-level stage list itself changed. Top-level additions
+    // have no parent to carry them in a delta, so they force a full response.
+    private final long rootChangedAt;
+    private final Map<String, Long> changedAt;
+    private final SerializedResponses responses = new SerializedResponses();
+
+    private StageChangeLog(
+            PipelineGraph graph, long version, long trackedSince, long rootChangedAt, Map<String, Long> changedAt) {
+        this.graph = graph;
+        this.version = version;
+        this.trackedSince = trackedSince;
+        this.rootChangedAt = rootChangedAt;
+        this.changedAt = changedAt;
+    }
+
+    /** Diffs {@code graph} (cached at {@code version}) against the previous log, if any. */
+    public static StageChangeLog advance(@CheckForNull StageChangeLog previous, PipelineGraph graph, long version) {
+        Map<String, PipelineStage> previousStages = new HashMap<>();
+        if (previous != null) {
+            index(previous.graph.stages, previousStages);
+        }
+        Map<String, Long> changedAt = new HashMap<>();
+        record(graph.stages, previous, previousStages, version, changedAt);
+
+        long rootChangedAt = version;
+        if (previous != null && sameIds(previous.graph.stages, graph.stages)) {
+            rootChangedAt = previous.rootChangedAt;
+        }
+        long trackedSince = previous == null ? version : previous.trackedSince;
+        return new StageChangeLog(graph, version, trackedSince, rootChangedAt, changedAt);
+    }
+
+    /**
+     * Returns what a client holding the graph at version {@code since} needs to catch up.
+     * Falls back to the full graph when {@code since} doesn't belong to this log's history.
+     */
+    public PipelineGraphUpdate since(long since) {
+        if (since < trackedSince || since > version || rootChangedAt > since) {
+            return PipelineGraphUpdate.full(graph, version);
+        }
+        List<PipelineStage> changed = new ArrayList<>();
+        collectChanged(graph.stages, since, changed);
+        return new PipelineGraphUpdate(changed, graph.complete, version, true);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /** Number of stages in this log's graph, nested ones included. */
+    public int stageCount() {
+        return changedAt.size();
+    }
+
+    /** {@link #since} serialized, shared by every client asking the same question. */
+    ResponseBytes responseSince(long since) {
+        return responses.get(since, () -> {
+            PipelineGraphUpdate update = since(since);
+            return ResponseBytes.of(update, update.complete);
+        });
+    }
+
+    /** The plain {@code tree} body for this log's graph, serialized once. */
+    ResponseBytes fullResponse() {
+        return responses.get(SerializedResponses.FULL, () -> ResponseBytes.of(graph, graph.complete));
+    }
+
+    PipelineGraph graph() {
+        return graph;
+    }
+
+    private void collectChanged(List<PipelineStage> stages, long since, List<PipelineStage> out) {
+        for (PipelineStage stage : stages) {
+            if (changedAt.getOrDefault(stage.id, version) > since) {
+                // The whole subtree is sent, so there's no need to look further down.
+                out.add(stage);
+            } else {
+                collectChanged(stage.children, since, out);
+            }
+        }
+    }
+
+    private static void record(
+            List<PipelineStage> stages,
+            @CheckForNull StageChangeLog previous,
+            Map<String, PipelineStage> previousStages,
+            long version,
+            Map<String, Long> changedAt) {
+        for (PipelineStage stage : stages) {
+            PipelineStage before = previousStages.get(stage.id);
+            Long last = previous == null ? null : previous.changedAt.get(stage.id);
+            if (before == null || last == null || !before.sameShallowAs(stage)) {
+                changedAt.put(stage.id, version);
+            } else {
+                changedAt.put(stage.id, last);
+            }
+            record(stage.children, previous, previousStages, version, changedAt);
+        }
+    }
+
+    private static void index(List<PipelineStage> stages, Map<String, PipelineStage> out) {
+        for (PipelineStage stage : stages) {
+            out.put(stage.id, stage);
+            index(stage.children, out);
+        }
+    }
+
+    private static boolean sameIds(List<PipelineStage> a, List<PipelineStage> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).id.equals(b.get(i).id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
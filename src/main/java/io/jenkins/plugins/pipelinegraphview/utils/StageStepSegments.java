@@ -0,0 +1,132 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Offset table of the per-stage step file a completed run's step list is also cached as, so
+ * one stage's steps can be served with a positional read instead of parsing the whole list.
+ *
+ * <p>The file holds, in order: one segment per stage — the gzipped {@code okJSON} body the
+ * {@code steps?nodeId=} endpoint returns for it — then the index ({@code runIsComplete}, the
+ * stage count, and each stage's id, offset and length), then a trailer: a stamp picked at
+ * random for each write and the index's own offset.
+ *
+ * <p>Instances are immutable, so a parsed index can be shared between readers without locking.
+ * Readers check the stamp of the file they opened against the cached index's and only parse
+ * the index again when the file was rewritten in between.
+ */
+final class StageStepSegments {
+
+    private static final int TRAILER_LENGTH = 2 * Long.BYTES;
+
+    private final long stamp;
+    private final boolean runIsComplete;
+    // Stage id => {offset, length} of its segment.
+    private final Map<String, long[]> segments;
+
+    private StageStepSegments(long stamp, boolean runIsComplete, Map<String, long[]> segments) {
+        this.stamp = stamp;
+        this.runIsComplete = runIsComplete;
+        this.segments = Map.copyOf(segments);
+    }
+
+    /** Writes {@code allSteps}, which must be sorted by stage, in the layout described above. */
+    static void write(@NonNull PipelineStepList allSteps, @NonNull OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexData = new DataOutputStream(index);
+        indexData.writeBoolean(allSteps.runIsComplete);
+        indexData.writeInt(allSteps.stageIds().size());
+        long offset = 0;
+        for (String stageId : allSteps.stageIds()) {
+            ByteArrayOutputStream segment = new ByteArrayOutputStream();
+            PipelineJsonWriter.write(
+                    new PipelineStepList(allSteps.stageSteps(stageId), allSteps.runIsComplete),
+                    new GZIPOutputStream(segment));
+            segment.writeTo(data);
+            indexData.writeUTF(stageId);
+            indexData.writeLong(offset);
+            indexData.writeInt(segment.size());
+            offset += segment.size();
+        }
+        index.writeTo(data);
+        data.writeLong(ThreadLocalRandom.current().nextLong());
+        data.writeLong(offset);
+        data.flush();
+    }
+
+    /**
+     * Reads the index of the file open on {@code channel}, or returns {@code cached} if that
+     * was read from the same version of the file.
+     */
+    static StageStepSegments read(@NonNull FileChannel channel, @CheckForNull StageStepSegments cached)
+            throws IOException {
+        long size = channel.size();
+        if (size < TRAILER_LENGTH) {
+            throw new EOFException("Stage step file too short: " + size + " bytes");
+        }
+        ByteBuffer trailer = readFully(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+        long stamp = trailer.getLong();
+        long indexOffset = trailer.getLong();
+        if (cached != null && cached.stamp == stamp) {
+            return cached;
+        }
+        long indexLength = size - TRAILER_LENGTH - indexOffset;
+        if (indexOffset < 0 || indexLength < 0 || indexLength > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt stage step file: index at " + indexOffset + " of " + size);
+        }
+        ByteBuffer index = readFully(channel, indexOffset, (int) indexLength);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array()));
+        boolean runIsComplete = in.readBoolean();
+        int count = in.readInt();
+        Map<String, long[]> segments = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String stageId = in.readUTF();
+            long offset = in.readLong();
+            int length = in.readInt();
+            if (offset < 0 || length < 0 || offset + length > indexOffset) {
+                throw new IOException("Corrupt stage step file: segment of " + stageId + " out of bounds");
+            }
+            segments.put(stageId, new long[] {offset, length});
+        }
+        return new StageStepSegments(stamp, runIsComplete, segments);
+    }
+
+    boolean runIsComplete() {
+        return runIsComplete;
+    }
+
+    /** The gzipped body for {@code stageId}, or {@code null} if the run has no steps in it. */
+    @CheckForNull
+    byte[] segment(@NonNull FileChannel channel, @NonNull String stageId) throws IOException {
+        long[] segment = segments.get(stageId);
+        if (segment == null) {
+            return null;
+        }
+        return readFully(channel, segment[0], (int) segment[1]).array();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Stage step file truncated at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,105 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Step-list counterpart of {@link StageChangeLog}: records the version at which each step of
+ * the latest cached {@link PipelineStepList} was added or last changed, so
+ * {@code allSteps?since=<version>} can send only those steps. Steps are almost always
+ * appended, so a delta is usually the handful of new steps plus the ones that just finished.
+ */
+@Restricted(NoExternalUse.class)
+public final class StepChangeLog {
+
+    private final PipelineStepList steps;
+    private final long version;
+    // See StageChangeLog#trackedSince.
+    private final long trackedSince;
+    // Last version at which a step disappeared. A delta can't express removals, so clients
+    // older than this get the full list.
+    private final long removedAt;
+    private final Map<String, Long> changedAt;
+    private final SerializedResponses responses = new SerializedResponses();
+
+    private StepChangeLog(
+            PipelineStepList steps, long version, long trackedSince, long removedAt, Map<String, Long> changedAt) {
+        this.steps = steps;
+        this.version = version;
+        this.trackedSince = trackedSince;
+        this.removedAt = removedAt;
+        this.changedAt = changedAt;
+    }
+
+    /** Diffs {@code steps} (cached at {@code version}) against the previous log, if any. */
+    public static StepChangeLog advance(@CheckForNull StepChangeLog previous, PipelineStepList steps, long version) {
+        Map<String, PipelineStep> previousSteps = new HashMap<>();
+        if (previous != null) {
+            for (PipelineStep step : previous.steps.steps) {
+                previousSteps.put(step.id, step);
+            }
+        }
+        Map<String, Long> changedAt = new HashMap<>();
+        int carried = 0;
+        for (PipelineStep step : steps.steps) {
+            PipelineStep before = previousSteps.get(step.id);
+            Long last = previous == null ? null : previous.changedAt.get(step.id);
+            if (before == null || last == null || !before.sameAs(step)) {
+                changedAt.put(step.id, version);
+            } else {
+                changedAt.put(step.id, last);
+            }
+            if (before != null) {
+                carried++;
+            }
+        }
+        if (previous == null) {
+            return new StepChangeLog(steps, version, version, version, changedAt);
+        }
+        long removedAt = carried < previousSteps.size() ? version : previous.removedAt;
+        return new StepChangeLog(steps, version, previous.trackedSince, removedAt, changedAt);
+    }
+
+    /**
+     * Returns what a client holding the step list at version {@code since} needs to catch
+     * up. Falls back to the full list when {@code since} doesn't belong to this log's history.
+     */
+    public PipelineStepListUpdate since(long since) {
+        if (since < trackedSince || since > version || removedAt > since) {
+            return PipelineStepListUpdate.full(steps, version);
+        }
+        List<PipelineStep> changed = new ArrayList<>();
+        for (PipelineStep step : steps.steps) {
+            if (changedAt.getOrDefault(step.id, version) > since) {
+                changed.add(step);
+            }
+        }
+        return new PipelineStepListUpdate(changed, steps.runIsComplete, version, true);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /** See {@link StageChangeLog#responseSince}. */
+    ResponseBytes responseSince(long since) {
+        return responses.get(since, () -> {
+            PipelineStepListUpdate update = since(since);
+            return ResponseBytes.of(update, update.runIsComplete);
+        });
+    }
+
+    /** See {@link StageChangeLog#fullResponse}. */
+    ResponseBytes fullResponse() {
+        return responses.get(SerializedResponses.FULL, () -> ResponseBytes.of(steps, steps.runIsComplete));
+    }
+
+    PipelineStepList steps() {
+        return steps;
+    }
+}
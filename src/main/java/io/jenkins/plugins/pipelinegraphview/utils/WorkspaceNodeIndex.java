@@ -0,0 +1,116 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+
+/**
+ * Agent each stage ran on, resolved from a single pass over a run's workspace nodes. Looking
+ * the agent up stage by stage walked every workspace candidate — on the scanner path every
+ * node of the run — once per stage; here each workspace node is read once and each stage
+ * answers from a handful of map lookups plus its own enclosing chain.
+ *
+ * <p>A workspace node {@code n} belongs to stage {@code W} when {@code n} is {@code W}, sits
+ * directly in {@code W}, or encloses {@code W}. Parallel branches only match the workspace
+ * nodes three levels down (branch → parallel block → sub-stage → workspace), unless {@code n}
+ * isn't nested that deep. When several workspace nodes match, the first in candidate order
+ * wins, as it did with the per-stage scan.
+ */
+final class WorkspaceNodeIndex {
+
+    // First matching workspace node, by position in the candidate order.
+    private record Hit(int order, String agent, boolean shallow) {}
+
+    @CheckForNull
+    private final NodeAncestry ancestry;
+
+    // Keyed by workspace node id.
+    private final Map<String, Hit> workspaces = new HashMap<>();
+    // Keyed by a workspace node's own id and by its direct enclosing id.
+    private final Map<String, Hit> own = new HashMap<>();
+    // As above, for workspace nodes with fewer than three enclosing blocks.
+    private final Map<String, Hit> ownShallow = new HashMap<>();
+    // Keyed by a workspace node's third enclosing block, for parallel branches.
+    private final Map<String, Hit> thirdLevel = new HashMap<>();
+
+    /**
+     * @param candidates nodes that may carry a {@link WorkspaceAction}, newest first
+     * @param ancestry pre-computed ancestry, preferred over FlowNode storage for the ids it holds
+     */
+    WorkspaceNodeIndex(@NonNull Iterable<FlowNode> candidates, @CheckForNull NodeAncestry ancestry) {
+        this.ancestry = ancestry;
+        int order = 0;
+        for (FlowNode n : candidates) {
+            WorkspaceAction ws = n.getAction(WorkspaceAction.class);
+            if (ws == null) {
+                continue;
+            }
+            String id = n.getId();
+            String parent;
+            String third;
+            // FlowNode#getAllEnclosingIds takes the storage read lock, which contends with the
+            // running build's writes, so prefer the live ancestry.
+            if (ancestry != null && ancestry.contains(id)) {
+                parent = ancestry.directEnclosingId(id);
+                third = ancestry.enclosingIdAt(id, 2);
+            } else {
+                List<String> enclosingIds = n.getAllEnclosingIds();
+                parent = enclosingIds.isEmpty() ? null : enclosingIds.get(0);
+                third = enclosingIds.size() > 2 ? enclosingIds.get(2) : null;
+            }
+            String agent = ws.getNode();
+            Hit hit = new Hit(order++, agent.isEmpty() ? "built-in" : agent, third == null);
+
+            workspaces.putIfAbsent(id, hit);
+            own.putIfAbsent(id, hit);
+            if (parent != null) {
+                own.putIfAbsent(parent, hit);
+            }
+            if (third == null) {
+                ownShallow.putIfAbsent(id, hit);
+                if (parent != null) {
+                    ownShallow.putIfAbsent(parent, hit);
+                }
+            } else {
+                thirdLevel.putIfAbsent(third, hit);
+            }
+        }
+    }
+
+    /** Name of the agent {@code wrapper} ran on, or {@code null} if none of its nodes did. */
+    @CheckForNull
+    String agentFor(@NonNull FlowNodeWrapper wrapper) {
+        if (workspaces.isEmpty()) {
+            return null;
+        }
+        String id = wrapper.getId();
+        boolean parallel = wrapper.getType() == FlowNodeWrapper.NodeType.PARALLEL;
+        Hit best = parallel ? first(thirdLevel.get(id), ownShallow.get(id)) : own.get(id);
+        List<String> enclosingIds = ancestry != null && ancestry.contains(id)
+                ? ancestry.enclosingIds(id)
+                : wrapper.getNode().getAllEnclosingIds();
+        for (String enclosingId : enclosingIds) {
+            Hit hit = workspaces.get(enclosingId);
+            if (hit != null && (!parallel || hit.shallow())) {
+                best = first(best, hit);
+            }
+        }
+        return best == null ? null : best.agent();
+    }
+
+    @CheckForNull
+    private static Hit first(@CheckForNull Hit a, @CheckForNull Hit b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return b.order() < a.order() ? b : a;
+    }
+}
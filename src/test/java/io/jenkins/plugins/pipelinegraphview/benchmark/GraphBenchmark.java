@@ -0,0 +1,88 @@
+package io.jenkins.plugins.pipelinegraphview.benchmark;
+
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraph;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphApi;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphViewCache;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineJsonWriter;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepApi;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepList;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Graph build, step build, JSON serialization and disk-cache read/write for completed runs of
+ * each {@link PipelineShape}. The run is executed once per trial; benchmarks then work from
+ * its pre-collected nodes, so storage reads aren't part of the scanner numbers.
+ */
+@JmhBenchmark
+public class GraphBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CompletedRun extends JmhBenchmarkState {
+
+        @Param
+        public PipelineShape shape;
+
+        WorkflowRun run;
+        List<FlowNode> nodes;
+        PipelineGraph graph;
+        PipelineStepList steps;
+
+        @Override
+        public void setup() throws Exception {
+            WorkflowJob job = getJenkins().createProject(WorkflowJob.class, shape.name().toLowerCase());
+            job.setDefinition(new CpsFlowDefinition(shape.script(), true));
+            run = job.scheduleBuild2(0).get();
+            nodes = new DepthFirstScanner().allNodes(run.getExecution());
+            graph = new PipelineGraphApi(run).createTreeFrom(new PipelineNodeGraphAdapter(run, nodes), null, null);
+            steps = new PipelineStepApi(run).getAllStepsFrom(new PipelineNodeGraphAdapter(run, nodes), true);
+            PipelineGraphViewCache.get().seed(run, graph, steps);
+        }
+    }
+
+    @Benchmark
+    public PipelineGraph buildTree(CompletedRun state) {
+        return new PipelineGraphApi(state.run)
+                .createTreeFrom(new PipelineNodeGraphAdapter(state.run, state.nodes), null, null);
+    }
+
+    @Benchmark
+    public PipelineStepList buildSteps(CompletedRun state) {
+        return new PipelineStepApi(state.run)
+                .getAllStepsFrom(new PipelineNodeGraphAdapter(state.run, state.nodes), true);
+    }
+
+    @Benchmark
+    public void serializeTree(CompletedRun state) {
+        PipelineJsonWriter.write(state.graph, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void serializeSteps(CompletedRun state) {
+        PipelineJsonWriter.write(state.steps, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void writeDiskCache(CompletedRun state) {
+        PipelineGraphViewCache.get().seed(state.run, state.graph, state.steps);
+    }
+
+    @Benchmark
+    public boolean readDiskCache(CompletedRun state) throws IOException {
+        return PipelineGraphViewCache.get().tryServeTree(state.run, OutputStream.nullOutputStream())
+                & PipelineGraphViewCache.get().tryServeAllSteps(state.run, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,92 @@
+package io.jenkins.plugins.pipelinegraphview.benchmark;
+
+/**
+ * Pipeline shapes the benchmarks run against, each the kind of graph that has caused
+ * performance trouble in production. Scripts are generated so the sizes live in one place.
+ */
+public enum PipelineShape {
+    /** Stages nested 100 deep, one step at the bottom. */
+    DEEP_NESTING(
+            """
+            def nest(int n) {
+              if (n == 0) {
+                echo 'leaf'
+                return
+              }
+              stage("level-${n}") {
+                nest(n - 1)
+              }
+            }
+            nest(100)
+            """),
+    /** One stage fanning out into 1,000 parallel branches. */
+    WIDE_PARALLEL(
+            """
+            def branches = [:]
+            for (int i = 0; i < 1000; i++) {
+              def n = i
+              branches["branch-${n}"] = { echo "branch ${n}" }
+            }
+            stage('fan-out') {
+              parallel branches
+            }
+            """),
+    /** 100,000 steps one after another in a single stage. */
+    SEQUENTIAL_STEPS(
+            """
+            stage('steps') {
+              for (int i = 0; i < 100000; i++) {
+                echo "step ${i}"
+              }
+            }
+            """),
+    /** A declarative 3x3x3 matrix with two stages per cell. */
+    MATRIX(
+            """
+            pipeline {
+              agent none
+              stages {
+                stage('matrix') {
+                  matrix {
+                    axes {
+                      axis {
+                        name 'OS'
+                        values 'linux', 'windows', 'mac'
+                      }
+                      axis {
+                        name 'JDK'
+                        values '17', '21', '25'
+                      }
+                      axis {
+                        name 'DB'
+                        values 'postgres', 'mysql', 'h2'
+                      }
+                    }
+                    stages {
+                      stage('build') {
+                        steps {
+                          echo "build ${OS} ${JDK} ${DB}"
+                        }
+                      }
+                      stage('test') {
+                        steps {
+                          echo "test ${OS} ${JDK} ${DB}"
+                        }
+                      }
+                    }
+                  }
+                }
+              }
+            }
+            """);
+
+    private final String script;
+
+    PipelineShape(String script) {
+        this.script = script;
+    }
+
+    public String script() {
+        return script;
+    }
+}
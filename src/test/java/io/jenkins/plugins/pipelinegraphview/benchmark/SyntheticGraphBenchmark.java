@@ -0,0 +1,112 @@
+package io.jenkins.plugins.pipelinegraphview.benchmark;
+
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraph;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphApi;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepApi;
+import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepList;
+import io.jenkins.plugins.pipelinegraphview.utils.SyntheticPipeline;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scanner, tree and step build over {@link SyntheticPipeline} graphs, which reach sizes that
+ * would take far too long to execute through {@link PipelineShape} scripts.
+ */
+@JmhBenchmark
+public class SyntheticGraphBenchmark {
+
+    private static final String FORK_JOIN_PROPERTY = PipelineNodeTreeScanner.class.getName() + ".forkJoin";
+    private static final String FORK_JOIN_MIN_NODES_PROPERTY =
+            PipelineNodeTreeScanner.class.getName() + ".forkJoinMinNodes";
+
+    @State(Scope.Benchmark)
+    public static class Graph extends JmhBenchmarkState {
+
+        /** Top-level stages, each three levels deep with eight-way parallels and 25 steps a stage. */
+        @Param({"10", "100"})
+        public int stages;
+
+        /** Whether parallel branches are wrapped concurrently, whatever the graph's size. */
+        @Param({"false", "true"})
+        public boolean forkJoin;
+
+        SyntheticPipeline pipeline;
+
+        @Override
+        public void setup() throws Exception {
+            System.setProperty(FORK_JOIN_PROPERTY, String.valueOf(forkJoin));
+            System.setProperty(FORK_JOIN_MIN_NODES_PROPERTY, "0");
+            pipeline = SyntheticPipeline.builder()
+                    .stages(stages)
+                    .depth(3)
+                    .parallel(8)
+                    .stepsPerStage(25)
+                    .warningEvery(101)
+                    .errorEvery(10007)
+                    .skipEvery(13)
+                    .inputEvery(997)
+                    .build(SyntheticPipeline.hostRun(getJenkins(), "synthetic-" + stages + "-" + forkJoin));
+        }
+
+        @Override
+        public void tearDown() {
+            System.clearProperty(FORK_JOIN_PROPERTY);
+            System.clearProperty(FORK_JOIN_MIN_NODES_PROPERTY);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class WideGraph extends JmhBenchmarkState {
+
+        /**
+         * Stages, half of them nested one level inside the other half, with a step each, so tree
+         * assembly rather than step handling dominates. Assembly time should grow linearly with it.
+         */
+        @Param({"1000", "20000"})
+        public int stages;
+
+        SyntheticPipeline pipeline;
+        PipelineNodeGraphAdapter adapter;
+
+        @Override
+        public void setup() throws Exception {
+            pipeline = SyntheticPipeline.builder()
+                    .stages(stages / 2)
+                    .depth(2)
+                    .stepsPerStage(1)
+                    .build(SyntheticPipeline.hostRun(getJenkins(), "wide-" + stages));
+            // Scan up front so only the tree assembly is measured.
+            adapter = pipeline.adapter();
+            adapter.getPipelineNodes();
+        }
+    }
+
+    @Benchmark
+    public PipelineNodeTreeScanner scan(Graph state) {
+        return state.pipeline.scanner();
+    }
+
+    @Benchmark
+    public PipelineGraph buildTree(Graph state) {
+        return new PipelineGraphApi(state.pipeline.run())
+                .createTreeFrom(state.pipeline.adapter(), null, state.pipeline.ancestry());
+    }
+
+    @Benchmark
+    public PipelineGraph assembleWideTree(WideGraph state) {
+        return new PipelineGraphApi(state.pipeline.run())
+                .createTreeFrom(state.adapter, List.of(), state.pipeline.ancestry());
+    }
+
+    @Benchmark
+    public PipelineStepList buildSteps(Graph state) {
+        return new PipelineStepApi(state.pipeline.run()).getAllStepsFrom(state.pipeline.adapter(), true);
+    }
+}
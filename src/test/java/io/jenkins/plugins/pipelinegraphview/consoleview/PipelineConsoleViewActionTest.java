@@ -1,22 +1,39 @@
 package io.jenkins.plugins.pipelinegraphview.consoleview;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 
 import hudson.model.Result;
 import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
 import io.jenkins.plugins.pipelinegraphview.utils.FlowNodeWrapper;
 import io.jenkins.plugins.pipelinegraphview.utils.TestUtils;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import net.sf.json.JSONObject;
 import org.htmlunit.WebRequest;
 import org.htmlunit.WebResponse;
 import org.htmlunit.html.DomElement;
 import org.htmlunit.html.HtmlPage;
 import org.htmlunit.util.UrlUtils;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -115,4 +132,151 @@ class PipelineConsoleViewActionTest {
             assertThat(rsp.getStatusCode(), equalTo(200));
         }
     }
+
+    private static JSONObject getTreeData(JenkinsRule j, WorkflowRun run, String query) throws Exception {
+        try (var c = j.createWebClient()) {
+            WebRequest req = new WebRequest(UrlUtils.toUrlSafe(j.getURL() + run.getUrl() + "stages/tree?" + query));
+            return JSONObject.fromObject(c.loadWebResponse(req).getContentAsString())
+                    .getJSONObject("data");
+        }
+    }
+
+    @Test
+    void treeLongPollWaitsForTreeChange(JenkinsRule j) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "long-poll");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('a') { semaphore 'first' }\n" + "stage('b') { semaphore 'second' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            long version = getTreeData(j, run, "since=0").getLong("version");
+
+            JSONObject timedOut = getTreeData(j, run, "waitForVersion=" + version + "&timeout=200");
+            assertThat("nothing changed before the timeout", timedOut.getJSONArray("stages"), is(empty()));
+
+            CompletableFuture<JSONObject> parked = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return getTreeData(j, run, "waitForVersion=" + version + "&timeout=30000");
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+
+            JSONObject update = parked.get(30, TimeUnit.SECONDS);
+            assertThat(update.getLong("version"), is(greaterThan(version)));
+            assertThat(update.getJSONArray("stages"), is(not(empty())));
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            try {
+                SemaphoreStep.success("second/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            j.waitForCompletion(run);
+        }
+    }
+
+    @Test
+    void eventStreamPushesUpdatesAndCompletion(JenkinsRule j) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "event-stream");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('a') { semaphore 'first' }\n" + "stage('b') { semaphore 'second' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            URL events = URI.create(j.getURL() + run.getUrl() + "stages/events").toURL();
+            HttpURLConnection connection = (HttpURLConnection) events.openConnection();
+            connection.setReadTimeout(30_000);
+            assertThat(connection.getResponseCode(), is(200));
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                assertThat(in.readLine(), is("retry: 5000"));
+                assertThat(nextEvent(in), is("update"));
+
+                SemaphoreStep.success("first/1", null);
+                SemaphoreStep.waitForStart("second/1", run);
+                assertThat("pushed after the new stage", nextEvent(in), is("update"));
+
+                SemaphoreStep.success("second/1", null);
+                j.waitForCompletion(run);
+                String event = nextEvent(in);
+                while ("update".equals(event)) {
+                    event = nextEvent(in);
+                }
+                assertThat(event, is("complete"));
+                // The server ends the stream after the final event.
+                while (in.readLine() != null) {
+                    // Drain.
+                }
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            try {
+                SemaphoreStep.success("second/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            j.waitForCompletion(run);
+        }
+    }
+
+    // Name of the next SSE event, skipping heartbeats and data lines.
+    private static String nextEvent(BufferedReader in) throws IOException {
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            if (line.startsWith("event: ")) {
+                return line.substring("event: ".length());
+            }
+        }
+        return null;
+    }
+
+    private static WebResponse get(JenkinsRule j, WorkflowRun run, String path, String ifNoneMatch) throws Exception {
+        try (var c = j.createWebClient()) {
+            WebRequest req = new WebRequest(UrlUtils.toUrlSafe(j.getURL() + run.getUrl() + path));
+            if (ifNoneMatch != null) {
+                req.setAdditionalHeader("If-None-Match", ifNoneMatch);
+            }
+            return c.loadWebResponse(req);
+        }
+    }
+
+    @Test
+    void treeAndStepsAnswerNotModifiedForMatchingEtag(JenkinsRule j) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "etag");
+        job.setDefinition(new CpsFlowDefinition("stage('a') { semaphore 'wait' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("wait/1", run);
+            for (String path : List.of("stages/tree", "stages/allSteps")) {
+                WebResponse first = get(j, run, path, null);
+                String etag = first.getResponseHeaderValue("ETag");
+                assertThat(path + " has an ETag while running", etag, is(notNullValue()));
+                assertThat(first.getResponseHeaderValue("Cache-Control"), is("private, no-cache"));
+                assertThat(get(j, run, path, etag).getStatusCode(), is(304));
+            }
+        } finally {
+            SemaphoreStep.success("wait/1", null);
+            j.waitForCompletion(run);
+        }
+
+        for (String path : List.of("stages/tree", "stages/allSteps")) {
+            WebResponse first = get(j, run, path, null);
+            String etag = first.getResponseHeaderValue("ETag");
+            assertThat(path + " has an ETag once cached on disk", etag, is(notNullValue()));
+            assertThat(get(j, run, path, etag).getStatusCode(), is(304));
+            assertThat(get(j, run, path, "\"stale\"").getStatusCode(), is(200));
+        }
+    }
 }
@@ -2,8 +2,10 @@ package io.jenkins.plugins.pipelinegraphview.livestate;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 
+import io.jenkins.plugins.pipelinegraphview.analysis.GenericStatus;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
 import io.jenkins.plugins.pipelinegraphview.utils.BlueRun;
 import io.jenkins.plugins.pipelinegraphview.utils.NodeRunStatus;
@@ -64,4 +66,23 @@ class BlockResolutionCacheTest {
                 }),
                 sameInstance(timingB));
     }
+
+    @Test
+    void branchEntriesAreKeptApartFromBlockEntries() {
+        BlockResolutionCache cache = new BlockResolutionCache();
+        TimingInfo block = new TimingInfo(100, 0, 1L);
+        TimingInfo branch = new TimingInfo(80, 0, 1L);
+
+        assertThat(cache.getOrComputeTiming("4", "9", () -> block), sameInstance(block));
+        assertThat(cache.getOrComputeBranchTiming("4", "9", () -> branch), sameInstance(branch));
+        assertThat(
+                cache.getOrComputeBranchTiming("4", "9", () -> {
+                    throw new AssertionError("should be cached");
+                }),
+                sameInstance(branch));
+
+        assertThat(cache.getOrComputeBranchStatus("4", "9", () -> null), nullValue());
+        assertThat(cache.getOrComputeBranchStatus("4", "9", () -> GenericStatus.SUCCESS), is(GenericStatus.SUCCESS));
+        assertThat(cache.size(), is(3));
+    }
 }
@@ -0,0 +1,205 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class LiveGraphCheckpointTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        this.j = j;
+    }
+
+    @Test
+    void restoredStateMatchesCapturedStateAndCatchUpAddsNewerNodes() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "checkpoint");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('one') { hideFromView { echo 'hidden' } }\n"
+                        + "stage('two') { node { semaphore 'first' } }\n"
+                        + "stage('three') { parallel a: { semaphore 'second' }, b: { echo 'b' } }\n",
+                true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            FlowExecution execution = run.getExecution();
+            LiveGraphState live = LiveGraphRegistry.get().getOrCreate(execution);
+            LiveGraphCheckpoint.write(live);
+            Path file = LiveGraphCheckpoint.fileFor(run);
+            assertThat("checkpoint written", Files.exists(file), is(true));
+
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+
+            // What a resume would do: restore the older checkpoint, then walk only what's newer.
+            LiveGraphState restored = new LiveGraphState(file);
+            assertThat(LiveGraphCheckpoint.restore(execution, restored), is(true));
+            LiveGraphPopulator.catchUp(execution, restored);
+            restored.markReady();
+
+            LiveGraphSnapshot expected = live.snapshot(execution);
+            LiveGraphSnapshot actual = restored.snapshot(execution);
+            assertThat(actual, is(notNullValue()));
+            assertThat(ids(actual.nodes()), equalTo(ids(expected.nodes())));
+            assertThat(ids(actual.workspaceNodes()), equalTo(ids(expected.workspaceNodes())));
+            assertThat(actual.hideFromViewBlockStartIds(), equalTo(expected.hideFromViewBlockStartIds()));
+            for (FlowNode node : expected.nodes()) {
+                assertThat(
+                        actual.ancestry().enclosingIds(node.getId()),
+                        equalTo(expected.ancestry().enclosingIds(node.getId())));
+            }
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            try {
+                SemaphoreStep.success("second/1", null);
+            } catch (Exception ignored) {
+                // Ditto.
+            }
+            j.waitForCompletion(run);
+        }
+        assertThat("checkpoint deleted on completion", Files.exists(LiveGraphCheckpoint.fileFor(run)), is(false));
+    }
+
+    @Test
+    void catchUpWalksPastHeadsCapturedBeforeIt() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "early-head");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('one') { semaphore 'first' }\n"
+                        + "stage('two') { echo 'between'; semaphore 'second' }\n",
+                true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            FlowExecution execution = run.getExecution();
+            LiveGraphState live = LiveGraphRegistry.get().getOrCreate(execution);
+            LiveGraphCheckpoint.write(live);
+            Path file = LiveGraphCheckpoint.fileFor(run);
+
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+            Set<String> expected = new TreeSet<>(ids(live.snapshot(execution).nodes()));
+
+            // onNewHead may capture a head before onResumed restores and catches up.
+            LiveGraphState restored = new LiveGraphState(file);
+            for (FlowNode head : execution.getCurrentHeads()) {
+                restored.addNode(head);
+            }
+            assertThat(LiveGraphCheckpoint.restore(execution, restored), is(true));
+            LiveGraphPopulator.catchUp(execution, restored);
+            restored.markReady();
+            assertThat(new TreeSet<>(ids(restored.snapshot(execution).nodes())), equalTo(expected));
+
+            // Likewise without a checkpoint: the head must not hide everything before it.
+            LiveGraphState fresh = new LiveGraphState(null);
+            for (FlowNode head : execution.getCurrentHeads()) {
+                fresh.addNode(head);
+            }
+            LiveGraphPopulator.catchUp(execution, fresh);
+            fresh.markReady();
+            assertThat(new TreeSet<>(ids(fresh.snapshot(execution).nodes())), equalTo(expected));
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            SemaphoreStep.success("second/1", null);
+            j.waitForCompletion(run);
+        }
+    }
+
+    @Test
+    void laterCheckpointsAppendOnlyTheNewNodes() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "append");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('one') { semaphore 'first' }\n" + "stage('two') { echo 'between'; semaphore 'second' }\n",
+                true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            FlowExecution execution = run.getExecution();
+            LiveGraphState live = LiveGraphRegistry.get().getOrCreate(execution);
+            LiveGraphCheckpoint.write(live);
+            Path file = LiveGraphCheckpoint.fileFor(run);
+            long firstSize = Files.size(file);
+            int firstCount = live.snapshot(execution).nodes().size();
+
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+            LiveGraphCheckpoint.write(live);
+            int added = live.snapshot(execution).nodes().size() - firstCount;
+            assertThat(added > 0, is(true));
+            assertThat(Files.size(file), equalTo(firstSize + added * (3L * Integer.BYTES + 1)));
+
+            // A torn append is ignored on restore, and the next checkpoint starts the file over.
+            Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+            LiveGraphState restored = new LiveGraphState(file);
+            assertThat(LiveGraphCheckpoint.restore(execution, restored), is(true));
+            LiveGraphPopulator.catchUp(execution, restored);
+            restored.markReady();
+            assertThat(ids(restored.snapshot(execution).nodes()), equalTo(ids(live.snapshot(execution).nodes())));
+            LiveGraphCheckpoint.write(restored);
+            assertThat(Files.size(file), equalTo(firstSize + added * (3L * Integer.BYTES + 1)));
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            SemaphoreStep.success("second/1", null);
+            j.waitForCompletion(run);
+        }
+    }
+
+    @Test
+    void checkpointDeletedOnEvictionAndOnCompletionWithoutState() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "evicted");
+        job.setDefinition(new CpsFlowDefinition("stage('one') { semaphore 'wait' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("wait/1", run);
+        LiveGraphCheckpoint.write(LiveGraphRegistry.get().getOrCreate(run.getExecution()));
+        Path file = LiveGraphCheckpoint.fileFor(run);
+        assertThat("checkpoint written", Files.exists(file), is(true));
+
+        LiveGraphRegistry.get().evict(run);
+        await().atMost(Duration.ofSeconds(30)).until(() -> !Files.exists(file));
+
+        // A file the registry no longer has a state for still goes once the run completes.
+        Files.write(file, new byte[] {0});
+        SemaphoreStep.success("wait/1", null);
+        j.waitForCompletion(run);
+        assertThat("checkpoint deleted on completion", Files.exists(file), is(false));
+    }
+
+    private static List<String> ids(List<FlowNode> nodes) {
+        return nodes.stream().map(FlowNode::getId).collect(Collectors.toList());
+    }
+}
@@ -17,9 +17,18 @@ import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphApi;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineGraphViewCache;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepApi;
 import io.jenkins.plugins.pipelinegraphview.utils.PipelineStepList;
+import io.jenkins.plugins.pipelinegraphview.utils.ResponseBytes;
 import io.jenkins.plugins.pipelinegraphview.utils.TestUtils;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 import org.jenkinsci.plugins.workflow.actions.LabelAction;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
@@ -129,6 +138,139 @@ class LiveGraphLifecycleTest {
         }
     }
 
+    @Test
+    void repeatCallsShareSerializedResponsesPerVersion() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "bytes-cache");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('one') { semaphore 'first' }\n" + "stage('two') { semaphore 'second' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            PipelineGraphApi graphApi = new PipelineGraphApi(run);
+            PipelineStepApi stepApi = new PipelineStepApi(run);
+
+            ResponseBytes tree = graphApi.createTreeResponse();
+            assertThat("tree bytes are shared", graphApi.createTreeResponse(), is(sameInstance(tree)));
+            ResponseBytes delta = graphApi.createTreeUpdateResponse(3);
+            assertThat("delta bytes are shared", graphApi.createTreeUpdateResponse(3), is(sameInstance(delta)));
+            ResponseBytes steps = stepApi.getAllStepsResponse();
+            assertThat("step bytes are shared", stepApi.getAllStepsResponse(), is(sameInstance(steps)));
+
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+
+            assertThat("new version serializes again", graphApi.createTreeResponse(), is(not(sameInstance(tree))));
+            assertThat("new version serializes again", stepApi.getAllStepsResponse(), is(not(sameInstance(steps))));
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            SemaphoreStep.success("second/1", null);
+            j.waitForCompletion(run);
+        }
+    }
+
+    @Test
+    void stepOnlyNodesKeepCachedTree() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "step-only");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('a') {\n"
+                        + "  semaphore 'first'\n"
+                        + "  echo 'between gates'\n"
+                        + "  semaphore 'second'\n"
+                        + "}\n",
+                true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            PipelineGraphApi api = new PipelineGraphApi(run);
+            PipelineGraph beforeSteps = api.createTree();
+            Long treeVersionBefore = LiveGraphRegistry.get().currentTreeVersion(run);
+            long versionBefore = LiveGraphRegistry.get().currentVersion(run);
+
+            // Only step atoms are appended inside the still-running stage.
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+
+            assertThat(
+                    "step atoms bumped the node version",
+                    LiveGraphRegistry.get().currentVersion(run),
+                    is(greaterThan(versionBefore)));
+            assertThat(
+                    "step atoms left the tree version alone",
+                    LiveGraphRegistry.get().currentTreeVersion(run),
+                    is(treeVersionBefore));
+            assertThat("cached tree is reused", api.createTree(), is(sameInstance(beforeSteps)));
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            try {
+                SemaphoreStep.success("second/1", null);
+            } catch (Exception ignored) {
+                // Never reached.
+            }
+            j.waitForCompletion(run);
+        }
+    }
+
+    @Test
+    void subscriberIsNotifiedOfNewNodesAndClosedOnCompletion() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "subscriber");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('a') { semaphore 'first' }\n" + "stage('b') { semaphore 'second' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        BlockingQueue<Long> updates = new LinkedBlockingQueue<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        LiveGraphSubscriber subscriber = new LiveGraphSubscriber() {
+            @Override
+            public void updated(long version) {
+                updates.add(version);
+            }
+
+            @Override
+            public void closed() {
+                closed.countDown();
+            }
+        };
+        try {
+            SemaphoreStep.waitForStart("first/1", run);
+            long versionBefore = LiveGraphRegistry.get().currentVersion(run);
+            assertThat("subscription accepted", LiveGraphRegistry.get().subscribe(run, subscriber), is(true));
+
+            SemaphoreStep.success("first/1", null);
+            SemaphoreStep.waitForStart("second/1", run);
+
+            Long update = updates.poll(10, TimeUnit.SECONDS);
+            assertThat("an update was pushed", update, is(notNullValue()));
+            assertThat("update carries a newer version", update, is(greaterThan(versionBefore)));
+
+            SemaphoreStep.success("second/1", null);
+            j.waitForCompletion(run);
+            assertThat("subscriber closed on completion", closed.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(
+                    "finished runs refuse subscriptions",
+                    LiveGraphRegistry.get().subscribe(run, subscriber),
+                    is(false));
+        } finally {
+            try {
+                SemaphoreStep.success("first/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            try {
+                SemaphoreStep.success("second/1", null);
+            } catch (Exception ignored) {
+                // Already released.
+            }
+            j.waitForCompletion(run);
+        }
+    }
+
     @Test
     void wrapWithBlockEndInActiveSetDoesNotPopulateCache() throws Exception {
         // Regression for #1252. When a block's BlockEndNode is itself a current head (the
@@ -166,8 +308,7 @@ class LiveGraphLifecycleTest {
             // BlockEndNode of the just-closed stage. (A BlockEndNode's enclosing chain
             // does NOT include its own BlockStartNode, so a snapshot taken while the
             // BlockEndNode is the head genuinely produces this set.)
-            new PipelineNodeGraphAdapter(
-                    run, snapshot.nodes(), snapshot.enclosingIdsByNodeId(), Set.of(stage1End.getId()));
+            new PipelineNodeGraphAdapter(run, snapshot.nodes(), snapshot.ancestry(), Set.of(stage1End.getId()));
 
             // After the wrap pass, the cache must have NO entry for stage 1's
             // (start,end) pair. We detect this by passing a sentinel supplier to
@@ -191,13 +332,47 @@ class LiveGraphLifecycleTest {
         // still 'running'. A poisoned cache entry from any earlier wrap would surface here.
         File treeFile = new File(run.getRootDir(), PipelineGraphViewCache.TREE_FILE_NAME);
         assertThat(treeFile.exists(), is(true));
-        String content = java.nio.file.Files.readString(treeFile.toPath());
+        String content;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(treeFile))) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
         assertThat(
                 "completed run never persists a stage as 'running'",
                 content.contains("\"state\":\"running\""),
                 is(false));
     }
 
+    @Test
+    void estimatedSizeCoversNodesAndCachedOutput() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "estimated-size");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('one') { echo 'hello' }\n" + "stage('gate') { semaphore 'wait' }\n", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        try {
+            SemaphoreStep.waitForStart("wait/1", run);
+
+            Long nodesOnly = LiveGraphRegistry.get().estimatedBytes(run);
+            assertThat("running build is tracked", nodesOnly, is(notNullValue()));
+            assertThat(nodesOnly, is(greaterThan(0L)));
+
+            new PipelineGraphApi(run).createTree();
+            new PipelineStepApi(run).getAllSteps();
+
+            assertThat(
+                    "cached graph and steps are accounted for",
+                    LiveGraphRegistry.get().estimatedBytes(run),
+                    is(greaterThan(nodesOnly)));
+            assertThat(
+                    LiveGraphRegistry.get().estimatedBytesByRun().get(run.getExternalizableId()),
+                    is(LiveGraphRegistry.get().estimatedBytes(run)));
+        } finally {
+            SemaphoreStep.success("wait/1", null);
+            j.waitForCompletion(run);
+        }
+        assertThat(
+                "completed run is no longer tracked", LiveGraphRegistry.get().estimatedBytes(run), is(nullValue()));
+    }
+
     @Test
     void newNodeInvalidatesOutputCache() throws Exception {
         WorkflowJob job = j.createProject(WorkflowJob.class, "cache-miss");
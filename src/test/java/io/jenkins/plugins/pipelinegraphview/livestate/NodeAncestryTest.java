@@ -0,0 +1,46 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NodeAncestryTest {
+
+    @Test
+    void answersChainQueriesFromParentPointers() {
+        NodeAncestry ancestry = new NodeAncestry();
+        ancestry.record("2", List.of());
+        ancestry.record("3", List.of("2"));
+        ancestry.record("7", List.of("3", "2"));
+        ancestry.record("150", List.of("7", "3", "2"));
+
+        assertThat(ancestry.enclosingIds("150"), contains("7", "3", "2"));
+        assertThat(ancestry.enclosingIds("2"), is(empty()));
+        assertThat(ancestry.directEnclosingId("150"), is("7"));
+        assertThat(ancestry.enclosingIdAt("150", 2), is("2"));
+        assertThat(ancestry.enclosingIdAt("150", 3), nullValue());
+        assertThat(ancestry.isAncestor("3", "150"), is(true));
+        assertThat(ancestry.isAncestor("150", "3"), is(false));
+        assertThat(ancestry.isAncestor("3", "3"), is(false));
+        assertThat(ancestry.anyEnclosing("150", "3"::equals), is(true));
+        assertThat(ancestry.anyEnclosing("3", "7"::equals), is(false));
+    }
+
+    @Test
+    void fillsInAncestorsRecordedOutOfOrder() {
+        NodeAncestry ancestry = new NodeAncestry();
+        ancestry.record("9", List.of("5", "4"));
+
+        assertThat(ancestry.contains("5"), is(true));
+        assertThat(ancestry.enclosingIds("5"), contains("4"));
+        assertThat(ancestry.depthOf(4), is(0));
+        assertThat(ancestry.isAncestor("4", "9"), is(true));
+        assertThat(ancestry.contains("6"), is(false));
+        assertThat(ancestry.parentOf(6), is(NodeAncestry.NONE));
+    }
+}
@@ -0,0 +1,52 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.jenkins.plugins.pipelinegraphview.utils.SyntheticPipeline;
+import java.util.ArrayList;
+import java.util.List;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class NodeLogTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        this.j = j;
+    }
+
+    @Test
+    void viewsKeepTheirLengthAcrossChunkBoundaries() throws Exception {
+        List<FlowNode> nodes = SyntheticPipeline.builder()
+                .stages(300)
+                .stepsPerStage(4)
+                .build(SyntheticPipeline.hostRun(j.jenkins, "log"))
+                .nodes();
+        assertThat(nodes.size(), greaterThan(2048));
+
+        NodeLog log = new NodeLog();
+        List<List<FlowNode>> views = new ArrayList<>();
+        for (FlowNode node : nodes) {
+            views.add(log.view());
+            log.append(node);
+        }
+        views.add(log.view());
+
+        assertThat(log.size(), is(nodes.size()));
+        for (int n = 0; n < views.size(); n += 97) {
+            assertThat(views.get(n), equalTo(nodes.subList(0, n)));
+        }
+        assertThat(views.get(views.size() - 1), equalTo(nodes));
+        assertThrows(IndexOutOfBoundsException.class, () -> views.get(1024).get(1024));
+    }
+}
@@ -0,0 +1,86 @@
+package io.jenkins.plugins.pipelinegraphview.livestate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+import hudson.model.Result;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class WarningActionIndexTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        this.j = j;
+    }
+
+    @Test
+    void everyBlockMatchesAScanBetweenItsEnds() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "warnings");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('outer') {\n"
+                        + "  stage('inner') { unstable 'inner' }\n"
+                        + "  stage('clean') { echo 'clean' }\n"
+                        + "}\n"
+                        + "stage('branches') {\n"
+                        + "  parallel a: {\n"
+                        + "    catchError(buildResult: 'SUCCESS', stageResult: 'FAILURE') { error 'a' }\n"
+                        + "  }, b: { echo 'b' }\n"
+                        + "}\n"
+                        + "stage('last') { echo 'last' }\n",
+                true));
+        WorkflowRun run = j.assertBuildStatus(Result.UNSTABLE, job.scheduleBuild2(0));
+        FlowExecution execution = run.getExecution();
+
+        WarningActionIndex index = WarningActionIndex.walk(execution.getCurrentHeads());
+
+        int blocks = 0;
+        int warned = 0;
+        for (FlowNode node : scan(execution.getCurrentHeads(), List.of())) {
+            if (!(node instanceof BlockEndNode<?> end)) {
+                continue;
+            }
+            FlowNode start = end.getStartNode();
+            Optional<WarningAction> indexed = index.worstBetween(start, end);
+            assertThat("block " + start.getId() + "-" + end.getId(), indexed, notNullValue());
+            WarningAction scanned = scan(List.of(end), List.of(start)).stream()
+                    .map(n -> n.getPersistentAction(WarningAction.class))
+                    .filter(Objects::nonNull)
+                    .max((a, b) -> Integer.compare(a.getResult().ordinal, b.getResult().ordinal))
+                    .orElse(null);
+            assertThat(
+                    "block " + start.getId() + "-" + end.getId(),
+                    indexed.map(WarningAction::getResult).orElse(null),
+                    equalTo(scanned == null ? null : scanned.getResult()));
+            blocks++;
+            if (scanned != null) {
+                warned++;
+            }
+        }
+        assertThat(blocks, greaterThan(10));
+        assertThat(warned, greaterThan(2));
+    }
+
+    private static List<FlowNode> scan(List<FlowNode> heads, List<FlowNode> stopAt) {
+        DepthFirstScanner scanner = new DepthFirstScanner();
+        return scanner.filteredNodes(heads, stopAt, node -> true);
+    }
+}
@@ -0,0 +1,43 @@
+package io.jenkins.plugins.pipelinegraphview.treescanner;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NodeIdMapTest {
+
+    @Test
+    void iteratesInIdOrderRegardlessOfInsertionOrder() {
+        NodeIdMap<String> map = new NodeIdMap<>();
+        map.put(40, "forty");
+        map.put(3, "three");
+        map.put(17, "seventeen");
+
+        List<Integer> descending = new ArrayList<>();
+        map.forEachDescending((value, id) -> descending.add(id));
+
+        assertThat(map.values(), contains("three", "seventeen", "forty"));
+        assertThat(descending, contains(40, 17, 3));
+        assertThat(map.last(), is("forty"));
+        assertThat(map.toMap().keySet(), contains("3", "17", "40"));
+    }
+
+    @Test
+    void replaceAndRemoveKeepSize() {
+        NodeIdMap<String> map = new NodeIdMap<>();
+        map.put(2, "a");
+        assertThat(map.put(2, "b"), is("a"));
+        assertThat(map.size(), is(1));
+
+        assertThat(map.remove(2), is("b"));
+        assertThat(map.remove(2), nullValue());
+        assertThat(map.isEmpty(), is(true));
+        assertThat(map.get(NodeIdMap.NO_ID), nullValue());
+        assertThat(map.last(), nullValue());
+    }
+}
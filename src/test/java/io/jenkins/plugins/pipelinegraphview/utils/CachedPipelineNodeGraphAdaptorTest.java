@@ -0,0 +1,163 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class CachedPipelineNodeGraphAdaptorTest {
+
+    private JenkinsRule j;
+    private WorkflowJob job;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) throws Exception {
+        this.j = j;
+        job = j.createProject(WorkflowJob.class, "adaptor");
+        job.setDefinition(new CpsFlowDefinition("stage('one') { echo 'hi' }", true));
+    }
+
+    @Test
+    void lateJoinersShareThePendingBuildUntilTheLastWaiterLeaves() throws Exception {
+        WorkflowRun run = j.buildAndAssertSuccess(job);
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CachedPipelineNodeGraphAdaptor adaptor = new CachedPipelineNodeGraphAdaptor(2, 4, 0, r -> {
+            builds.incrementAndGet();
+            awaitRelease(release);
+            return new PipelineNodeGraphAdapter(r);
+        });
+
+        CompletableFuture<PipelineNodeGraphAdapter> first = CompletableFuture.supplyAsync(() -> adaptor.getFor(run));
+        await().atMost(Duration.ofSeconds(10)).until(() -> builds.get() == 1);
+        CompletableFuture<PipelineNodeGraphAdapter> second = CompletableFuture.supplyAsync(() -> adaptor.getFor(run));
+        await().atMost(Duration.ofSeconds(10)).until(() -> adaptor.getWaiters(run) == 2);
+
+        release.countDown();
+        PipelineNodeGraphAdapter firstAdapter = first.get(10, TimeUnit.SECONDS);
+        assertThat(second.get(10, TimeUnit.SECONDS), sameInstance(firstAdapter));
+        assertThat("one build for both callers", builds.get(), equalTo(1));
+        assertThat("entry dropped once both have left", adaptor.getWaiters(run), equalTo(0));
+
+        // Anyone arriving after the last waiter left starts a fresh build.
+        assertThat(adaptor.getFor(run), not(sameInstance(firstAdapter)));
+        assertThat(builds.get(), equalTo(2));
+    }
+
+    @Test
+    void fullQueueBuildsOnTheCallingThread() throws Exception {
+        WorkflowRun running = j.buildAndAssertSuccess(job);
+        WorkflowRun queued = j.buildAndAssertSuccess(job);
+        WorkflowRun rejected = j.buildAndAssertSuccess(job);
+        Map<WorkflowRun, Thread> builtOn = new ConcurrentHashMap<>();
+        CountDownLatch release = new CountDownLatch(1);
+        // One thread and a one-slot queue: the first build occupies the thread, the second the queue.
+        CachedPipelineNodeGraphAdaptor adaptor = new CachedPipelineNodeGraphAdaptor(1, 1, 0, r -> {
+            builtOn.put(r, Thread.currentThread());
+            if (r != rejected) {
+                awaitRelease(release);
+            }
+            return new PipelineNodeGraphAdapter(r);
+        });
+
+        CompletableFuture<PipelineNodeGraphAdapter> first =
+                CompletableFuture.supplyAsync(() -> adaptor.getFor(running));
+        await().atMost(Duration.ofSeconds(10)).until(() -> builtOn.containsKey(running));
+        CompletableFuture<PipelineNodeGraphAdapter> second =
+                CompletableFuture.supplyAsync(() -> adaptor.getFor(queued));
+        await().atMost(Duration.ofSeconds(10)).until(() -> adaptor.getQueueDepth() == 1);
+        assertThat(adaptor.getActiveCount(), equalTo(1));
+
+        assertThat(adaptor.getFor(rejected), is(instanceOf(PipelineNodeGraphAdapter.class)));
+        assertThat(builtOn.get(rejected), sameInstance(Thread.currentThread()));
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertThat(builtOn.get(queued), sameInstance(builtOn.get(running)));
+    }
+
+    @Test
+    void failedBuildIsReportedAndNotKept() throws Exception {
+        WorkflowRun run = j.buildAndAssertSuccess(job);
+        AtomicInteger builds = new AtomicInteger();
+        CachedPipelineNodeGraphAdaptor adaptor = new CachedPipelineNodeGraphAdaptor(1, 1, 0, r -> {
+            if (builds.incrementAndGet() == 1) {
+                throw new IllegalStateException("broken graph");
+            }
+            return new PipelineNodeGraphAdapter(r);
+        });
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> adaptor.getFor(run));
+        assertThat(failure.getCause().getCause(), is(instanceOf(IllegalStateException.class)));
+        assertThat(adaptor.getWaiters(run), equalTo(0));
+
+        // The failure isn't cached: the next caller builds again.
+        assertThat(adaptor.getFor(run), is(instanceOf(PipelineNodeGraphAdapter.class)));
+        assertThat(builds.get(), equalTo(2));
+    }
+
+    @Test
+    void inProgressRunReusesTheAdapterUntilItsHeadsChange() throws Exception {
+        WorkflowJob waiting = j.createProject(WorkflowJob.class, "waiting");
+        waiting.setDefinition(new CpsFlowDefinition("semaphore 'a'\nsemaphore 'b'", true));
+        WorkflowRun run = waiting.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("a/1", run);
+        AtomicInteger builds = new AtomicInteger();
+        CachedPipelineNodeGraphAdaptor adaptor = new CachedPipelineNodeGraphAdaptor(1, 1, 60_000, r -> {
+            builds.incrementAndGet();
+            return new PipelineNodeGraphAdapter(r);
+        });
+
+        PipelineNodeGraphAdapter first = adaptor.getFor(run);
+        assertThat("unchanged heads reuse the adapter", adaptor.getFor(run), sameInstance(first));
+        assertThat(builds.get(), equalTo(1));
+
+        // A new head changes the key, so the next poll builds again.
+        SemaphoreStep.success("a/1", null);
+        SemaphoreStep.waitForStart("b/1", run);
+        PipelineNodeGraphAdapter second = adaptor.getFor(run);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(builds.get(), equalTo(2));
+
+        // Completed runs are left to the graph cache and never reused from here.
+        SemaphoreStep.success("b/1", null);
+        j.waitForCompletion(run);
+        assertThat(adaptor.getFor(run), not(sameInstance(second)));
+        adaptor.getFor(run);
+        assertThat(builds.get(), equalTo(4));
+    }
+
+    private static void awaitRelease(CountDownLatch latch) {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Test never released the build");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -505,6 +505,39 @@ class PipelineGraphApiTest {
         assertThat(stages.get(0).agent, equalTo(agent.getNodeName()));
     }
 
+    @Test
+    void getAgentForScriptedStagesInsideAndAroundNodeBlocks() throws Exception {
+        var testingLabel = new LabelAtom("external");
+        DumbSlave agent = j.createSlave(testingLabel);
+        j.waitOnline(agent);
+
+        WorkflowJob job = j.createProject(WorkflowJob.class, "scriptedStagesAndNodes");
+        job.setDefinition(new CpsFlowDefinition("""
+                node('built-in') {
+                  stage('outer') {
+                    stage('inner') { echo 'inner' }
+                  }
+                }
+                stage('around') {
+                  node('external') { echo 'external' }
+                }
+                stage('none') { echo 'none' }
+                """, true));
+        WorkflowRun run = j.buildAndAssertSuccess(job);
+
+        List<PipelineStage> stages = new PipelineGraphApi(run).createTree().stages;
+
+        assertThat(stages.size(), equalTo(3));
+        assertThat(stages.get(0).name, equalTo("outer"));
+        assertThat(stages.get(0).agent, equalTo("built-in"));
+        assertThat(stages.get(0).children.get(0).name, equalTo("inner"));
+        assertThat(stages.get(0).children.get(0).agent, equalTo("built-in"));
+        assertThat(stages.get(1).name, equalTo("around"));
+        assertThat(stages.get(1).agent, equalTo(agent.getNodeName()));
+        assertThat(stages.get(2).name, equalTo("none"));
+        assertThat(stages.get(2).agent, equalTo(null));
+    }
+
     @Test
     void getAgentForParallelPipelineWithExternalAgent() throws Exception {
         var testingLabel = new LabelAtom("external");
@@ -8,15 +8,24 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep.*;
 
 import hudson.model.Result;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.htmlunit.WebRequest;
+import org.htmlunit.WebResponse;
+import org.htmlunit.util.UrlUtils;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -149,6 +158,135 @@ class PipelineGraphViewCacheTest {
         assertThat("legacy XStream cache file is removed", legacy.exists(), is(false));
     }
 
+    @Test
+    void cacheFileIsGzippedEnvelope() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "gzipped", "smokeTest.jenkinsfile", Result.FAILURE);
+        Files.deleteIfExists(new File(run.getRootDir(), PipelineGraphViewCache.TREE_FILE_NAME).toPath());
+        cache.invalidateMemory();
+        cache.getGraph(run, () -> new PipelineGraphApi(run).computeTree());
+
+        File treeFile = new File(run.getRootDir(), PipelineGraphViewCache.TREE_FILE_NAME);
+        String stored;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(treeFile))) {
+            stored = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertThat("stored body is the full okJSON envelope", stored, startsWith("{\"status\":\"ok\",\"data\":{"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(cache.tryServeTree(run, out), is(true));
+        assertThat("served inflated when streamed to a plain output", out.toString(StandardCharsets.UTF_8), is(stored));
+    }
+
+    @Test
+    void gzipServedAsIsWhenAccepted() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "gzip-http", "smokeTest.jenkinsfile", Result.FAILURE);
+        cache.getGraph(run, () -> new PipelineGraphApi(run).computeTree());
+
+        try (var c = j.createWebClient()) {
+            WebRequest req = new WebRequest(UrlUtils.toUrlSafe(j.getURL() + run.getUrl() + "stages/tree"));
+            req.setAdditionalHeader("Accept-Encoding", "gzip");
+            WebResponse rsp = c.loadWebResponse(req);
+            assertThat(rsp.getResponseHeaderValue("Content-Encoding"), is("gzip"));
+            assertThat(rsp.getContentAsString(), containsString("\"stages\""));
+
+            req.setAdditionalHeader("Accept-Encoding", "identity");
+            rsp = c.loadWebResponse(req);
+            assertThat(rsp.getResponseHeaderValue("Content-Encoding"), is(nullValue()));
+            assertThat(rsp.getContentAsString(), containsString("\"stages\""));
+        }
+    }
+
+    @Test
+    void legacyPlainFileIsStillReadAndServed() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "legacy-json", "smokeTest.jenkinsfile", Result.FAILURE);
+        PipelineGraph graph = cache.getGraph(run, () -> new PipelineGraphApi(run).computeTree());
+        ByteArrayOutputStream current = new ByteArrayOutputStream();
+        cache.tryServeTree(run, current);
+        String body = current.toString(StandardCharsets.UTF_8);
+        // Rewrite the entry the way older releases stored it: plain JSON, no envelope.
+        String data = body.substring("{\"status\":\"ok\",\"data\":".length(), body.length() - 1);
+        Files.writeString(new File(run.getRootDir(), PipelineGraphViewCache.LEGACY_TREE_FILE_NAME).toPath(), data);
+        Files.delete(new File(run.getRootDir(), PipelineGraphViewCache.TREE_FILE_NAME).toPath());
+        cache.invalidateMemory();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(cache.tryServeTree(run, out), is(true));
+        assertThat(out.toString(StandardCharsets.UTF_8), is(body));
+
+        AtomicInteger computes = new AtomicInteger();
+        PipelineGraph again = cache.getGraph(run, () -> {
+            computes.incrementAndGet();
+            return new PipelineGraphApi(run).computeTree();
+        });
+        assertThat("legacy file read without recomputing", computes.get(), equalTo(0));
+        assertThat(again.stages.size(), is(graph.stages.size()));
+    }
+
+    @Test
+    void stageStepsServedFromTheirSegment() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "stage-steps", "smokeTest.jenkinsfile", Result.FAILURE);
+        File stageStepsFile = new File(run.getRootDir(), PipelineGraphViewCache.STAGE_STEPS_FILE_NAME);
+        // Pretend the step list was cached by a release without the per-stage file.
+        Files.deleteIfExists(stageStepsFile.toPath());
+        cache.invalidateMemory();
+        PipelineStepList allSteps = cache.getAllSteps(run, () -> new PipelineStepApi(run).computeAllSteps());
+        assertThat("per-stage file written alongside the step list", stageStepsFile.exists(), is(true));
+        assertThat(allSteps.stageIds().isEmpty(), is(false));
+
+        PipelineStepApi api = new PipelineStepApi(run);
+        try (var c = j.createWebClient()) {
+            for (String stageId : allSteps.stageIds()) {
+                String expected = new String(PipelineJsonWriter.toBytes(api.getSteps(stageId)), StandardCharsets.UTF_8);
+                WebRequest req = new WebRequest(
+                        UrlUtils.toUrlSafe(j.getURL() + run.getUrl() + "stages/steps?nodeId=" + stageId));
+                req.setAdditionalHeader("Accept-Encoding", "gzip");
+                WebResponse rsp = c.loadWebResponse(req);
+                assertThat(rsp.getResponseHeaderValue("Content-Encoding"), is("gzip"));
+                assertThat("stage " + stageId, rsp.getContentAsString(), is(expected));
+
+                req.setAdditionalHeader("Accept-Encoding", "identity");
+                rsp = c.loadWebResponse(req);
+                assertThat(rsp.getResponseHeaderValue("Content-Encoding"), is(nullValue()));
+                assertThat("stage " + stageId, rsp.getContentAsString(), is(expected));
+            }
+
+            WebRequest req =
+                    new WebRequest(UrlUtils.toUrlSafe(j.getURL() + run.getUrl() + "stages/steps?nodeId=no-such-stage"));
+            assertThat(
+                    c.loadWebResponse(req).getContentAsString(),
+                    is("{\"status\":\"ok\",\"data\":{\"steps\":[],\"runIsComplete\":true}}"));
+        }
+    }
+
+    @Test
+    void rewrittenStageStepFileIsReadAgain() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "stage-steps-rewrite", "smokeTest.jenkinsfile", Result.FAILURE);
+        PipelineStepList allSteps = new PipelineStepApi(run).getAllSteps();
+        List<String> stageIds = new ArrayList<>(allSteps.stageIds());
+        assertThat(stageIds.size(), greaterThan(1));
+        String kept = stageIds.get(0);
+        String dropped = stageIds.get(1);
+        String empty = "{\"status\":\"ok\",\"data\":{\"steps\":[],\"runIsComplete\":true}}";
+
+        try (var c = j.createWebClient()) {
+            assertThat(stageSteps(c, run, dropped), is(not(empty)));
+            // Rewrites the file behind the index the first request cached.
+            PipelineGraphViewCache.get()
+                    .seed(
+                            run,
+                            new PipelineGraphApi(run).computeTree(),
+                            new PipelineStepList(new ArrayList<>(allSteps.stageSteps(kept)), true));
+            assertThat(stageSteps(c, run, dropped), is(empty));
+            assertThat(stageSteps(c, run, kept), is(not(empty)));
+        }
+    }
+
+    private String stageSteps(JenkinsRule.WebClient c, WorkflowRun run, String stageId) throws Exception {
+        return c.loadWebResponse(new WebRequest(
+                        UrlUtils.toUrlSafe(j.getURL() + run.getUrl() + "stages/steps?nodeId=" + stageId)))
+                .getContentAsString();
+    }
+
     private WorkflowRun startLongRunningJob() throws Exception {
         String jenkinsfile = "node { echo 'hi'; semaphore 'wait' }";
         var job = j.createProject(WorkflowJob.class, "running");
@@ -1,9 +1,12 @@
 package io.jenkins.plugins.pipelinegraphview.utils;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
 import java.io.ByteArrayOutputStream;
 import java.util.LinkedHashMap;
@@ -12,6 +15,8 @@ import java.util.Map;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
 
 /**
  * Pins the {@code /allSteps} wire format. The frontend depends on this shape; if you're
@@ -139,6 +144,117 @@ class PipelineJsonWriterTest {
         assertThat(s.getString("agent"), is("built-in"));
     }
 
+    /**
+     * The disk cache reads graphs and step lists back through the DTOs' {@code @JsonCreator}s.
+     * Whatever is written must come back unchanged, with optional fields both set and unset.
+     */
+    @Test
+    void cachedPayloadsReadBackUnchanged() throws Exception {
+        // Configured like PipelineJsonWriter's and PipelineGraphViewCache's mapper.
+        ObjectMapper mapper = JsonMapper.builder()
+                .changeDefaultPropertyInclusion(inc -> inc.withValueInclusion(JsonInclude.Include.NON_NULL))
+                .changeDefaultVisibility(v -> v.withFieldVisibility(JsonAutoDetect.Visibility.ANY))
+                .build();
+        TimingInfo timing = new TimingInfo(500, 20, 1_700_000_002_000L);
+        PipelineStage leaf = new PipelineStage(
+                "9",
+                "Leaf",
+                List.of(),
+                PipelineState.QUEUED,
+                "STAGE",
+                "",
+                null,
+                null,
+                false,
+                false,
+                false,
+                timing,
+                null,
+                "job/example/1/",
+                "Waiting for next available executor");
+        PipelineStage sibling = new PipelineStage(
+                "12",
+                "Next",
+                List.of(),
+                PipelineState.NOT_BUILT,
+                "STAGE",
+                "",
+                "Sequence",
+                null,
+                true,
+                false,
+                true,
+                timing,
+                null,
+                "job/example/1/",
+                null);
+        PipelineStage parent = new PipelineStage(
+                "7",
+                "Parent",
+                List.of(leaf),
+                PipelineState.SUCCESS,
+                "PARALLEL",
+                "",
+                null,
+                sibling,
+                false,
+                true,
+                false,
+                timing,
+                "built-in",
+                "job/example/1/",
+                null);
+        PipelineGraph graph = new PipelineGraph(List.of(parent), false);
+
+        Map<String, Object> hiddenFlag = new LinkedHashMap<>();
+        hiddenFlag.put("hidden", Boolean.TRUE);
+        PipelineStepList steps = new PipelineStepList(
+                List.of(
+                        new PipelineStep(
+                                "10",
+                                "Deploy?",
+                                PipelineState.PAUSED,
+                                "STEP",
+                                "",
+                                "9",
+                                new PipelineInputStep("Deploy to prod?", null, "input-1", "Proceed", false),
+                                null,
+                                timing,
+                                hiddenFlag),
+                        new PipelineStep(
+                                "11",
+                                "build 'example'",
+                                PipelineState.FAILURE,
+                                "STEP",
+                                "Build a job",
+                                "9",
+                                null,
+                                new PipelineBuildStep("job/example/1/", "job/example/1/stages", "example #1"),
+                                timing,
+                                Map.of()),
+                        new PipelineStep(
+                                "13",
+                                "echo hello",
+                                PipelineState.RUNNING,
+                                "STEP",
+                                "Print Message",
+                                null,
+                                null,
+                                null,
+                                new TimingInfo(0, 0, 1_700_000_003_000L),
+                                Map.of())),
+                true);
+
+        for (Object data : List.of(graph, new PipelineGraph(List.of(), true), steps, new PipelineStepList(false))) {
+            byte[] written = PipelineJsonWriter.toBytes(data);
+            Object readBack = mapper.readerFor(data.getClass()).at("/data").readValue(written);
+            assertThat(
+                    data.getClass().getSimpleName(),
+                    mapper.readTree(PipelineJsonWriter.toBytes(readBack)),
+                    equalTo(mapper.readTree(written)));
+        }
+    }
+
     /**
      * Returns the {@code data} payload from the Stapler envelope that {@link PipelineJsonWriter}
      * emits. Tests elsewhere assert the envelope ({@code status}/{@code data}) shape.
@@ -18,6 +18,8 @@ import io.jenkins.plugins.pipelinegraphview.treescanner.NodeRelationshipFinder;
 import io.jenkins.plugins.pipelinegraphview.treescanner.ParallelBlockRelationship;
 import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
 import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +59,57 @@ class PipelineStepApiTest {
         l.record(ParallelBlockRelationship.class, Level.FINEST);
     }
 
+    @Test
+    void stepPagesWindowOneStageOrTheWholeRun() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "stepPages", "unstableSmokes.jenkinsfile", Result.FAILURE);
+        PipelineStepApi api = new PipelineStepApi(run);
+        String unstableOneId =
+                TestUtils.getNodesByDisplayName(run, "unstable-one").get(0).getId();
+        int allSteps = api.getAllSteps().steps.size();
+
+        PipelineStepPage page = api.getStepPage(unstableOneId, 1, 1);
+        assertThat(page.steps, hasSize(1));
+        assertThat(page.steps.get(0).name, is("oops-one"));
+        assertThat(page.offset, is(1));
+        assertThat(page.total, is(3));
+        assertThat(page.runIsComplete, is(true));
+
+        page = api.getStepPage(unstableOneId, 2, Integer.MAX_VALUE);
+        assertThat(page.steps, hasSize(1));
+        assertThat(page.steps.get(0).name, is("bar"));
+
+        page = api.getStepPage(null, 0, 2);
+        assertThat(page.steps, hasSize(2));
+        assertThat(page.total, is(allSteps));
+        assertThat(page.stage, is(nullValue()));
+
+        page = api.getStepPage(null, allSteps + 5, 10);
+        assertThat(page.steps, is(empty()));
+        assertThat(page.offset, is(allSteps));
+
+        assertThat(api.getStepPage("no-such-stage", 0, 10).total, is(0));
+    }
+
+    @Test
+    void stagePagesOfCompletedRunsComeFromTheStageSegment() throws Exception {
+        WorkflowRun run = TestUtils.createAndRunJob(j, "stagePages", "unstableSmokes.jenkinsfile", Result.FAILURE);
+        String unstableOneId =
+                TestUtils.getNodesByDisplayName(run, "unstable-one").get(0).getId();
+        // Writes the disk cache, should completion not have seeded it.
+        new PipelineStepApi(run).getAllSteps();
+        // Without the full list on disk or in memory, loading it would recompute and rewrite it.
+        Path allStepsFile = run.getRootDir().toPath().resolve(PipelineGraphViewCache.ALL_STEPS_FILE_NAME);
+        Files.delete(allStepsFile);
+        PipelineGraphViewCache.get().invalidateMemory();
+
+        PipelineStepPage page = new PipelineStepApi(run).getStepPage(unstableOneId, 1, 1);
+        assertThat(page.steps, hasSize(1));
+        assertThat(page.steps.get(0).name, is("oops-one"));
+        assertThat(page.total, is(3));
+        assertThat(page.runIsComplete, is(true));
+        assertThat("full step list not loaded", Files.exists(allStepsFile), is(false));
+    }
+
     @Test
     void unstableSmokes() throws Exception {
         WorkflowRun run = TestUtils.createAndRunJob(j, "unstableSmokes", "unstableSmokes.jenkinsfile", Result.FAILURE);
@@ -0,0 +1,100 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class StageChangeLogTest {
+
+    @Test
+    void unchangedGraphProducesEmptyDelta() {
+        StageChangeLog log = StageChangeLog.advance(null, graph(stage("2", PipelineState.RUNNING)), 10);
+        log = StageChangeLog.advance(log, graph(stage("2", PipelineState.RUNNING)), 12);
+
+        PipelineGraphUpdate update = log.since(10);
+
+        assertThat(update.delta, is(true));
+        assertThat(update.version, is(12L));
+        assertThat(update.stages, is(empty()));
+    }
+
+    @Test
+    void onlyChangedSubtreesAreSent() {
+        StageChangeLog log = StageChangeLog.advance(
+                null,
+                graph(
+                        stage("2", PipelineState.SUCCESS),
+                        stage("5", PipelineState.RUNNING, stage("7", PipelineState.RUNNING))),
+                10);
+        log = StageChangeLog.advance(
+                log,
+                graph(
+                        stage("2", PipelineState.SUCCESS),
+                        stage("5", PipelineState.RUNNING, stage("7", PipelineState.FAILURE))),
+                14);
+
+        PipelineGraphUpdate update = log.since(10);
+
+        assertThat(update.delta, is(true));
+        assertThat(update.stages.stream().map(s -> s.id).toList(), contains("7"));
+    }
+
+    @Test
+    void newChildResendsItsParent() {
+        StageChangeLog log = StageChangeLog.advance(
+                null, graph(stage("5", PipelineState.RUNNING, stage("7", PipelineState.RUNNING))), 10);
+        log = StageChangeLog.advance(
+                log,
+                graph(stage(
+                        "5",
+                        PipelineState.RUNNING,
+                        stage("7", PipelineState.RUNNING),
+                        stage("9", PipelineState.RUNNING))),
+                14);
+
+        PipelineGraphUpdate update = log.since(10);
+
+        assertThat(update.delta, is(true));
+        assertThat(update.stages.stream().map(s -> s.id).toList(), contains("5"));
+    }
+
+    @Test
+    void newTopLevelStageOrUnknownVersionSendsEverything() {
+        StageChangeLog log = StageChangeLog.advance(null, graph(stage("2", PipelineState.RUNNING)), 10);
+        log = StageChangeLog.advance(
+                log, graph(stage("2", PipelineState.SUCCESS), stage("8", PipelineState.RUNNING)), 14);
+
+        assertThat(log.since(10).delta, is(false));
+        assertThat(log.since(10).stages.size(), is(2));
+        assertThat("older than the tracked history", log.since(3).delta, is(false));
+        assertThat("from a different state", log.since(99).delta, is(false));
+    }
+
+    private static PipelineGraph graph(PipelineStage... stages) {
+        return new PipelineGraph(List.of(stages), false);
+    }
+
+    private static PipelineStage stage(String id, PipelineState state, PipelineStage... children) {
+        return new PipelineStage(
+                id,
+                "stage " + id,
+                List.of(children),
+                state,
+                "STAGE",
+                "stage " + id,
+                null,
+                null,
+                false,
+                false,
+                false,
+                new TimingInfo(0, 0, 1000),
+                "built-in",
+                "job/test/1/",
+                null);
+    }
+}
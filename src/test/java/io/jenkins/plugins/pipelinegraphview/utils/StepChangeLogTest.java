@@ -0,0 +1,56 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import io.jenkins.plugins.pipelinegraphview.analysis.TimingInfo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StepChangeLogTest {
+
+    @Test
+    void deltaHoldsNewAndChangedSteps() {
+        StepChangeLog log = StepChangeLog.advance(
+                null, steps(step("5", PipelineState.SUCCESS), step("6", PipelineState.RUNNING)), 10);
+        log = StepChangeLog.advance(
+                log,
+                steps(
+                        step("5", PipelineState.SUCCESS),
+                        step("6", PipelineState.SUCCESS),
+                        step("8", PipelineState.RUNNING)),
+                12);
+
+        PipelineStepListUpdate update = log.since(10);
+
+        assertThat(update.delta, is(true));
+        assertThat(update.version, is(12L));
+        assertThat(update.steps.stream().map(s -> s.id).toList(), contains("6", "8"));
+        assertThat("already up to date", log.since(12).steps.size(), is(0));
+    }
+
+    @Test
+    void removedStepForcesFullList() {
+        StepChangeLog log = StepChangeLog.advance(
+                null, steps(step("5", PipelineState.SUCCESS), step("6", PipelineState.RUNNING)), 10);
+        log = StepChangeLog.advance(log, steps(step("5", PipelineState.SUCCESS)), 12);
+
+        PipelineStepListUpdate update = log.since(10);
+
+        assertThat(update.delta, is(false));
+        assertThat(update.steps.stream().map(s -> s.id).toList(), contains("5"));
+        assertThat("clients past the removal still get deltas", log.since(12).delta, is(true));
+    }
+
+    private static PipelineStepList steps(PipelineStep... steps) {
+        return new PipelineStepList(new ArrayList<>(List.of(steps)), false);
+    }
+
+    private static PipelineStep step(String id, PipelineState state) {
+        return new PipelineStep(
+                id, "sh", state, "STEP", "echo " + id, "3", null, null, new TimingInfo(0, 0, 1000), Map.of());
+    }
+}
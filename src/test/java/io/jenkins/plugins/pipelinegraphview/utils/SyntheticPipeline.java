@@ -0,0 +1,359 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import hudson.AbortException;
+import hudson.model.Result;
+import io.jenkins.plugins.pipelinegraphview.livestate.NodeAncestry;
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeGraphAdapter;
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.pipeline.StageStatus;
+import org.jenkinsci.plugins.workflow.actions.BodyInvocationAction;
+import org.jenkinsci.plugins.workflow.actions.ErrorAction;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.TagsAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowExecution;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepStartNode;
+import org.jenkinsci.plugins.workflow.flow.FlowDurabilityHint;
+import org.jenkinsci.plugins.workflow.graph.FlowEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.FlowStartNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.job.properties.DurabilityHintJobProperty;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+
+/**
+ * Builds large FlowNode graphs in memory, without running them through the CPS VM.
+ *
+ * <p>Nodes are attached to the execution of a tiny, already completed host run, so the
+ * scanner sees real {@link StepStartNode}/{@link StepAtomNode}/{@link StepEndNode} instances
+ * with the same actions the CPS VM would have added. They are never written to the host's
+ * node storage, so callers must use the collected {@link #nodes()} together with
+ * {@link #ancestry()} rather than walking the execution:
+ *
+ * <pre>{@code
+ * SyntheticPipeline pipeline = SyntheticPipeline.builder()
+ *         .stages(10)
+ *         .depth(3)
+ *         .parallel(4)
+ *         .stepsPerStage(50)
+ *         .warningEvery(100)
+ *         .build(SyntheticPipeline.hostRun(j.jenkins, "large"));
+ * PipelineGraph graph = new PipelineGraphApi(pipeline.run())
+ *         .createTreeFrom(pipeline.adapter(), null, pipeline.ancestry());
+ * }</pre>
+ *
+ * <p>Shape: {@code stages} sequential top-level stages. Each contains {@code stepsPerStage}
+ * steps followed by either a {@code parallel} block of that many branches or, when
+ * {@code parallel} is zero, a single child stage; each branch/child repeats the pattern until
+ * {@code depth} levels of stages have been emitted. The {@code *Every} knobs decorate every
+ * Nth step (or stage, for skips) across the whole pipeline; zero disables them.
+ */
+public final class SyntheticPipeline {
+
+    private final WorkflowRun run;
+    private final List<FlowNode> nodes;
+    private final NodeAncestry ancestry;
+    private final int stageCount;
+    private final int stepCount;
+
+    private SyntheticPipeline(
+            WorkflowRun run, List<FlowNode> nodes, NodeAncestry ancestry, int stageCount, int stepCount) {
+        this.run = run;
+        this.nodes = nodes;
+        this.ancestry = ancestry;
+        this.stageCount = stageCount;
+        this.stepCount = stepCount;
+    }
+
+    /**
+     * Runs a one-step pipeline whose execution will host the synthetic nodes. Uses the
+     * performance-optimized durability hint so action writes stay in memory.
+     */
+    public static WorkflowRun hostRun(Jenkins jenkins, String jobName) throws Exception {
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class, jobName);
+        job.addProperty(new DurabilityHintJobProperty(FlowDurabilityHint.PERFORMANCE_OPTIMIZED));
+        job.setDefinition(new CpsFlowDefinition("echo 'host'", true));
+        return job.scheduleBuild2(0).get();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public WorkflowRun run() {
+        return run;
+    }
+
+    /** Every generated node, in creation (ascending id) order. */
+    public List<FlowNode> nodes() {
+        return nodes;
+    }
+
+    /** Enclosing block starts of every generated node. */
+    public NodeAncestry ancestry() {
+        return ancestry;
+    }
+
+    /** Number of stages generated, skipped ones included. Parallel branches are not counted. */
+    public int stageCount() {
+        return stageCount;
+    }
+
+    /** Number of step nodes generated. */
+    public int stepCount() {
+        return stepCount;
+    }
+
+    public PipelineNodeTreeScanner scanner() {
+        return new PipelineNodeTreeScanner(run, nodes, ancestry, Set.of());
+    }
+
+    public PipelineNodeGraphAdapter adapter() {
+        return new PipelineNodeGraphAdapter(run, nodes, ancestry, Set.of());
+    }
+
+    public static final class Builder {
+        private int stages = 1;
+        private int depth = 1;
+        private int parallel;
+        private int stepsPerStage = 1;
+        private int warningEvery;
+        private int errorEvery;
+        private int skipEvery;
+        private int inputEvery;
+
+        private Builder() {}
+
+        /** Sequential top-level stages. */
+        public Builder stages(int stages) {
+            this.stages = stages;
+            return this;
+        }
+
+        /** Levels of stage nesting, counting the top-level stage. */
+        public Builder depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /** Branches per parallel block below each non-leaf stage; zero nests a single stage. */
+        public Builder parallel(int parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public Builder stepsPerStage(int stepsPerStage) {
+            this.stepsPerStage = stepsPerStage;
+            return this;
+        }
+
+        /** Every Nth step is an {@code unstable} step carrying a {@link WarningAction}. */
+        public Builder warningEvery(int warningEvery) {
+            this.warningEvery = warningEvery;
+            return this;
+        }
+
+        /** Every Nth step fails; the {@link ErrorAction} propagates to the end of its stage. */
+        public Builder errorEvery(int errorEvery) {
+            this.errorEvery = errorEvery;
+            return this;
+        }
+
+        /** Every Nth stage is skipped for a {@code when} condition and has no steps or children. */
+        public Builder skipEvery(int skipEvery) {
+            this.skipEvery = skipEvery;
+            return this;
+        }
+
+        /** Every Nth step is an (already answered) {@code input} step. */
+        public Builder inputEvery(int inputEvery) {
+            this.inputEvery = inputEvery;
+            return this;
+        }
+
+        public SyntheticPipeline build(WorkflowRun host) {
+            if (!(host.getExecution() instanceof CpsFlowExecution execution)) {
+                throw new IllegalArgumentException("Host run has no CPS execution: " + host);
+            }
+            if (!execution.isComplete()) {
+                throw new IllegalArgumentException("Host run is still running: " + host);
+            }
+            Generator generator = new Generator(this, execution);
+            generator.generate();
+            return new SyntheticPipeline(
+                    host, generator.nodes, generator.ancestry, generator.stageCount, generator.stepCount);
+        }
+    }
+
+    private static final class Generator {
+        private final Builder spec;
+        private final CpsFlowExecution execution;
+        private final StepDescriptor stage = descriptor("stage");
+        private final StepDescriptor parallel = descriptor("parallel");
+        private final StepDescriptor echo = descriptor("echo");
+        private final StepDescriptor unstable = descriptor("unstable");
+        private final StepDescriptor error = descriptor("error");
+        private final StepDescriptor input = descriptor("input");
+
+        private final List<FlowNode> nodes = new ArrayList<>();
+        private final NodeAncestry ancestry = new NodeAncestry();
+        private final ArrayDeque<String> blocks = new ArrayDeque<>();
+        // Immutable snapshot of `blocks`, shared by every node at the same nesting.
+        private List<String> enclosing = List.of();
+
+        private FlowNode head;
+        private int stepCount;
+        private int stageCount;
+        private boolean failed;
+
+        Generator(Builder spec, CpsFlowExecution execution) {
+            this.spec = spec;
+            this.execution = execution;
+        }
+
+        private static StepDescriptor descriptor(String functionName) {
+            StepDescriptor descriptor = StepDescriptor.byFunctionName(functionName);
+            if (descriptor == null) {
+                throw new IllegalStateException("No step named " + functionName);
+            }
+            return descriptor;
+        }
+
+        void generate() {
+            FlowStartNode start = new FlowStartNode(execution, execution.iotaStr());
+            record(start);
+            head = start;
+            for (int i = 1; i <= spec.stages; i++) {
+                stage("Stage " + i, 1);
+            }
+            FlowEndNode end = new FlowEndNode(
+                    execution, execution.iotaStr(), start, failed ? Result.FAILURE : Result.SUCCESS, head);
+            record(end);
+        }
+
+        private void stage(String name, int level) {
+            stageCount++;
+            boolean skipped = spec.skipEvery > 0 && stageCount % spec.skipEvery == 0;
+            StepStartNode outer = open(stage, head);
+            StepStartNode body = open(stage, outer);
+            body.addAction(new BodyInvocationAction());
+            body.addAction(new LabelAction(name));
+            if (skipped) {
+                TagsAction tags = new TagsAction();
+                tags.addTag(StageStatus.TAG_NAME, StageStatus.getSkippedForConditional());
+                body.addAction(tags);
+                close(body, List.of(head), null);
+                close(outer, List.of(head), null);
+                return;
+            }
+            ErrorAction failure = null;
+            for (int i = 0; i < spec.stepsPerStage; i++) {
+                ErrorAction stepFailure = step();
+                if (failure == null) {
+                    failure = stepFailure;
+                }
+            }
+            if (level < spec.depth) {
+                if (spec.parallel > 0) {
+                    parallel(name, level);
+                } else {
+                    stage(name + ".1", level + 1);
+                }
+            }
+            close(body, List.of(head), failure);
+            close(outer, List.of(head), failure);
+        }
+
+        private void parallel(String name, int level) {
+            StepStartNode block = open(parallel, head);
+            List<FlowNode> branchEnds = new ArrayList<>(spec.parallel);
+            for (int i = 1; i <= spec.parallel; i++) {
+                String branchName = name + "." + i;
+                StepStartNode branch = open(parallel, block);
+                branch.addAction(new BodyInvocationAction());
+                branch.addAction(new BranchLabel(branchName));
+                stage(branchName, level + 1);
+                branchEnds.add(close(branch, List.of(head), null));
+            }
+            close(block, branchEnds, null);
+        }
+
+        /** Emits one step and returns the failure it raised, if any. */
+        private ErrorAction step() {
+            stepCount++;
+            StepAtomNode atom;
+            ErrorAction failure = null;
+            if (spec.errorEvery > 0 && stepCount % spec.errorEvery == 0) {
+                atom = new StepAtomNode(execution, error, head);
+                failure = new ErrorAction(new AbortException("Synthetic failure " + stepCount));
+                atom.addAction(failure);
+                failed = true;
+            } else if (spec.warningEvery > 0 && stepCount % spec.warningEvery == 0) {
+                atom = new StepAtomNode(execution, unstable, head);
+                atom.addAction(new WarningAction(Result.UNSTABLE).withMessage("Synthetic warning " + stepCount));
+            } else if (spec.inputEvery > 0 && stepCount % spec.inputEvery == 0) {
+                atom = new StepAtomNode(execution, input, head);
+            } else {
+                atom = new StepAtomNode(execution, echo, head);
+            }
+            atom.addAction(new TimingAction());
+            record(atom);
+            head = atom;
+            return failure;
+        }
+
+        private StepStartNode open(StepDescriptor descriptor, FlowNode parent) {
+            StepStartNode start = new StepStartNode(execution, descriptor, parent);
+            start.addAction(new TimingAction());
+            record(start);
+            blocks.push(start.getId());
+            enclosing = List.copyOf(blocks);
+            head = start;
+            return start;
+        }
+
+        private StepEndNode close(StepStartNode start, List<FlowNode> parents, ErrorAction failure) {
+            blocks.pop();
+            enclosing = blocks.isEmpty() ? List.of() : List.copyOf(blocks);
+            StepEndNode end = new StepEndNode(execution, start, parents);
+            end.addAction(new TimingAction());
+            if (start.getAction(BodyInvocationAction.class) != null) {
+                end.addAction(new BodyInvocationAction());
+            }
+            if (failure != null) {
+                end.addAction(failure);
+            }
+            record(end);
+            head = end;
+            return end;
+        }
+
+        private void record(FlowNode node) {
+            nodes.add(node);
+            ancestry.record(node.getId(), enclosing);
+        }
+    }
+
+    /** Same shape as the label the {@code parallel} step puts on each branch start. */
+    private static final class BranchLabel extends LabelAction implements ThreadNameAction {
+        BranchLabel(String name) {
+            super(name);
+        }
+
+        @Override
+        public String getThreadName() {
+            return getDisplayName();
+        }
+    }
+}
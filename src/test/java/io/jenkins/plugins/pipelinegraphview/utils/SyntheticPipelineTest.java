@@ -0,0 +1,155 @@
+package io.jenkins.plugins.pipelinegraphview.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import io.jenkins.plugins.pipelinegraphview.treescanner.PipelineNodeTreeScanner;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class SyntheticPipelineTest {
+
+    private static final String FORK_JOIN_PROPERTY = PipelineNodeTreeScanner.class.getName() + ".forkJoin";
+    private static final String FORK_JOIN_MIN_NODES_PROPERTY =
+            PipelineNodeTreeScanner.class.getName() + ".forkJoinMinNodes";
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule j) {
+        this.j = j;
+    }
+
+    @Test
+    void stageStatusesFollowDecorations() throws Exception {
+        // Steps 3 and 6 warn and fail respectively; the third stage is skipped.
+        SyntheticPipeline pipeline = SyntheticPipeline.builder()
+                .stages(4)
+                .stepsPerStage(2)
+                .warningEvery(3)
+                .errorEvery(6)
+                .skipEvery(3)
+                .build(SyntheticPipeline.hostRun(j.jenkins, "decorations"));
+
+        PipelineGraph graph = new PipelineGraphApi(pipeline.run())
+                .createTreeFrom(pipeline.adapter(), null, pipeline.ancestry());
+
+        assertThat(
+                TestUtils.collectStagesAsString(graph.stages, TestUtils::nodeNameAndStatus),
+                equalTo("Stage 1{success},Stage 2{unstable},Stage 3{skipped},Stage 4{failure}"));
+    }
+
+    @Test
+    void nestedStagesKeepTheirSteps() throws Exception {
+        SyntheticPipeline pipeline = SyntheticPipeline.builder()
+                .stages(2)
+                .depth(3)
+                .stepsPerStage(2)
+                .build(SyntheticPipeline.hostRun(j.jenkins, "nested"));
+
+        PipelineGraph graph = new PipelineGraphApi(pipeline.run())
+                .createTreeFrom(pipeline.adapter(), null, pipeline.ancestry());
+        PipelineStepList steps = new PipelineStepApi(pipeline.run()).getAllStepsFrom(pipeline.adapter(), true);
+
+        assertThat(
+                TestUtils.collectStagesAsString(graph.stages, stage -> stage.name),
+                equalTo("Stage 1[Stage 1.1[Stage 1.1.1]],Stage 2[Stage 2.1[Stage 2.1.1]]"));
+        assertThat(steps.steps.size(), is(pipeline.stepCount()));
+    }
+
+    @Test
+    void forkJoinBuildMatchesSequentialBuild() throws Exception {
+        SyntheticPipeline pipeline = SyntheticPipeline.builder()
+                .stages(2)
+                .depth(3)
+                .parallel(12)
+                .stepsPerStage(3)
+                .warningEvery(7)
+                .errorEvery(50)
+                .skipEvery(9)
+                .build(SyntheticPipeline.hostRun(j.jenkins, "fork-join"));
+        PipelineGraphApi graphApi = new PipelineGraphApi(pipeline.run());
+        PipelineStepApi stepApi = new PipelineStepApi(pipeline.run());
+
+        PipelineGraph sequentialGraph = graphApi.createTreeFrom(pipeline.adapter(), null, pipeline.ancestry());
+        PipelineStepList sequentialSteps = stepApi.getAllStepsFrom(pipeline.adapter(), true);
+        PipelineGraph forkJoinGraph;
+        PipelineStepList forkJoinSteps;
+        System.setProperty(FORK_JOIN_PROPERTY, "true");
+        System.setProperty(FORK_JOIN_MIN_NODES_PROPERTY, "0");
+        try {
+            forkJoinGraph = graphApi.createTreeFrom(pipeline.adapter(), null, pipeline.ancestry());
+            forkJoinSteps = stepApi.getAllStepsFrom(pipeline.adapter(), true);
+        } finally {
+            System.clearProperty(FORK_JOIN_PROPERTY);
+            System.clearProperty(FORK_JOIN_MIN_NODES_PROPERTY);
+        }
+
+        assertThat(
+                TestUtils.collectStagesAsString(forkJoinGraph.stages, TestUtils::nodeNameAndStatus),
+                equalTo(TestUtils.collectStagesAsString(sequentialGraph.stages, TestUtils::nodeNameAndStatus)));
+        assertThat(
+                TestUtils.collectStepsAsString(forkJoinSteps.steps, TestUtils::nodeNameAndStatus),
+                equalTo(TestUtils.collectStepsAsString(sequentialSteps.steps, TestUtils::nodeNameAndStatus)));
+        // The wire form covers everything else, timings and downstream build links included.
+        assertThat(json(forkJoinGraph), equalTo(json(sequentialGraph)));
+        assertThat(json(forkJoinSteps), equalTo(json(sequentialSteps)));
+    }
+
+    private static String json(Object payload) {
+        return new String(PipelineJsonWriter.toBytes(payload), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void largeParallelGraphScans() throws Exception {
+        // 20 x (1 + 8 + 64) stages with 25 steps each: ~36k steps and ~80k nodes.
+        SyntheticPipeline pipeline = SyntheticPipeline.builder()
+                .stages(20)
+                .depth(3)
+                .parallel(8)
+                .stepsPerStage(25)
+                .warningEvery(101)
+                .inputEvery(997)
+                .build(SyntheticPipeline.hostRun(j.jenkins, "large"));
+
+        PipelineStepList steps = new PipelineStepApi(pipeline.run()).getAllStepsFrom(pipeline.adapter(), true);
+
+        assertThat(pipeline.stageCount(), is(20 * (1 + 8 + 64)));
+        assertThat(steps.steps.size(), is(pipeline.stepCount()));
+    }
+
+    @Test
+    void treeAssemblyWorkGrowsLinearlyWithStageCount() throws Exception {
+        PipelineGraphApi.TreeAssemblyWork small = treeAssemblyWork(1_000, "assembly-1k");
+        PipelineGraphApi.TreeAssemblyWork large = treeAssemblyWork(20_000, "assembly-20k");
+
+        // Each stage is converted exactly once, not once per level above it.
+        assertThat(small.conversions, is(1_000L));
+        assertThat(large.conversions, is(20_000L));
+        // 20x the stages: linear assembly probes 20x as often, quadratic about 400x.
+        assertThat(large.probes, is(20 * small.probes));
+    }
+
+    // Half of the stages nest inside the other half, so there are as many child stages as roots.
+    private PipelineGraphApi.TreeAssemblyWork treeAssemblyWork(int stages, String name) throws Exception {
+        SyntheticPipeline pipeline = SyntheticPipeline.builder()
+                .stages(stages / 2)
+                .depth(2)
+                .stepsPerStage(1)
+                .build(SyntheticPipeline.hostRun(j.jenkins, name));
+        assertThat(pipeline.stageCount(), is(stages));
+        PipelineGraphApi graphApi = new PipelineGraphApi(pipeline.run());
+        graphApi.assemblyWork = new PipelineGraphApi.TreeAssemblyWork();
+
+        PipelineGraph graph = graphApi.createTreeFrom(pipeline.adapter(), List.of(), pipeline.ancestry());
+
+        assertThat(graph.stages.size(), is(stages / 2));
+        return graphApi.assemblyWork;
+    }
+}